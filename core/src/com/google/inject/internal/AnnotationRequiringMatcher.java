@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * Implemented by matchers that only match elements annotated with an annotation type, such as
+ * {@link com.google.inject.matcher.Matchers#annotatedWith annotatedWith()}, so that interceptors
+ * can be looked up by the annotations of a method rather than by calling every matcher.
+ */
+public interface AnnotationRequiringMatcher {
+
+  /**
+   * Returns the annotation type present on every element this matches, or null if there is none.
+   */
+  Class<? extends Annotation> requiredAnnotationType();
+}
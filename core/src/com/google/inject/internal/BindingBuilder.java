@@ -81,7 +81,7 @@ public class BindingBuilder<T> extends AbstractBindingBuilder<T>
     Set<InjectionPoint> injectionPoints;
     if (instance != null) {
       try {
-        injectionPoints = InjectionPoint.forInstanceMethodsAndFields(instance.getClass());
+        injectionPoints = InjectionPointCache.forInstanceMethodsAndFields(instance.getClass());
       } catch (ConfigurationException e) {
         copyErrorsToBinder(e);
         injectionPoints = e.getPartialValue();
@@ -107,7 +107,7 @@ public class BindingBuilder<T> extends AbstractBindingBuilder<T>
     // lookup the injection points, adding any errors to the binder's errors list
     Set<InjectionPoint> injectionPoints;
     try {
-      injectionPoints = InjectionPoint.forInstanceMethodsAndFields(provider.getClass());
+      injectionPoints = InjectionPointCache.forInstanceMethodsAndFields(provider.getClass());
     } catch (ConfigurationException e) {
       copyErrorsToBinder(e);
       injectionPoints = e.getPartialValue();
@@ -154,7 +154,7 @@ public class BindingBuilder<T> extends AbstractBindingBuilder<T>
 
     Set<InjectionPoint> injectionPoints;
     try {
-      injectionPoints = InjectionPoint.forInstanceMethodsAndFields(type);
+      injectionPoints = InjectionPointCache.forInstanceMethodsAndFields(type);
     } catch (ConfigurationException e) {
       copyErrorsToBinder(e);
       injectionPoints = e.getPartialValue();
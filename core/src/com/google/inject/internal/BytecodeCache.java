@@ -0,0 +1,355 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import net.sf.cglib.core.AbstractClassGenerator;
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.reflect.FastClass;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bytecode of the classes cglib generates, kept in the directory named by the
+ * {@code guice_bytecode_cache} flag between runs. Later runs define the classes from the saved
+ * bytecode instead of generating it again.
+ *
+ * <p>Each class is saved in a file named by a hash of its name, of what it was generated from,
+ * and of the class files of the class it is generated for and of its superclasses and interfaces.
+ * Changing any of these classes, or the version of Guice or cglib, changes the hash, so classes
+ * are never read back from stale bytecode. Classes generated for a class that has no class file,
+ * such as another generated class Guice didn't save, are generated on every run.
+ *
+ * <p>Classes are defined from whatever the directory holds, so it must only be writable by the
+ * user running the application.
+ */
+final class BytecodeCache {
+
+  private static final Logger logger = Logger.getLogger(BytecodeCache.class.getName());
+
+  private static final BytecodeCache INSTANCE = open(InternalFlags.getBytecodeCache());
+
+  /** Names the class a generator generates, which cglib otherwise does while generating it. */
+  private static final Method GET_CLASS_NAME = getClassNameMethod();
+
+  private final File directory;
+  private final String version;
+
+  /** Hashes of the class files of classes, empty for classes without one. */
+  private final LoadingCache<Class<?>, String> classHashes = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build(new CacheLoader<Class<?>, String>() {
+        @Override public String load(Class<?> type) {
+          String hash = hash(type);
+          return hash != null ? hash : "";
+        }
+      });
+
+  /** Hashes of the bytecode of the classes generated in a class loader, by class name. */
+  private final LoadingCache<ClassLoader, ConcurrentMap<String, String>> generatedHashes =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(new CacheLoader<ClassLoader, ConcurrentMap<String, String>>() {
+            @Override public ConcurrentMap<String, String> load(ClassLoader classLoader) {
+              return Maps.newConcurrentMap();
+            }
+          });
+
+  final AtomicInteger hits = new AtomicInteger();
+  final AtomicInteger misses = new AtomicInteger();
+
+  /**
+   * @param version the version of the code generating classes, saved bytecode is only read back by
+   *     the same version
+   */
+  BytecodeCache(File directory, String version) {
+    this.directory = directory;
+    this.version = version;
+  }
+
+  private static BytecodeCache open(String path) {
+    if (path == null) {
+      return null;
+    }
+    try {
+      File directory = new File(path);
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        logger.warning("Cannot create bytecode cache " + path);
+        return null;
+      }
+      return new BytecodeCache(directory, generatorVersion());
+    } catch (SecurityException e) {
+      logger.log(Level.WARNING, "Cannot use bytecode cache " + path, e);
+      return null;
+    }
+  }
+
+  /** Returns a hash of the version and the class files of the Guice and cglib generators. */
+  private static String generatorVersion() {
+    Hasher hasher = Hashing.sha1().newHasher();
+    Package guice = BytecodeCache.class.getPackage();
+    if (guice != null && guice.getImplementationVersion() != null) {
+      hasher.putString(guice.getImplementationVersion(), Charsets.UTF_8);
+    }
+    for (Class<?> generator : new Class<?>[] {BytecodeCache.class, BytecodeGen.class,
+        EnhancedClassCache.class, ProxyFactory.class, SpecializedDispatch.class, Enhancer.class,
+        FastClass.class}) {
+      hasher.putString(String.valueOf(classFileHash(generator)), Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static Method getClassNameMethod() {
+    try {
+      Method getClassName = AbstractClassGenerator.class.getDeclaredMethod("getClassName");
+      getClassName.setAccessible(true);
+      return getClassName;
+    } catch (NoSuchMethodException e) {
+      logger.log(Level.FINE, "Cannot name generated classes, they won't be cached", e);
+      return null;
+    } catch (SecurityException e) {
+      logger.log(Level.FINE, "Cannot name generated classes, they won't be cached", e);
+      return null;
+    }
+  }
+
+  /** Returns the name of the class {@code generator} generates, or null if it can't be known. */
+  private static String className(AbstractClassGenerator generator) throws Exception {
+    return GET_CLASS_NAME != null ? (String) GET_CLASS_NAME.invoke(generator) : null;
+  }
+
+  /** Returns true if generated classes are kept between runs. */
+  static boolean isEnabled() {
+    return INSTANCE != null;
+  }
+
+  /**
+   * Returns a strategy reading the class a generator generates for {@code source} from the cache,
+   * or generating it with {@code strategy} and saving it.
+   *
+   * @param inputs describes all the generator is given besides {@code source}, so that classes
+   *     generated from different inputs are saved separately
+   */
+  static GeneratorStrategy strategy(GeneratorStrategy strategy, Class<?> source, String inputs) {
+    return INSTANCE != null ? INSTANCE.caching(strategy, source, inputs) : strategy;
+  }
+
+  GeneratorStrategy caching(GeneratorStrategy strategy, Class<?> source, String inputs) {
+    return new CachingStrategy(strategy, source, inputs);
+  }
+
+  /**
+   * Returns the hash of the class files of {@code type}, its superclasses and its interfaces, or
+   * null if one of them has no class file.
+   */
+  String hierarchyHash(Class<?> type) {
+    Set<Class<?>> types = Sets.newLinkedHashSet();
+    addHierarchy(type, types);
+    Hasher hasher = Hashing.sha1().newHasher();
+    for (Class<?> t : types) {
+      String hash = classHashes.getUnchecked(t);
+      if (hash.length() == 0) {
+        return null;
+      }
+      hasher.putString(t.getName(), Charsets.UTF_8).putString(hash, Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void addHierarchy(Class<?> type, Set<Class<?>> types) {
+    for (Class<?> t = type; t != null && types.add(t); t = t.getSuperclass()) {
+      for (Class<?> i : t.getInterfaces()) {
+        addHierarchy(i, types);
+      }
+    }
+  }
+
+  /** Returns the hash of the class file of {@code type}, or of the bytecode Guice generated. */
+  private String hash(Class<?> type) {
+    String hash = classFileHash(type);
+    if (hash == null && type.getClassLoader() != null) {
+      hash = generatedHashes.getUnchecked(type.getClassLoader()).get(type.getName());
+    }
+    return hash;
+  }
+
+  /** Returns the hash of the class file of {@code type}, or null if it has none. */
+  private static String classFileHash(Class<?> type) {
+    ClassLoader classLoader = type.getClassLoader();
+    if (classLoader == null) {
+      // JDK classes are the same for a given version of the JDK
+      return "java " + System.getProperty("java.version");
+    }
+    InputStream in = classLoader.getResourceAsStream(type.getName().replace('.', '/') + ".class");
+    if (in == null) {
+      return null;
+    }
+    try {
+      return Hashing.sha1().hashBytes(ByteStreams.toByteArray(in)).toString();
+    } catch (IOException e) {
+      return null;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Reads the bytecode saved in {@code file}, the class it was saved for being last, or returns
+   * null if there is none.
+   */
+  Map<String, byte[]> read(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        Map<String, byte[]> classes = Maps.newLinkedHashMap();
+        for (int i = in.readInt(); i > 0; i--) {
+          String name = in.readUTF();
+          byte[] bytecode = new byte[in.readInt()];
+          in.readFully(bytecode);
+          classes.put(name, bytecode);
+        }
+        return classes;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Cannot read bytecode cached in " + file, e);
+      return null;
+    }
+  }
+
+  void write(File file, Map<String, byte[]> classes) {
+    // write a copy and move it over the file, so that concurrent runs never read half of it
+    try {
+      File copy = File.createTempFile(file.getName(), ".tmp", directory);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(copy)));
+      try {
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeInt(entry.getValue().length);
+          out.write(entry.getValue());
+        }
+      } finally {
+        out.close();
+      }
+      Files.move(copy, file);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot save bytecode to " + file, e);
+    }
+  }
+
+  /**
+   * A strategy defining other classes along with the class it generates, which the generated
+   * class uses. These are saved and defined again with it.
+   */
+  interface DefiningStrategy extends GeneratorStrategy {
+    /** Returns the bytecode of the other classes defined along with the last class generated. */
+    Map<String, byte[]> definedClasses();
+  }
+
+  /** Reads classes from the cache, or has its strategy generate them and saves them. */
+  private class CachingStrategy implements GeneratorStrategy {
+    private final GeneratorStrategy strategy;
+    private final Class<?> source;
+    private final String inputs;
+
+    CachingStrategy(GeneratorStrategy strategy, Class<?> source, String inputs) {
+      this.strategy = strategy;
+      this.source = source;
+      this.inputs = inputs;
+    }
+
+    public byte[] generate(ClassGenerator generator) throws Exception {
+      if (!(generator instanceof AbstractClassGenerator)) {
+        return strategy.generate(generator);
+      }
+      AbstractClassGenerator classGenerator = (AbstractClassGenerator) generator;
+      String className = className(classGenerator);
+      String hierarchyHash = className != null ? hierarchyHash(source) : null;
+      if (hierarchyHash == null) {
+        return strategy.generate(generator);
+      }
+
+      String key = Hashing.sha1().newHasher()
+          .putString(version, Charsets.UTF_8)
+          .putString(className, Charsets.UTF_8)
+          .putString(inputs, Charsets.UTF_8)
+          .putString(hierarchyHash, Charsets.UTF_8)
+          .hash().toString();
+      File file = new File(directory, key);
+      ClassLoader classLoader = classGenerator.getClassLoader();
+      byte[] bytecode;
+      Map<String, byte[]> classes = read(file);
+      if (classes != null && classes.containsKey(className)) {
+        hits.incrementAndGet();
+        bytecode = classes.remove(className);
+        ProtectionDomain protectionDomain = ReflectUtils.getProtectionDomain(source);
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          ReflectUtils.defineClass(entry.getKey(), entry.getValue(), classLoader, protectionDomain);
+        }
+      } else {
+        misses.incrementAndGet();
+        bytecode = strategy.generate(generator);
+        classes = Maps.newLinkedHashMap();
+        if (strategy instanceof DefiningStrategy) {
+          classes.putAll(((DefiningStrategy) strategy).definedClasses());
+        }
+        classes.put(className, bytecode);
+        write(file, classes);
+      }
+      // lets classes generated for this one, such as its FastClass, be cached too
+      generatedHashes.getUnchecked(classLoader)
+          .put(className, Hashing.sha1().hashBytes(bytecode).toString());
+      return bytecode;
+    }
+  }
+}
@@ -227,6 +227,16 @@ public final class BytecodeGen {
    * using normal java reflection.
    */
   public static net.sf.cglib.reflect.FastClass newFastClassForMember(Class<?> type, Member member) {
+    return newFastClassForMember(type, member, BytecodeCache.strategy(
+        net.sf.cglib.core.DefaultGeneratorStrategy.INSTANCE, type, "FastClass"));
+  }
+
+  /**
+   * Returns a FastClass proxy for invoking the given member, generated by {@code strategy} unless
+   * that is null, or {@code null} if access rules disallow it.
+   */
+  static net.sf.cglib.reflect.FastClass newFastClassForMember(Class<?> type, Member member,
+      net.sf.cglib.core.GeneratorStrategy strategy) {
     if (!new net.sf.cglib.core.VisibilityPredicate(type, false).evaluate(member)) {
       // the member cannot be indexed by fast class.  Bail out.
       return null;
@@ -246,10 +256,21 @@ public final class BytecodeGen {
     }
     generator.setType(type);
     generator.setNamingPolicy(FASTCLASS_NAMING_POLICY);
+    if (strategy != null) {
+      generator.setStrategy(strategy);
+    }
     if (logger.isLoggable(Level.FINE)) {
       logger.fine("Loading " + type + " FastClass with " + generator.getClassLoader());
     }
-    return generator.create();
+    InjectorEvents events = InjectorEvents.INSTALLED;
+    Object event = events != null ? events.beginClassGeneration(type, "FastClass") : null;
+    try {
+      return generator.create();
+    } finally {
+      if (event != null) {
+        events.endClassGeneration(event);
+      }
+    }
   }
 
   /**
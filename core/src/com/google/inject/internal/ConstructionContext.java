@@ -21,6 +21,7 @@ import com.google.inject.internal.InjectorImpl.InjectorOptions;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Context of a dependency construction. Used to manage circular references.
@@ -92,4 +93,27 @@ final class ConstructionContext<T> {
       invocationHandlers = null;
     }
   }
+
+  /**
+   * Identifies the construction contexts of a single factory. Each slot is given a small index in
+   * its injector tree on first use, which is where {@link InternalContext} keeps its contexts.
+   */
+  static final class Slot {
+    /** The index of this slot, or -1 until it is first used. */
+    private volatile int index = -1;
+
+    /** Returns the index of this slot, taking the next one from {@code indexes} on first use. */
+    int index(AtomicInteger indexes) {
+      int result = index;
+      if (result < 0) {
+        synchronized (this) {
+          result = index;
+          if (result < 0) {
+            index = result = indexes.getAndIncrement();
+          }
+        }
+      }
+      return result;
+    }
+  }
 }
@@ -97,7 +97,7 @@ final class ConstructorBindingImpl<T> extends BindingImpl<T>
     // Find a constructor annotated @Inject
     if (constructorInjector == null) {
       try {
-        constructorInjector = InjectionPoint.forConstructorOf(key.getTypeLiteral());
+        constructorInjector = InjectionPointCache.forConstructorOf(key.getTypeLiteral(), injector);
         if (failIfNotExplicit && !hasAtInject((Constructor) constructorInjector.getMember())) {
           errors.atInjectRequired(rawType);
         }
@@ -162,7 +162,7 @@ final class ConstructorBindingImpl<T> extends BindingImpl<T>
       // If the below throws, it's OK -- we just ignore those dependencies, because no one
       // could have used them anyway.
       try {
-        builder.addAll(InjectionPoint.forInstanceMethodsAndFields(constructorInjectionPoint.getDeclaringType()));
+        builder.addAll(InjectionPointCache.forInstanceMethodsAndFields(constructorInjectionPoint.getDeclaringType()));
       } catch(ConfigurationException ignored) {}
     } else {
       builder.add(getConstructor())
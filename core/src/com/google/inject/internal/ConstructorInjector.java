@@ -36,6 +36,7 @@ final class ConstructorInjector<T> {
   private final SingleParameterInjector<?>[] parameterInjectors;
   private final ConstructionProxy<T> constructionProxy;
   private final MembersInjectorImpl<T> membersInjector;
+  private final ConstructionContext.Slot constructionContextSlot = new ConstructionContext.Slot();
 
   ConstructorInjector(Set<InjectionPoint> injectableMembers,
       ConstructionProxy<T> constructionProxy,
@@ -63,7 +64,8 @@ final class ConstructorInjector<T> {
       Class<?> expectedType,
       ProvisionListenerStackCallback<T> provisionCallback)
       throws ErrorsException {
-    final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+    final ConstructionContext<T> constructionContext =
+        context.getConstructionContext(constructionContextSlot);
     InjectorOptions options = context.getInjectorOptions();
 
     // We have a circular reference between constructors. Return a proxy.
@@ -117,8 +119,10 @@ final class ConstructorInjector<T> {
       // Store reference. If an injector re-enters this factory, they'll get the same reference.
       constructionContext.setCurrentReference(t);
 
-      membersInjector.injectMembers(t, errors, context, false);
-      membersInjector.notifyListeners(t, errors);
+      if (!membersInjector.injectsNothing()) {
+        membersInjector.injectMembers(t, errors, context, false);
+        membersInjector.notifyListeners(t, errors);
+      }
 
       return t;
     } catch (InvocationTargetException userException) {
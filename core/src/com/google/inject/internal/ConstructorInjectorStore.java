@@ -18,7 +18,6 @@ package com.google.inject.internal;
 
 import static com.google.common.collect.Iterables.concat;
 
-import com.google.common.collect.ImmutableList;
 import com.google.inject.spi.InjectionPoint;
 
 /**
@@ -28,6 +27,10 @@ import com.google.inject.spi.InjectionPoint;
  */
 final class ConstructorInjectorStore {
   private final InjectorImpl injector;
+  /*if[AOP]*/
+  /** The method aspects of the injector, complete by the time constructors are injected. */
+  private volatile MethodAspectIndex methodAspects; // lazy
+  /*end[AOP]*/
 
   private final FailableCache<InjectionPoint, ConstructorInjector<?>>  cache
       = new FailableCache<InjectionPoint, ConstructorInjector<?>> () {
@@ -75,10 +78,10 @@ final class ConstructorInjectorStore {
         .get(injectionPoint.getDeclaringType(), errors);
 
     /*if[AOP]*/
-    ImmutableList<MethodAspect> injectorAspects = injector.state.getMethodAspects();
-    ImmutableList<MethodAspect> methodAspects = membersInjector.getAddedAspects().isEmpty()
-        ? injectorAspects
-        : ImmutableList.copyOf(concat(injectorAspects, membersInjector.getAddedAspects()));
+    MethodAspectIndex methodAspects = membersInjector.getAddedAspects().isEmpty()
+        ? getMethodAspects()
+        : new MethodAspectIndex(
+            concat(injector.state.getMethodAspects(), membersInjector.getAddedAspects()));
     ConstructionProxyFactory<T> factory = new ProxyFactory<T>(injectionPoint, methodAspects);
     /*end[AOP]*/
     /*if[NO_AOP]
@@ -90,4 +93,16 @@ final class ConstructorInjectorStore {
     return new ConstructorInjector<T>(membersInjector.getInjectionPoints(), factory.create(),
         constructorParameterInjectors, membersInjector);
   }
+  /*if[AOP]*/
+
+  private MethodAspectIndex getMethodAspects() {
+    MethodAspectIndex methodAspects = this.methodAspects;
+    if (methodAspects == null) {
+      // racing threads build equal indices
+      methodAspects = new MethodAspectIndex(injector.state.getMethodAspects());
+      this.methodAspects = methodAspects;
+    }
+    return methodAspects;
+  }
+  /*end[AOP]*/
 }
@@ -3,17 +3,13 @@ package com.google.inject.internal;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -27,7 +23,7 @@ import java.util.concurrent.locks.ReentrantLock;
  *        when lock cycle is detected to identify it. Only toString() needs to be implemented.
  *        Lock references this object internally,
  *        for the purposes of Garbage Collection you should not use heavy IDs.
- *        Lock is referenced by a lock factory as long as it's owned by a thread.
+ *        Lock is referenced by its owner thread as long as it's owned.
  *
  * @see SingletonScope
  * @see com.google.inject.internal.CycleDetectingLock.CycleDetectingLockFactory
@@ -45,7 +41,8 @@ interface CycleDetectingLock<ID> {
    * Map is ordered by dependency cycle and lists locks for each thread that are part of
    * the loop in order. Returned map is created atomically.
    *
-   * In case no cycle is detected performance is O(threads creating singletons),
+   * In case the lock is not contended no global synchronization is needed, otherwise
+   * performance is O(threads waiting on singletons),
    * in case cycle is detected performance is O(singleton locks).
    */
   ListMultimap<Long, ID> lockOrDetectPotentialLocksCycle();
@@ -72,42 +69,19 @@ interface CycleDetectingLock<ID> {
   class CycleDetectingLockFactory<ID> {
 
     /**
-     * Specifies lock that thread is currently waiting on to own it.
-     * Used only for purposes of locks cycle detection.
+     * Locks owned by the current thread and the lock it is waiting on, if any.
      *
-     * Key: thread id
-     * Value: lock that is being waited on
-     *
-     * Element is added inside {@link #lockOrDetectPotentialLocksCycle()} before {@link Lock#lock}
-     * is called. Element is removed inside {@link #lockOrDetectPotentialLocksCycle()} after
-     * {@link Lock#lock} and synchronously with adding it to {@link #locksOwnedByThread}.
-     *
-     * Same lock can be added for several threads in case all of them are trying to
-     * take it.
-     *
-     * Guarded by {@code CycleDetectingLockFactory.class}.
+     * <p>Set when the thread takes its first lock and removed when it releases its last one, so
+     * threads that are done creating singletons don't keep Guice classes reachable.
      */
-    private static Map<Long, ReentrantCycleDetectingLock<?>> lockThreadIsWaitingOn =
-        Maps.newHashMap();
+    private static final ThreadLocal<ThreadLocks> currentThreadLocks =
+        new ThreadLocal<ThreadLocks>();
 
     /**
-     * Lists locks that thread owns.
-     * Used only to populate locks in a potential cycle when it is detected.
-     *
-     * Key: thread id
-     * Value: stack of locks that were owned.
-     *
-     * Element is added inside {@link #lockOrDetectPotentialLocksCycle()} after {@link Lock#lock}
-     * is called. Element is removed inside {@link #unlock()} synchronously with
-     * {@link Lock#unlock()} call.
-     *
-     * Same lock can only be present several times for the same thread as locks are
-     * reentrant. Lock can not be owned by several different threads as the same time.
-     *
-     * Guarded by {@code CycleDetectingLockFactory.class}.
+     * Guards the wait-for records of all threads while looking for a cycle. A {@link Lock} rather
+     * than a monitor, so that threads waiting for it park like they do on the locks themselves.
      */
-    private static final Multimap<Long, ReentrantCycleDetectingLock<?>> locksOwnedByThread =
-        LinkedHashMultimap.create();
+    private static final Lock detectionLock = new ReentrantLock();
 
     /**
      * Creates new lock within this factory context. We can guarantee that locks created by
@@ -119,7 +93,59 @@ interface CycleDetectingLock<ID> {
       return new ReentrantCycleDetectingLock<ID>(this, userLockId, new ReentrantLock());
     }
 
-    /** The implementation for {@link CycleDetectingLock}. */
+    /**
+     * Wait-for record of a single thread. Used only for purposes of locks cycle detection.
+     *
+     * <p>Only the thread itself changes its record. Other threads read it while looking for a
+     * cycle, and only follow {@link #ownedLocks} of threads that are waiting on a lock, which
+     * can't change them until they take {@link #detectionLock} again.
+     */
+    private static final class ThreadLocks {
+      final long threadId;
+
+      /**
+       * Stack of locks that the thread owns, each lock is present once even when reentered.
+       * Used only to populate locks in a potential cycle when it is detected.
+       */
+      final List<ReentrantCycleDetectingLock<?>> ownedLocks = Lists.newArrayListWithCapacity(4);
+
+      /**
+       * Lock that the thread is waiting on to own it. Set before {@link Lock#lock} is called,
+       * and cleared after it returns synchronously with adding the lock to {@link #ownedLocks}.
+       *
+       * <p>Guarded by {@link #detectionLock}.
+       */
+      ReentrantCycleDetectingLock<?> waitingOn;
+
+      ThreadLocks(long threadId) {
+        this.threadId = threadId;
+      }
+
+      static ThreadLocks forCurrentThread() {
+        ThreadLocks threadLocks = currentThreadLocks.get();
+        if (threadLocks == null) {
+          threadLocks = new ThreadLocks(Thread.currentThread().getId());
+          currentThreadLocks.set(threadLocks);
+        }
+        return threadLocks;
+      }
+
+      /** Forgets the record of the current thread in case it no longer owns any locks. */
+      void releaseIfUnused() {
+        if (ownedLocks.isEmpty() && waitingOn == null) {
+          currentThreadLocks.remove();
+        }
+      }
+    }
+
+    /**
+     * The implementation for {@link CycleDetectingLock}.
+     *
+     * <p>Uncontended locks are taken and released without any global synchronization. Only a
+     * thread that has to wait for a lock takes {@link CycleDetectingLockFactory#detectionLock}
+     * to look for a cycle and to publish the lock it is waiting on, so the cost of the detection
+     * is only paid by threads that would block anyway.
+     */
     static class ReentrantCycleDetectingLock<ID> implements CycleDetectingLock<ID> {
 
       /** Underlying lock used for actual waiting when no potential deadlocks are detected. */
@@ -129,13 +155,13 @@ interface CycleDetectingLock<ID> {
       /** Factory that was used to create this lock. */
       private final CycleDetectingLockFactory<ID> lockFactory;
       /**
-       * Thread id for the thread that owned this lock. Nullable.
-       * Guarded by {@code CycleDetectingLockFactory.this}.
+       * Record of the thread that owns this lock. Nullable. Set after the underlying lock is
+       * taken and cleared before it is released.
        */
-      private Long lockOwnerThreadId = null;
+      private volatile ThreadLocks lockOwner = null;
       /**
        * Number of times that thread owned this lock.
-       * Guarded by {@code CycleDetectingLockFactory.this}.
+       * Guarded by {@link #lockImplementation}.
        */
       private int lockReentranceCount = 0;
 
@@ -148,82 +174,76 @@ interface CycleDetectingLock<ID> {
       }
 
       @Override public ListMultimap<Long, ID> lockOrDetectPotentialLocksCycle() {
-        final long currentThreadId = Thread.currentThread().getId();
-        synchronized (CycleDetectingLockFactory.class) {
-          checkState();
-          ListMultimap<Long, ID> locksInCycle = detectPotentialLocksCycle();
+        ThreadLocks current = ThreadLocks.forCurrentThread();
+        Preconditions.checkState(current.waitingOn == null,
+            "Internal error: Thread should not be in a waiting thread on a lock now");
+
+        if (lockImplementation.tryLock()) {
+          // uncontended or reentered, nobody can be waiting on us because of this lock
+          markOwned(current);
+          return ImmutableListMultimap.of();
+        }
+
+        detectionLock.lock();
+        try {
+          ListMultimap<Long, ID> locksInCycle = detectPotentialLocksCycle(current);
           if (!locksInCycle.isEmpty()) {
             // potential deadlock is found, we don't try to take this lock
+            current.releaseIfUnused();
             return locksInCycle;
           }
 
-          lockThreadIsWaitingOn.put(currentThreadId, this);
+          current.waitingOn = this;
+        } finally {
+          detectionLock.unlock();
         }
 
         // this may be blocking, but we don't expect it to cause a deadlock
         lockImplementation.lock();
 
-        synchronized (CycleDetectingLockFactory.class) {
+        detectionLock.lock();
+        try {
           // current thread is no longer waiting on this lock
-          lockThreadIsWaitingOn.remove(currentThreadId);
-          checkState();
-
-          // mark it as owned by us
-          lockOwnerThreadId = currentThreadId;
-          lockReentranceCount++;
-          // add this lock to the list of locks owned by a current thread
-          locksOwnedByThread.put(currentThreadId, this);
+          current.waitingOn = null;
+          markOwned(current);
+        } finally {
+          detectionLock.unlock();
         }
         // no deadlock is found, locking successful
         return ImmutableListMultimap.of();
       }
 
-      @Override public void unlock() {
-        final long currentThreadId = Thread.currentThread().getId();
-        synchronized (CycleDetectingLockFactory.class) {
-          checkState();
-          Preconditions.checkState(lockOwnerThreadId != null,
-              "Thread is trying to unlock a lock that is not locked");
-          Preconditions.checkState(lockOwnerThreadId == currentThreadId,
-              "Thread is trying to unlock a lock owned by another thread");
-
-          // releasing underlying lock
-          lockImplementation.unlock();
-
-          // be sure to release the lock synchronously with updating internal state
-          lockReentranceCount--;
-          if (lockReentranceCount == 0) {
-            // we no longer own this lock
-            lockOwnerThreadId = null;
-            Preconditions.checkState(locksOwnedByThread.remove(currentThreadId, this),
-                "Internal error: Can not find this lock in locks owned by a current thread");
-            if (locksOwnedByThread.get(currentThreadId).isEmpty()) {
-              // clearing memory
-              locksOwnedByThread.removeAll(currentThreadId);
-            }
-          }
+      /** Records that the current thread has taken the underlying lock. */
+      private void markOwned(ThreadLocks current) {
+        if (lockReentranceCount++ == 0) {
+          // add this lock to the list of locks owned by a current thread
+          current.ownedLocks.add(this);
+          lockOwner = current;
+        } else {
+          Preconditions.checkState(lockOwner == current,
+              "Internal error: Lock ownership and reentrance count internal states do not match");
         }
       }
 
-      /** Check consistency of an internal state. */
-      void checkState() throws IllegalStateException {
-        final long currentThreadId = Thread.currentThread().getId();
-        Preconditions.checkState(!lockThreadIsWaitingOn.containsKey(currentThreadId),
-            "Internal error: Thread should not be in a waiting thread on a lock now");
-        if (lockOwnerThreadId != null) {
-          // check state of a locked lock
-          Preconditions.checkState(lockReentranceCount >= 0,
-              "Internal error: Lock ownership and reentrance count internal states do not match");
-          Preconditions.checkState(locksOwnedByThread.get(lockOwnerThreadId).contains(this),
-              "Internal error: Set of locks owned by a current thread and lock "
-                  + "ownership status do not match");
-        } else {
-          // check state of a non locked lock
-          Preconditions.checkState(lockReentranceCount == 0,
-              "Internal error: Reentrance count of a non locked lock is expect to be zero");
-          Preconditions.checkState(!locksOwnedByThread.values().contains(this),
-              "Internal error: Non locked lock should not be owned by any thread");
+      @Override public void unlock() {
+        ThreadLocks owner = lockOwner;
+        Preconditions.checkState(owner != null,
+            "Thread is trying to unlock a lock that is not locked");
+        Preconditions.checkState(owner.threadId == Thread.currentThread().getId(),
+            "Thread is trying to unlock a lock owned by another thread");
+
+        lockReentranceCount--;
+        if (lockReentranceCount == 0) {
+          // we no longer own this lock, be sure to say so before other threads can take it
+          lockOwner = null;
+          Preconditions.checkState(owner.ownedLocks.remove(this),
+              "Internal error: Can not find this lock in locks owned by a current thread");
+          // clearing memory
+          owner.releaseIfUnused();
         }
+
+        // releasing underlying lock
+        lockImplementation.unlock();
       }
 
       /**
@@ -232,57 +252,71 @@ interface CycleDetectingLock<ID> {
        * For lock's thread owner check which lock is it trying to take.
        * Repeat recursively. When current thread is found a potential cycle is detected.
        *
+       * <p>Must be called while holding {@link CycleDetectingLockFactory#detectionLock}. Every thread on
+       * a detected path is waiting on a lock that is still owned, so it can not change its
+       * owned locks while they are collected.
+       *
        * @see CycleDetectingLock#lockOrDetectPotentialLocksCycle()
        */
-      private ListMultimap<Long, ID> detectPotentialLocksCycle() {
-        final long currentThreadId = Thread.currentThread().getId();
-        if (lockOwnerThreadId == null || lockOwnerThreadId == currentThreadId) {
+      private ListMultimap<Long, ID> detectPotentialLocksCycle(ThreadLocks current) {
+        ThreadLocks owner = lockOwner;
+        if (owner == null || owner == current) {
           // if nobody owns this lock, lock cycle is impossible
           // if a current thread owns this lock, we let Guice to handle it
           return ImmutableListMultimap.of();
         }
 
-        ListMultimap<Long, ID> potentialLocksCycle = Multimaps.newListMultimap(
-            new LinkedHashMap<Long, Collection<ID>>(),
-            new Supplier<List<ID>>() {
-              @Override
-              public List<ID> get() {
-                return Lists.newArrayList();
-              }
-            });
+        // try to find a dependency path between lock's owner thread and a current thread,
+        // only reading owned locks of threads once the path is known to be a cycle
+        List<ThreadLocks> threadsInCycle = Lists.newArrayList();
+        List<ReentrantCycleDetectingLock<?>> locksInCycle = Lists.newArrayList();
         // lock that is a part of a potential locks cycle, starts with current lock
-        ReentrantCycleDetectingLock lockOwnerWaitingOn = this;
-        // try to find a dependency path between lock's owner thread and a current thread
-        while (lockOwnerWaitingOn != null && lockOwnerWaitingOn.lockOwnerThreadId != null) {
-          Long threadOwnerThreadWaits = lockOwnerWaitingOn.lockOwnerThreadId;
+        ReentrantCycleDetectingLock<?> lockOwnerWaitingOn = this;
+        while (owner != null) {
           // in case locks cycle exists lock we're waiting for is part of it
-          potentialLocksCycle.putAll(threadOwnerThreadWaits,
-              getAllLockIdsAfter(threadOwnerThreadWaits, lockOwnerWaitingOn));
+          threadsInCycle.add(owner);
+          locksInCycle.add(lockOwnerWaitingOn);
 
-          if (threadOwnerThreadWaits == currentThreadId) {
+          if (owner == current) {
             // owner thread depends on current thread, cycle detected
-            return potentialLocksCycle;
+            return getAllLockIdsAfter(threadsInCycle, locksInCycle);
           }
           // going for the next thread we wait on indirectly
-          lockOwnerWaitingOn = lockThreadIsWaitingOn.get(threadOwnerThreadWaits);
+          lockOwnerWaitingOn = owner.waitingOn;
+          owner = lockOwnerWaitingOn == null ? null : lockOwnerWaitingOn.lockOwner;
         }
         // no dependency path from an owner thread to a current thread
         return ImmutableListMultimap.of();
       }
 
+      /** Return locks owned by each thread after a lock specified, inclusive. */
+      private ListMultimap<Long, ID> getAllLockIdsAfter(
+          List<ThreadLocks> threads, List<ReentrantCycleDetectingLock<?>> locks) {
+        ListMultimap<Long, ID> potentialLocksCycle = Multimaps.newListMultimap(
+            new LinkedHashMap<Long, Collection<ID>>(),
+            new Supplier<List<ID>>() {
+              @Override
+              public List<ID> get() {
+                return Lists.newArrayList();
+              }
+            });
+        for (int i = 0; i < threads.size(); i++) {
+          ThreadLocks thread = threads.get(i);
+          potentialLocksCycle.putAll(thread.threadId, getAllLockIdsAfter(thread, locks.get(i)));
+        }
+        return potentialLocksCycle;
+      }
+
       /** Return locks owned by a thread after a lock specified, inclusive. */
-      private List<ID> getAllLockIdsAfter(long threadId, ReentrantCycleDetectingLock lock) {
+      private List<ID> getAllLockIdsAfter(ThreadLocks thread, ReentrantCycleDetectingLock<?> lock) {
         List<ID> ids = Lists.newArrayList();
         boolean found = false;
-        Collection<ReentrantCycleDetectingLock<?>> ownedLocks = locksOwnedByThread.get(threadId);
-        Preconditions.checkNotNull(ownedLocks,
-            "Internal error: No locks were found taken by a thread");
-        for (ReentrantCycleDetectingLock ownedLock : ownedLocks) {
+        for (ReentrantCycleDetectingLock<?> ownedLock : thread.ownedLocks) {
           if (ownedLock == lock) {
             found = true;
           }
           if (found && ownedLock.lockFactory == this.lockFactory) {
-            // All locks are stored in a shared map therefore there is no way to
+            // Records of all factories are shared therefore there is no way to
             // enforce type safety. We know that our cast is valid as we check for a lock's
             // factory. If the lock was generated by the
             // same factory it has to have same type as the current lock.
@@ -298,9 +332,10 @@ interface CycleDetectingLock<ID> {
       @Override public String toString() {
         // copy is made to prevent a data race
         // no synchronization is used, potentially stale data, should be good enough
-        Long threadId = this.lockOwnerThreadId;
-        if (threadId != null) {
-          return String.format("%s[%s][locked by Id=%d]", super.toString(), userLockId, threadId);
+        ThreadLocks owner = this.lockOwner;
+        if (owner != null) {
+          return String.format("%s[%s][locked by Id=%d]",
+              super.toString(), userLockId, owner.threadId);
         } else {
           return String.format("%s[%s][unlocked]", super.toString(), userLockId);
         }
@@ -16,8 +16,13 @@
 
 package com.google.inject.internal;
 
+import static com.google.inject.internal.InternalFlags.getMemberAccessOption;
+
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.inject.internal.InternalFlags.MemberAccessOption;
 import com.google.inject.spi.InjectionPoint;
 
 import java.lang.reflect.Constructor;
@@ -33,34 +38,69 @@ import java.util.List;
  */
 final class DefaultConstructionProxyFactory<T> implements ConstructionProxyFactory<T> {
 
+  /**
+   * Proxies shared by all injectors, since they only depend on the injection point. The injection
+   * points are those of the {@link InjectionPointCache shared cache}, so that they are found by
+   * identity. Proxies reference their injection points, so they are weak too, and kept by the
+   * injectors using them.
+   */
+  private static final Cache<InjectionPoint, ConstructionProxy<?>> proxies =
+      CacheBuilder.newBuilder().weakKeys().weakValues().build();
+
   private final InjectionPoint injectionPoint;
+  private final MemberAccessOption memberAccess;
 
   /**
    * @param injectionPoint an injection point whose member is a constructor of {@code T}.
    */
   DefaultConstructionProxyFactory(InjectionPoint injectionPoint) {
+    this(injectionPoint, getMemberAccessOption());
+  }
+
+  /**
+   * @param injectionPoint an injection point whose member is a constructor of {@code T}.
+   * @param memberAccess how the constructor is invoked, regardless of the
+   *     {@code guice_member_access} flag
+   */
+  DefaultConstructionProxyFactory(InjectionPoint injectionPoint, MemberAccessOption memberAccess) {
     this.injectionPoint = injectionPoint;
+    this.memberAccess = memberAccess;
   }
 
   @Override
+  @SuppressWarnings("unchecked") // the injection point is for a constructor of T
   public ConstructionProxy<T> create() {
+    if (memberAccess != getMemberAccessOption()) {
+      return newProxy(); // the shared proxies invoke constructors as the flag asks
+    }
+    ConstructionProxy<T> proxy = (ConstructionProxy<T>) proxies.getIfPresent(injectionPoint);
+    if (proxy == null) {
+      proxy = newProxy();
+      proxies.put(injectionPoint, proxy);
+    }
+    return proxy;
+  }
+
+  private ConstructionProxy<T> newProxy() {
     @SuppressWarnings("unchecked") // the injection point is for a constructor of T
     final Constructor<T> constructor = (Constructor<T>) injectionPoint.getMember();
 
     /*if[AOP]*/
-    try {
-      net.sf.cglib.reflect.FastClass fc =
-          BytecodeGen.newFastClassForMember(constructor);
-      if (fc != null) {
-        int index = fc.getIndex(constructor.getParameterTypes());
-        // We could just fall back to reflection in this case but I believe this should actually
-        // be impossible.
-        Preconditions.checkArgument(index >= 0,
-            "Could not find constructor %s in fast class",
-            constructor);
-        return new FastClassProxy<T>(injectionPoint, constructor, fc, index);
-      }
-    } catch (net.sf.cglib.core.CodeGenerationException e) {/* fall-through */}
+    if (memberAccess == MemberAccessOption.FAST_CLASS) {
+      try {
+        net.sf.cglib.reflect.FastClass fc =
+            BytecodeGen.newFastClassForMember(constructor);
+        if (fc != null) {
+          int index = fc.getIndex(constructor.getParameterTypes());
+          // We could just fall back to reflection in this case but I believe this should actually
+          // be impossible.
+          Preconditions.checkArgument(index >= 0,
+              "Could not find constructor %s in fast class",
+              constructor);
+          return new FastClassProxy<T>(injectionPoint, constructor, fc, index);
+        }
+      } catch (net.sf.cglib.core.CodeGenerationException e) {/* fall-through */}
+    }
     /*end[AOP]*/
 
     return new ReflectiveProxy<T>(injectionPoint, constructor);
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.reflect.FastClass;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The enhanced classes applying method interceptors, shared by all injectors. Each is keyed by the
+ * class it extends, the visibility that picks the class loader it is defined in, and the methods
+ * it intercepts, and kept for as long as a constructor of some injector uses it. Besides the
+ * enhanced class, an entry keeps the FastClass calling its constructors.
+ *
+ * <p>The cache counts its hits and misses, and the size of the bytecode of the classes it
+ * generated and reused, which approximates the metaspace reusing them saved. See
+ * {@link com.google.inject.spi.EnhancedClassStats}.
+ */
+public final class EnhancedClassCache {
+  private EnhancedClassCache() {}
+
+  /** Values are weak: constructors hold them, and an entry goes with the last of its injectors. */
+  private static final Cache<Key, EnhancedClass> CACHE =
+      CacheBuilder.newBuilder().weakValues().build();
+
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+  private static final AtomicLong generatedBytes = new AtomicLong();
+  private static final AtomicLong savedBytes = new AtomicLong();
+
+  /**
+   * Returns the enhanced subclass of {@code type} for the methods and callbacks of
+   * {@code filter} and {@code callbackTypes}, generating it if no injector uses it yet.
+   *
+   * @param filter the callback filter, equal for enhancers intercepting the same methods
+   * @param specialized the methods to specialize, also part of {@code filter}
+   */
+  static EnhancedClass get(final Class<?> type, final BytecodeGen.Visibility visibility,
+      final CallbackFilter filter, final Class<? extends Callback>[] callbackTypes,
+      final List<Method> specialized) {
+    Key key = new Key(type, visibility, filter, callbackTypes);
+    EnhancedClass enhancedClass = CACHE.getIfPresent(key);
+    if (enhancedClass != null) {
+      hits.incrementAndGet();
+      savedBytes.addAndGet(enhancedClass.bytes.get());
+      return enhancedClass;
+    }
+    try {
+      enhancedClass = CACHE.get(key, new Callable<EnhancedClass>() {
+        public EnhancedClass call() {
+          misses.incrementAndGet();
+          return generate(type, visibility, filter, callbackTypes, specialized);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw Exceptions.rethrowCause(e);
+    } catch (UncheckedExecutionException e) {
+      throw Exceptions.rethrowCause(e);
+    } catch (ExecutionError e) {
+      throw Exceptions.rethrowCause(e);
+    }
+    return enhancedClass;
+  }
+
+  private static EnhancedClass generate(Class<?> type, BytecodeGen.Visibility visibility,
+      CallbackFilter filter, Class<? extends Callback>[] callbackTypes, List<Method> specialized) {
+    Enhancer enhancer = BytecodeGen.newEnhancer(type, visibility);
+    enhancer.setCallbackFilter(filter);
+    enhancer.setCallbackTypes(callbackTypes);
+    GeneratorStrategy generating = specialized.isEmpty()
+        ? DefaultGeneratorStrategy.INSTANCE
+        : new SpecializedDispatch(specialized, enhancer.getClassLoader(), type);
+    if (BytecodeCache.isEnabled()) {
+      generating = BytecodeCache.strategy(generating, type, "Enhancer " + visibility + " " + filter
+          + " " + Arrays.toString(callbackTypes));
+    }
+    SizeRecordingStrategy strategy = new SizeRecordingStrategy(generating);
+    enhancer.setStrategy(strategy);
+
+    InjectorEvents events = InjectorEvents.INSTALLED;
+    Object event = events != null ? events.beginClassGeneration(type, "Enhancer") : null;
+    Class<?> enhanced;
+    try {
+      enhanced = enhancer.createClass(); // returns the class cglib still has if possible
+    } finally {
+      if (event != null) {
+        events.endClassGeneration(event);
+      }
+    }
+    generatedBytes.addAndGet(strategy.size);
+    return new EnhancedClass(enhanced, strategy.size);
+  }
+
+  /** Returns the number of times a generated class was reused. */
+  public static long hitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of times a class was generated, looked up again from cglib, or read from the
+   * bytecode cache.
+   */
+  public static long missCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of enhanced classes cached, including those about to be collected. */
+  public static long size() {
+    return CACHE.size();
+  }
+
+  /** Returns the size of the bytecode generated for enhanced classes and their FastClasses. */
+  public static long generatedBytes() {
+    return generatedBytes.get();
+  }
+
+  /** Returns the size of the bytecode of the classes that were reused rather than generated. */
+  public static long savedBytes() {
+    return savedBytes.get();
+  }
+
+  /** An enhanced class, with the FastClass calling each of its constructors. */
+  static final class EnhancedClass {
+    final Class<?> type;
+    /** The size of the bytecode generated for the class and its FastClasses. */
+    final AtomicLong bytes;
+    private final ConcurrentMap<Constructor<?>, FastClass> fastClasses = Maps.newConcurrentMap();
+
+    EnhancedClass(Class<?> type, long bytes) {
+      this.type = type;
+      this.bytes = new AtomicLong(bytes);
+    }
+
+    /** Returns the FastClass calling the enhanced constructor overriding {@code constructor}. */
+    FastClass fastClassFor(Constructor<?> constructor) {
+      FastClass fastClass = fastClasses.get(constructor);
+      if (fastClass == null) {
+        SizeRecordingStrategy strategy = new SizeRecordingStrategy(BytecodeCache.strategy(
+            DefaultGeneratorStrategy.INSTANCE, type, "FastClass"));
+        fastClass = BytecodeGen.newFastClassForMember(type, constructor, strategy);
+        if (fastClass == null) {
+          return null;
+        }
+        FastClass existing = fastClasses.putIfAbsent(constructor, fastClass);
+        if (existing != null) {
+          return existing;
+        }
+        bytes.addAndGet(strategy.size);
+        generatedBytes.addAndGet(strategy.size);
+      }
+      return fastClass;
+    }
+  }
+
+  /**
+   * The type, the visibility that picks the class loader of the enhanced class, and the methods
+   * intercepted. The type is weak so that stale keys, which the cache drops lazily, don't keep its
+   * class loader.
+   */
+  private static final class Key {
+    final WeakReference<Class<?>> type;
+    final BytecodeGen.Visibility visibility;
+    final CallbackFilter filter;
+    final List<Class<? extends Callback>> callbackTypes;
+    final int hashCode;
+
+    Key(Class<?> type, BytecodeGen.Visibility visibility, CallbackFilter filter,
+        Class<? extends Callback>[] callbackTypes) {
+      this.type = new WeakReference<Class<?>>(type);
+      this.visibility = visibility;
+      this.filter = filter;
+      this.callbackTypes = ImmutableList.copyOf(callbackTypes);
+      this.hashCode = Arrays.hashCode(new Object[] {type, visibility, filter, this.callbackTypes});
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      Class<?> type = this.type.get();
+      return type != null
+          && type == other.type.get()
+          && visibility == other.visibility
+          && filter.equals(other.filter)
+          && callbackTypes.equals(other.callbackTypes);
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /** Notes the size of the classes a strategy generates. */
+  private static final class SizeRecordingStrategy implements GeneratorStrategy {
+    private final GeneratorStrategy delegate;
+    long size;
+
+    SizeRecordingStrategy(GeneratorStrategy delegate) {
+      this.delegate = delegate;
+    }
+
+    public byte[] generate(ClassGenerator generator) throws Exception {
+      byte[] bytes = delegate.generate(generator);
+      size += bytes.length;
+      return bytes;
+    }
+  }
+}
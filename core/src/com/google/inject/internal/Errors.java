@@ -17,6 +17,7 @@
 package com.google.inject.internal;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Equivalence;
 import com.google.common.base.Objects;
@@ -98,9 +99,9 @@ public final class Errors implements Serializable {
   private final Errors parent;
 
   /**
-   * The leaf source for errors added here.
+   * The leaf source for errors added here. Only changed by {@link #reuseFor}.
    */
-  private final Object source;
+  private Object source;
 
   /**
    * null unless (root == this) and error messages exist. Never an empty list.
@@ -125,6 +126,17 @@ public final class Errors implements Serializable {
     this.source = source;
   }
 
+  /**
+   * Returns this root instance, now using {@code source} as its reference point. Only to be used on
+   * roots that have no messages and are confined to a single thread, so that a successful
+   * provision doesn't need to allocate errors. See {@link InternalContext#borrowErrors}.
+   */
+  Errors reuseFor(Object source) {
+    checkState(root == this && errors == null, "Errors are in use");
+    this.source = source;
+    return this;
+  }
+
   /**
    * Returns an instance that uses {@code source} as a reference point for newly added errors.
    */
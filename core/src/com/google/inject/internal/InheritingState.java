@@ -61,6 +61,9 @@ final class InheritingState implements State {
   private final WeakKeySet blacklistedKeys;
   private final Object lock;
 
+  /** The lookups of all levels together, or null to look them up level by level. */
+  private volatile Flattened flattened;
+
   InheritingState(State parent) {
     this.parent = checkNotNull(parent, "parent");
     this.lock = (parent == State.NONE) ? this : parent.lock();
@@ -73,6 +76,10 @@ final class InheritingState implements State {
 
   @SuppressWarnings("unchecked") // we only put in BindingImpls that match their key types
   public <T> BindingImpl<T> getExplicitBinding(Key<T> key) {
+    Flattened flattened = this.flattened;
+    if (flattened != null) {
+      return (BindingImpl<T>) flattened.explicitBindings.get(key);
+    }
     Binding<?> binding = explicitBindings.get(key);
     return binding != null ? (BindingImpl<T>) binding : parent.getExplicitBinding(key);
   }
@@ -82,15 +89,21 @@ final class InheritingState implements State {
   }
 
   public void putBinding(Key<?> key, BindingImpl<?> binding) {
+    flattened = null;
     explicitBindingsMutable.put(key, binding);
   }
 
   public ScopeBinding getScopeBinding(Class<? extends Annotation> annotationType) {
+    Flattened flattened = this.flattened;
+    if (flattened != null) {
+      return flattened.scopes.get(annotationType);
+    }
     ScopeBinding scopeBinding = scopes.get(annotationType);
     return scopeBinding != null ? scopeBinding : parent.getScopeBinding(annotationType);
   }
 
   public void putScopeBinding(Class<? extends Annotation> annotationType, ScopeBinding scope) {
+    flattened = null;
     scopes.put(annotationType, scope);
   }
 
@@ -99,25 +112,59 @@ final class InheritingState implements State {
   }
 
   public void addConverter(TypeConverterBinding typeConverterBinding) {
+    flattened = null;
     converters.add(typeConverterBinding);
   }
 
   public TypeConverterBinding getConverter(
       String stringValue, TypeLiteral<?> type, Errors errors, Object source) {
+    Flattened flattened = this.flattened;
+    if (flattened != null) {
+      return match(flattened.converters, null, stringValue, type, errors, source);
+    }
     TypeConverterBinding matchingConverter = null;
     for (State s = this; s != State.NONE; s = s.parent()) {
-      for (TypeConverterBinding converter : s.getConvertersThisLevel()) {
-        if (converter.getTypeMatcher().matches(type)) {
-          if (matchingConverter != null) {
-            errors.ambiguousTypeConversion(stringValue, source, type, matchingConverter, converter);
-          }
-          matchingConverter = converter;
+      matchingConverter = match(
+          s.getConvertersThisLevel(), matchingConverter, stringValue, type, errors, source);
+    }
+    return matchingConverter;
+  }
+
+  /** Returns the last of {@code converters} matching {@code type}, or {@code matchingConverter}. */
+  private static TypeConverterBinding match(Iterable<TypeConverterBinding> converters,
+      TypeConverterBinding matchingConverter, String stringValue, TypeLiteral<?> type,
+      Errors errors, Object source) {
+    for (TypeConverterBinding converter : converters) {
+      if (converter.getTypeMatcher().matches(type)) {
+        if (matchingConverter != null) {
+          errors.ambiguousTypeConversion(stringValue, source, type, matchingConverter, converter);
         }
+        matchingConverter = converter;
       }
     }
     return matchingConverter;
   }
 
+  public void flatten() {
+    List<InheritingState> levels = Lists.newArrayList();
+    for (State s = this; s != State.NONE; s = s.parent()) {
+      levels.add((InheritingState) s);
+    }
+
+    // bindings and scopes of nearer levels win, like they do when looking up level by level
+    Map<Key<?>, Binding<?>> allBindings = Maps.newHashMap();
+    Map<Class<? extends Annotation>, ScopeBinding> allScopes = Maps.newHashMap();
+    for (InheritingState level : Lists.reverse(levels)) {
+      allBindings.putAll(level.explicitBindings);
+      allScopes.putAll(level.scopes);
+    }
+    ImmutableList.Builder<TypeConverterBinding> allConverters = ImmutableList.builder();
+    for (InheritingState level : levels) {
+      allConverters.addAll(level.converters);
+    }
+    flattened = new Flattened(allBindings, allScopes, allConverters.build());
+  }
+
   /*if[AOP]*/
   public void addMethodAspect(MethodAspect methodAspect) {
     methodAspects.add(methodAspect);
@@ -194,4 +241,20 @@ final class InheritingState implements State {
     }
     return builder.build();
   }
+
+  /** The explicit bindings, scopes and converters of a state and all its parents. */
+  private static final class Flattened {
+    final Map<Key<?>, Binding<?>> explicitBindings;
+    final Map<Class<? extends Annotation>, ScopeBinding> scopes;
+    /** Converters of the nearest level first, in the order of level by level lookups. */
+    final ImmutableList<TypeConverterBinding> converters;
+
+    Flattened(Map<Key<?>, Binding<?>> explicitBindings,
+        Map<Class<? extends Annotation>, ScopeBinding> scopes,
+        ImmutableList<TypeConverterBinding> converters) {
+      this.explicitBindings = explicitBindings;
+      this.scopes = scopes;
+      this.converters = converters;
+    }
+  }
 }
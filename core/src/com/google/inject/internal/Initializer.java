@@ -55,7 +55,7 @@ final class Initializer {
   /**
    * Instances that need injection during injector creation to a source that registered them.
    * New references added before {@link #validateOustandingInjections}.
-   * Cleared up in {@link #injectAll}.
+   * Cleared up in {@link #releaseInjections}.
    */
   private final List<InjectableReference<?>> pendingInjections = Lists.newArrayList();
 
@@ -134,6 +134,17 @@ final class Initializer {
         errors.merge(e.getErrors());
       }
     }
+  }
+
+  /**
+   * Releases what was kept to inject the instances once they are all injected, and the injector
+   * is created. Their references are still used by constant bindings, but only return the
+   * instances from then on.
+   */
+  void releaseInjections() {
+    for (InjectableReference<?> reference : pendingInjections) {
+      reference.release();
+    }
     pendingInjections.clear();
   }
 
@@ -143,12 +154,14 @@ final class Initializer {
     private volatile InjectableReferenceState state = InjectableReferenceState.NEW;
     private volatile MembersInjectorImpl<T> membersInjector = null;
 
-    private final InjectorImpl injector;
     private final T instance;
-    private final Object source;
-    private final Key<T> key;
-    private final ProvisionListenerStackCallback<T> provisionCallback;
-    private final CycleDetectingLock<?> lock;
+
+    // only needed until the instance is injected, see release()
+    private InjectorImpl injector;
+    private Object source;
+    private Key<T> key;
+    private ProvisionListenerStackCallback<T> provisionCallback;
+    private volatile CycleDetectingLock<?> lock;
 
     public InjectableReference(InjectorImpl injector, T instance, Key<T> key,
         ProvisionListenerStackCallback<T> provisionCallback, Object source,
@@ -179,6 +192,11 @@ final class Initializer {
       if (state == InjectableReferenceState.READY) {
         return instance;
       }
+      // the lock is only released once the instance is ready
+      CycleDetectingLock<?> lock = this.lock;
+      if (lock == null) {
+        return instance;
+      }
 
       // acquire lock for current binding to initialize an instance
       Multimap<?, ?> lockCycle = lock.lockOrDetectPotentialLocksCycle();
@@ -236,6 +254,18 @@ final class Initializer {
       }
     }
 
+    /** Drops the state used to inject the instance, if it is injected. */
+    void release() {
+      if (state == InjectableReferenceState.READY) {
+        membersInjector = null;
+        injector = null;
+        source = null;
+        key = null;
+        provisionCallback = null;
+        lock = null;
+      }
+    }
+
     @Override public String toString() {
       return instance.toString();
     }
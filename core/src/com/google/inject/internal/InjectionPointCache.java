@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.inject.ConfigurationException;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.spi.Message;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Injection points of types, shared by all injectors in the JVM. They only depend on the types
+ * themselves, so new injectors, child injectors in particular, don't need to find them again.
+ * Injectors still resolve the bindings of these injection points themselves.
+ *
+ * <p>Injection points reference their classes, so both the classes and their injection points
+ * are weakly referenced, and the injection points of a class are kept for as long as an injector
+ * that looked them up is. Lookups outside injectors only share the injection points injectors
+ * already keep. The cache never keeps classes from being unloaded.
+ */
+final class InjectionPointCache {
+
+  private static final LoadingCache<Class<?>, ForClass> cache =
+      CacheBuilder.newBuilder().weakKeys().weakValues().build(
+          new CacheLoader<Class<?>, ForClass>() {
+            @Override public ForClass load(Class<?> rawType) {
+              return new ForClass();
+            }
+          });
+
+  private InjectionPointCache() {}
+
+  /**
+   * Returns the injection point of the injectable constructor of {@code type}, as
+   * {@link InjectionPoint#forConstructorOf(TypeLiteral)} does.
+   */
+  static InjectionPoint forConstructorOf(TypeLiteral<?> type) {
+    return forConstructorOf(type, null);
+  }
+
+  /**
+   * Returns the injection point of the injectable constructor of {@code type}, keeping the injection
+   * points of its class cached for as long as {@code injector} is, unless that is null.
+   */
+  static InjectionPoint forConstructorOf(TypeLiteral<?> type, InjectorImpl injector) {
+    ConcurrentMap<TypeLiteral<?>, Result> constructors = forClass(type, injector).constructors;
+    Result result = constructors.get(type);
+    if (result == null) {
+      try {
+        result = new Result(InjectionPoint.forConstructorOf(type), null);
+      } catch (ConfigurationException e) {
+        result = new Result(null, ImmutableList.copyOf(e.getErrorMessages()));
+      }
+      constructors.putIfAbsent(type, result);
+    }
+    return (InjectionPoint) result.get();
+  }
+
+  /**
+   * Returns the injectable instance methods and fields of {@code type}, as
+   * {@link InjectionPoint#forInstanceMethodsAndFields(TypeLiteral)} does.
+   */
+  static Set<InjectionPoint> forInstanceMethodsAndFields(TypeLiteral<?> type) {
+    return forInstanceMethodsAndFields(type, null);
+  }
+
+  /**
+   * Returns the injectable instance methods and fields of {@code type}, keeping the injection points
+   * of its class cached for as long as {@code injector} is, unless that is null.
+   */
+  @SuppressWarnings("unchecked") // only sets of injection points are kept for instance members
+  static Set<InjectionPoint> forInstanceMethodsAndFields(
+      TypeLiteral<?> type, InjectorImpl injector) {
+    ConcurrentMap<TypeLiteral<?>, Result> instanceMembers =
+        forClass(type, injector).instanceMembers;
+    Result result = instanceMembers.get(type);
+    if (result == null) {
+      try {
+        result = new Result(
+            ImmutableSet.copyOf(InjectionPoint.forInstanceMethodsAndFields(type)), null);
+      } catch (ConfigurationException e) {
+        Set<InjectionPoint> partialValue = e.getPartialValue();
+        result = new Result(ImmutableSet.copyOf(partialValue),
+            ImmutableList.copyOf(e.getErrorMessages()));
+      }
+      instanceMembers.putIfAbsent(type, result);
+    }
+    return (Set<InjectionPoint>) result.get();
+  }
+
+  /** Same as {@link #forInstanceMethodsAndFields(TypeLiteral)}. */
+  static Set<InjectionPoint> forInstanceMethodsAndFields(Class<?> type) {
+    return forInstanceMethodsAndFields(TypeLiteral.get(type));
+  }
+
+  private static ForClass forClass(TypeLiteral<?> type, InjectorImpl injector) {
+    ForClass forClass = cache.getUnchecked(type.getRawType());
+    if (injector != null) {
+      injector.sharedInjectionPoints.add(forClass);
+    }
+    return forClass;
+  }
+
+  /** The injection points of the type literals of one class, which may be parameterized. */
+  private static final class ForClass {
+    final ConcurrentMap<TypeLiteral<?>, Result> constructors = Maps.newConcurrentMap();
+    final ConcurrentMap<TypeLiteral<?>, Result> instanceMembers = Maps.newConcurrentMap();
+  }
+
+  /** Injection points, or the errors and partial value of a failed lookup. */
+  private static final class Result {
+    private final Object value;
+    private final ImmutableList<Message> errors;
+
+    Result(Object value, ImmutableList<Message> errors) {
+      this.value = value;
+      this.errors = errors;
+    }
+
+    /** Returns the value, or throws a new exception with the errors of the lookup. */
+    Object get() {
+      if (errors == null) {
+        return value;
+      }
+      ConfigurationException exception = new ConfigurationException(errors);
+      throw value != null ? exception.withPartialValue(value) : exception;
+    }
+  }
+}
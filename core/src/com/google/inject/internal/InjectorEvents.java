@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.Key;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives events of injector creation, just-in-time binding creation, singleton construction and
+ * class generation, for tools such as flight recorders. The implementation is found with a
+ * {@link ServiceLoader} when this class is initialized. Without one, no events are created, and
+ * Guice only pays for a null check at each place that could create one.
+ *
+ * <p>Each {@code begin} method returns an event, or null if the event isn't wanted, that is
+ * passed to the matching {@code end} method once the work is done. Events may begin and end on
+ * any thread, but each event ends on the thread that began it.
+ */
+public abstract class InjectorEvents {
+  private static final Logger logger = Logger.getLogger(InjectorEvents.class.getName());
+
+  /** The events installed, or null. */
+  static final InjectorEvents INSTALLED = load();
+
+  private static InjectorEvents load() {
+    try {
+      Iterator<InjectorEvents> events = ServiceLoader.load(
+          InjectorEvents.class, InjectorEvents.class.getClassLoader()).iterator();
+      return events.hasNext() ? events.next() : null;
+    } catch (Throwable e) {
+      // such as a JVM without the recorder the events are written to
+      logger.log(Level.FINE, "Injector events are not available", e);
+      return null;
+    }
+  }
+
+  /** Begins a phase of injector creation. */
+  public Object beginPhase() {
+    return null;
+  }
+
+  /** Ends a phase of injector creation, named once it is done. */
+  public void endPhase(Object event, String name) {}
+
+  /** Begins creating a just-in-time binding for {@code key}. */
+  public Object beginJustInTimeBinding(Key<?> key) {
+    return null;
+  }
+
+  public void endJustInTimeBinding(Object event) {}
+
+  /** Begins getting the singleton bound to {@code key}, by waiting for its creation lock. */
+  public Object beginSingleton(Key<?> key) {
+    return null;
+  }
+
+  /** Notes that the creation lock of a singleton was acquired, and its construction starts. */
+  public void singletonLockAcquired(Object event) {}
+
+  public void endSingleton(Object event) {}
+
+  /**
+   * Begins generating a class for {@code type}, {@code kind} being "Enhancer" for the subclasses
+   * applying method interceptors, and "FastClass" for the classes calling its members.
+   */
+  public Object beginClassGeneration(Class<?> type, String kind) {
+    return null;
+  }
+
+  public void endClassGeneration(Object event) {}
+}
@@ -38,6 +38,7 @@ import com.google.inject.ProvisionException;
 import com.google.inject.Scope;
 import com.google.inject.Stage;
 import com.google.inject.TypeLiteral;
+import com.google.inject.internal.InternalFlags.DependencyChainOption;
 import com.google.inject.internal.util.SourceProvider;
 import com.google.inject.spi.BindingTargetVisitor;
 import com.google.inject.spi.ConvertedConstantBinding;
@@ -58,6 +59,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default {@link Injector} implementation.
@@ -111,14 +113,46 @@ final class InjectorImpl implements Injector, Lookups {
   final BindingsMultimap bindingsMultimap = new BindingsMultimap();
   final InjectorOptions options;
 
-  /** Just-in-time binding cache. Guarded by state.lock() */
-  final Map<Key<?>, BindingImpl<?>> jitBindings = Maps.newHashMap();
+  /**
+   * Just-in-time binding cache. Changes are guarded by state.lock() and announced through
+   * {@link #jitBindingsVersion}, which lets lookups of existing bindings skip the lock.
+   */
+  final Map<Key<?>, BindingImpl<?>> jitBindings = Maps.newConcurrentMap();
   /**
    * Cache of Keys that we were unable to create JIT bindings for, so we don't
    * keep trying.  Also guarded by state.lock().
    */
   final Set<Key<?>> failedJitBindings = Sets.newHashSet();
 
+  /**
+   * The injection points this injector looked up in the {@link InjectionPointCache}, which keeps
+   * them for other injectors for as long as some injector keeps them here.
+   */
+  final Set<Object> sharedInjectionPoints = Sets.newConcurrentHashSet();
+
+  /**
+   * Version of the just-in-time bindings of the whole injector tree, shared by all injectors that
+   * share state.lock(). Odd while the bindings are being changed by the thread holding the lock,
+   * because they can then contain partially constructed bindings, or bindings that will be removed
+   * again when creating another binding fails.
+   */
+  final AtomicInteger jitBindingsVersion;
+
+  /**
+   * Source of the indexes of {@link ConstructionContext.Slot construction context slots}, shared by
+   * the injector tree just like the thread local contexts which are indexed by them. Also
+   * identifies the tree in the per-thread carrier of {@link InternalContext}.
+   */
+  private final AtomicInteger constructionContextSlots;
+
+  /**
+   * Whether provisions started by this injector record their dependency chain. Unless the
+   * {@code guice_dependency_chain} flag says otherwise, this is always true. Otherwise it is only
+   * true if this injector or its parent has provision listeners, the only users of the chain, or
+   * if it was created along with an injector that does, see {@link InternalInjectorCreator}.
+   */
+  private boolean recordDependencyChain;
+
   Lookups lookups = new DeferredLookups(this);
 
   InjectorImpl(InjectorImpl parent, State state, InjectorOptions injectorOptions) {
@@ -127,12 +161,14 @@ final class InjectorImpl implements Injector, Lookups {
     this.options = injectorOptions;
 
     if (parent != null) {
-      localContext = parent.localContext;
+      jitBindingsVersion = parent.jitBindingsVersion;
+      constructionContextSlots = parent.constructionContextSlots;
+      recordDependencyChain = parent.recordDependencyChain;
     } else {
-      // No ThreadLocal.initialValue(), as that would cause classloader leaks. See
-      // https://github.com/google/guice/issues/288#issuecomment-48216933,
-      // https://github.com/google/guice/issues/288#issuecomment-48216944
-      localContext = new ThreadLocal<Object[]>();
+      jitBindingsVersion = new AtomicInteger();
+      constructionContextSlots = new AtomicInteger();
+      recordDependencyChain =
+          InternalFlags.getDependencyChainOption() == DependencyChainOption.ALWAYS;
     }
   }
 
@@ -141,6 +177,24 @@ final class InjectorImpl implements Injector, Lookups {
     for (Binding<?> binding : state.getExplicitBindingsThisLevel().values()) {
       index(binding);
     }
+
+    int depth = 0;
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      depth++;
+    }
+    if (depth >= InternalFlags.getFlattenedLookupDepth()) {
+      state.flatten();
+    }
+  }
+
+  /** Returns true if this injector has provision listeners, including those of its parent. */
+  boolean hasProvisionListeners() {
+    return !state.getProvisionListenerBindings().isEmpty();
+  }
+
+  /** Records the dependency chains of the provisions this injector starts from now on. */
+  void recordDependencyChain() {
+    recordDependencyChain = true;
   }
 
   <T> void index(Binding<T> binding) {
@@ -169,16 +223,18 @@ final class InjectorImpl implements Injector, Lookups {
     if (explicitBinding != null) {
       return explicitBinding;
     }
-    synchronized (state.lock()) {
-      // See if any jit bindings have been created for this key.
-      for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
-        @SuppressWarnings("unchecked")
-        BindingImpl<T> jitBinding = (BindingImpl<T>) injector.jitBindings.get(key);
-        if(jitBinding != null) {
-          return jitBinding;
-        }
+    // See if any jit bindings have been created for this key.
+    int version = jitBindingsVersion.get();
+    BindingImpl<T> jitBinding = findJitBinding(key);
+    if (isChangingJitBindings(version) || jitBindingsVersion.get() != version) {
+      // jit bindings were changed while we looked, look again with exclusive access
+      synchronized (state.lock()) {
+        jitBinding = findJitBinding(key);
       }
     }
+    if (jitBinding != null) {
+      return jitBinding;
+    }
 
     // If Key is a Provider, we have to see if the type it is providing exists,
     // and, if so, we have to create the binding for the provider.
@@ -245,24 +301,21 @@ final class InjectorImpl implements Injector, Lookups {
       throws ErrorsException {
 
     boolean jitOverride = isProvider(key) || isTypeLiteral(key) || isMembersInjector(key);
+
+    // first try to find a JIT binding that we've already created, without locking if we can
+    int version = jitBindingsVersion.get();
+    if (!isChangingJitBindings(version)) {
+      BindingImpl<T> binding = findJitBinding(key);
+      if (binding != null && jitBindingsVersion.get() == version) {
+        return checkJitBindingAllowed(binding, key, errors, jitType, jitOverride);
+      }
+    }
+
     synchronized (state.lock()) {
-      // first try to find a JIT binding that we've already created
-      for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
-        @SuppressWarnings("unchecked") // we only store bindings that match their key
-        BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindings.get(key);
-
-        if (binding != null) {
-          // If we found a JIT binding and we don't allow them,
-          // fail.  (But allow bindings created through TypeConverters.)
-          if (options.jitDisabled
-              && jitType == JitLimitation.NO_JIT
-              && !jitOverride
-              && !(binding instanceof ConvertedConstantBindingImpl)) {
-            throw errors.jitDisabled(key).toException();
-          } else {
-            return binding;
-          }
-        }
+      // look again, now that jit bindings can't change under us
+      BindingImpl<T> binding = findJitBinding(key);
+      if (binding != null) {
+        return checkJitBindingAllowed(binding, key, errors, jitType, jitOverride);
       }
 
       // If we previously failed creating this JIT binding and our Errors has
@@ -282,12 +335,78 @@ final class InjectorImpl implements Injector, Lookups {
       if (failedJitBindings.contains(key) && errors.hasErrors()) {
         throw errors.toException();
       }
-      return createJustInTimeBindingRecursive(key, errors, options.jitDisabled, jitType);
+
+      boolean changingJitBindings = startJitBindingChanges();
+      InjectorEvents events = InjectorEvents.INSTALLED;
+      Object event = events != null ? events.beginJustInTimeBinding(key) : null;
+      try {
+        return createJustInTimeBindingRecursive(key, errors, options.jitDisabled, jitType);
+      } finally {
+        if (event != null) {
+          events.endJustInTimeBinding(event);
+        }
+        if (changingJitBindings) {
+          finishJitBindingChanges();
+        }
+      }
     } // end synchronized(state.lock())
   }
 
+  /** Returns {@code binding}, unless we found a JIT binding and we don't allow them. */
+  private <T> BindingImpl<T> checkJitBindingAllowed(BindingImpl<T> binding, Key<T> key,
+      Errors errors, JitLimitation jitType, boolean jitOverride) throws ErrorsException {
+    // If we found a JIT binding and we don't allow them,
+    // fail.  (But allow bindings created through TypeConverters.)
+    if (options.jitDisabled
+        && jitType == JitLimitation.NO_JIT
+        && !jitOverride
+        && !(binding instanceof ConvertedConstantBindingImpl)) {
+      throw errors.jitDisabled(key).toException();
+    }
+    return binding;
+  }
+
+  /**
+   * Returns the JIT binding for {@code key} from this injector or its ancestors, or null. Unless
+   * the caller holds state.lock(), the result must be validated against
+   * {@link #jitBindingsVersion}.
+   */
+  private <T> BindingImpl<T> findJitBinding(Key<T> key) {
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      @SuppressWarnings("unchecked") // we only store bindings that match their key
+      BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindings.get(key);
+      if (binding != null) {
+        return binding;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isChangingJitBindings(int version) {
+    return (version & 1) != 0;
+  }
+
+  /**
+   * Announces that the caller, which must hold state.lock(), is about to change JIT bindings
+   * in this injector tree. Returns true if the caller is the first one to do so, and must call
+   * {@link #finishJitBindingChanges} when done.
+   */
+  boolean startJitBindingChanges() {
+    int version = jitBindingsVersion.get();
+    if (isChangingJitBindings(version)) {
+      return false;
+    }
+    jitBindingsVersion.set(version + 1);
+    return true;
+  }
+
+  /** Announces that the changes started by {@link #startJitBindingChanges} are complete. */
+  void finishJitBindingChanges() {
+    jitBindingsVersion.set(jitBindingsVersion.get() + 1);
+  }
+
   /** Returns true if the key type is Provider (but not a subclass of Provider). */
-  private static boolean isProvider(Key<?> key) {
+  static boolean isProvider(Key<?> key) {
     return key.getTypeLiteral().getRawType().equals(Provider.class);
   }
 
@@ -1007,30 +1126,30 @@ final class InjectorImpl implements Injector, Lookups {
   <T> Provider<T> getProviderOrThrow(final Dependency<T> dependency, Errors errors) throws ErrorsException {
     final Key<T> key = dependency.getKey();
     final BindingImpl<? extends T> binding = getBindingOrThrow(key, errors, JitLimitation.NO_JIT);
+    final InternalFactory<? extends T> internalFactory = binding.getInternalFactory();
+    final Object source = binding.getSource();
 
     return new Provider<T>() {
       public T get() {
-        final Errors errors = new Errors(dependency);
+        // Everything needed is resolved up front and the outermost provision on a thread borrows
+        // its errors, so a successful provision doesn't allocate anything of its own.
+        InternalContext context = enterContext();
+        Errors errors = context.borrowErrors(dependency);
+        Dependency previous = context.pushDependency(dependency, source);
         try {
-          T t = callInContext(new ContextualCallable<T>() {
-            public T call(InternalContext context) throws ErrorsException {
-              Dependency previous = context.pushDependency(dependency, binding.getSource());
-              try {
-                return binding.getInternalFactory().get(errors, context, dependency, false);
-              } finally {
-                context.popStateAndSetDependency(previous);
-              }
-            }
-          });
+          T t = internalFactory.get(errors, context, dependency, false);
           errors.throwIfNewErrors(0);
           return t;
         } catch (ErrorsException e) {
           throw new ProvisionException(errors.merge(e.getErrors()).getMessages());
+        } finally {
+          context.popStateAndSetDependency(previous);
+          context.exit();
         }
       }
 
       @Override public String toString() {
-        return binding.getInternalFactory().toString();
+        return internalFactory.toString();
       }
     };
   }
@@ -1054,42 +1173,27 @@ final class InjectorImpl implements Injector, Lookups {
     return getProvider(type).get();
   }
 
-  /**
-   * Holds Object[] as a mutable wrapper, rather than InternalContext, since array operations are
-   * faster than ThreadLocal.set() / .get() operations.
-   *
-   * Holds Object[] rather than InternalContext[], since localContext never gets cleaned up at any
-   * point. This could lead to problems when, for example, an OSGI application is reloaded,
-   * the InjectorImpl is destroyed, but the thread that the injector runs on is kept alive.
-   * In such a case, ThreadLocal itself would hold on to a reference to localContext,
-   * which would hold on to the old InternalContext.class object, which would hold on to the
-   * old classloader that loaded that class, and so on.
-   **/
-  private final ThreadLocal<Object[]> localContext;
-
   /** Only to be called by the {@link SingletonScope} provider. */
   InternalContext getLocalContext() {
-    return (InternalContext) localContext.get()[0];
+    return InternalContext.current(constructionContextSlots);
+  }
+
+  /**
+   * Enters the thread local context, activating one if this is the outermost call of the injector
+   * tree on the current thread. Every call must be paired with a call to
+   * {@link InternalContext#exit}.
+   */
+  InternalContext enterContext() {
+    return InternalContext.enter(options, constructionContextSlots, recordDependencyChain);
   }
 
-  /** Looks up thread local context. Creates (and removes) a new context if necessary. */
+  /** Looks up thread local context. Activates (and deactivates) a context if necessary. */
   <T> T callInContext(ContextualCallable<T> callable) throws ErrorsException {
-    Object[] reference = localContext.get();
-    if (reference == null) {
-      reference = new Object[1];
-      localContext.set(reference);
-    }
-    if (reference[0] == null) {
-      reference[0] = new InternalContext(options);
-      try {
-        return callable.call((InternalContext) reference[0]);
-      } finally {
-        // Only clear contexts if this call created them.
-        reference[0] = null;
-      }
-    } else {
-      // Someone else will clean up this local context.
-      return callable.call((InternalContext) reference[0]);
+    InternalContext context = enterContext();
+    try {
+      return callable.call(context);
+    } finally {
+      context.exit();
     }
   }
 
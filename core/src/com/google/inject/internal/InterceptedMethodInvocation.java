@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+
+/**
+ * The invocation of an intercepted method, holding its target and arguments for all interceptors
+ * of its chain. The first interceptor is given this invocation, and each of the others a small
+ * view of it that only knows which interceptor follows. Where an invocation proceeds to never
+ * changes, so interceptors may proceed more than once, later, or from other threads.
+ *
+ * <p>Subclasses hold the arguments and call the method itself. This class is public for the
+ * subclasses {@link SpecializedDispatch} generates alongside enhanced classes, and isn't meant to
+ * be used otherwise.
+ */
+public abstract class InterceptedMethodInvocation implements MethodInvocation {
+
+  private final InterceptorStackCallback callback;
+  /** The enhanced instance whose method is intercepted. */
+  protected final Object proxy;
+
+  /**
+   * @param callback the {@link InterceptorStackCallback} of the method, typed as an object for
+   *     generated subclasses
+   * @param proxy the enhanced instance
+   */
+  protected InterceptedMethodInvocation(Object callback, Object proxy) {
+    this.callback = (InterceptorStackCallback) callback;
+    this.proxy = proxy;
+  }
+
+  /** Calls the intercepted method with the arguments, bypassing the interceptors. */
+  protected abstract Object invokeMethod() throws Throwable;
+
+  /**
+   * Runs the interceptors and the method. Called once per invocation, by the callback or the
+   * enhanced class.
+   */
+  public final Object dispatch() throws Throwable {
+    try {
+      return proceedTo(0);
+    } catch (Throwable t) {
+      InterceptorStackCallback.pruneStacktrace(t);
+      throw t;
+    }
+  }
+
+  /** Proceeds from the first interceptor, which is given this invocation, to the second. */
+  public final Object proceed() throws Throwable {
+    return proceedTo(1);
+  }
+
+  /** Invokes the interceptor at {@code index}, or the method past the last one. */
+  final Object proceedTo(int index) throws Throwable {
+    MethodInterceptor[] interceptors = callback.interceptors;
+    if (index == interceptors.length) {
+      return invokeMethod();
+    }
+    return interceptors[index].invoke(index == 0 ? this : new Hop(this, index + 1));
+  }
+
+  public final Method getMethod() {
+    return callback.method;
+  }
+
+  public final Object getThis() {
+    return proxy;
+  }
+
+  public final AccessibleObject getStaticPart() {
+    return getMethod();
+  }
+
+  /** The invocation as given to an interceptor past the first, proceeding to the next one. */
+  static final class Hop implements MethodInvocation {
+    private final InterceptedMethodInvocation invocation;
+    private final int next;
+
+    Hop(InterceptedMethodInvocation invocation, int next) {
+      this.invocation = invocation;
+      this.next = next;
+    }
+
+    public Object proceed() throws Throwable {
+      // same as proceedTo, inlined to keep one frame per interceptor
+      MethodInterceptor[] interceptors = invocation.callback.interceptors;
+      return next == interceptors.length
+          ? invocation.invokeMethod()
+          : interceptors[next].invoke(new Hop(invocation, next + 1));
+    }
+
+    public Object[] getArguments() {
+      return invocation.getArguments();
+    }
+
+    public Method getMethod() {
+      return invocation.getMethod();
+    }
+
+    public Object getThis() {
+      return invocation.getThis();
+    }
+
+    public AccessibleObject getStaticPart() {
+      return invocation.getStaticPart();
+    }
+  }
+}
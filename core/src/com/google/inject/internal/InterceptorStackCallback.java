@@ -16,14 +16,10 @@
 
 package com.google.inject.internal;
 
-import com.google.common.collect.Lists;
-
 import net.sf.cglib.proxy.MethodProxy;
 
 import org.aopalliance.intercept.MethodInterceptor;
-import org.aopalliance.intercept.MethodInvocation;
 
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -39,6 +35,8 @@ final class InterceptorStackCallback implements net.sf.cglib.proxy.MethodInterce
   private static final Set<String> AOP_INTERNAL_CLASSES = new HashSet<String>(Arrays.asList(
       InterceptorStackCallback.class.getName(),
       InterceptedMethodInvocation.class.getName(),
+      InterceptedMethodInvocation.Hop.class.getName(),
+      BoxedInvocation.class.getName(),
       MethodProxy.class.getName()));
 
   final MethodInterceptor[] interceptors;
@@ -52,68 +50,49 @@ final class InterceptorStackCallback implements net.sf.cglib.proxy.MethodInterce
 
   public Object intercept(Object proxy, Method method, Object[] arguments,
       MethodProxy methodProxy) throws Throwable {
-    return new InterceptedMethodInvocation(proxy, methodProxy, arguments, 0).proceed();
+    return new BoxedInvocation(this, proxy, methodProxy, arguments).dispatch();
   }
 
-  private class InterceptedMethodInvocation implements MethodInvocation {
+  /** An invocation of the method with boxed arguments, called through its cglib proxy. */
+  private static final class BoxedInvocation extends InterceptedMethodInvocation {
 
-    final Object proxy;
     final Object[] arguments;
     final MethodProxy methodProxy;
-    final int index;
 
-    public InterceptedMethodInvocation(Object proxy, MethodProxy methodProxy,
-        Object[] arguments, int index) {
-      this.proxy = proxy;
+    BoxedInvocation(InterceptorStackCallback callback, Object proxy, MethodProxy methodProxy,
+        Object[] arguments) {
+      super(callback, proxy);
       this.methodProxy = methodProxy;
       this.arguments = arguments;
-      this.index = index;
     }
 
-    public Object proceed() throws Throwable {
-      try {
-        return index == interceptors.length
-            ? methodProxy.invokeSuper(proxy, arguments)
-            : interceptors[index].invoke(
-                new InterceptedMethodInvocation(proxy, methodProxy, arguments, index + 1));
-      } catch (Throwable t) {
-        pruneStacktrace(t);
-        throw t;
-      }
-    }
-
-    public Method getMethod() {
-      return method;
+    @Override protected Object invokeMethod() throws Throwable {
+      return methodProxy.invokeSuper(proxy, arguments);
     }
 
     public Object[] getArguments() {
       return arguments;
     }
-
-    public Object getThis() {
-      return proxy;
-    }
-
-    public AccessibleObject getStaticPart() {
-      return getMethod();
-    }
   }
 
   /**
    * Removes stacktrace elements related to AOP internal mechanics from the
    * throwable's stack trace and any causes it may have.
    */
-  private void pruneStacktrace(Throwable throwable) {
+  static void pruneStacktrace(Throwable throwable) {
     for(Throwable t = throwable; t != null; t = t.getCause()) {
       StackTraceElement[] stackTrace = t.getStackTrace();
-      List<StackTraceElement> pruned = Lists.newArrayList();
+      StackTraceElement[] pruned = new StackTraceElement[stackTrace.length];
+      int size = 0;
       for (StackTraceElement element : stackTrace) {
         String className = element.getClassName();
         if (!AOP_INTERNAL_CLASSES.contains(className) && !className.contains("$EnhancerByGuice$")) {
-          pruned.add(element);
+          pruned[size++] = element;
         }
       }
-      t.setStackTrace(pruned.toArray(new StackTraceElement[pruned.size()]));
+      if (size < stackTrace.length) {
+        t.setStackTrace(Arrays.copyOf(pruned, size));
+      }
     }
   }
 }
@@ -18,15 +18,17 @@ package com.google.inject.internal;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.inject.Key;
 import com.google.inject.internal.InjectorImpl.InjectorOptions;
 import com.google.inject.spi.Dependency;
 import com.google.inject.spi.DependencyAndSource;
 
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Internal context. Used to coordinate injections and support circular
@@ -36,9 +38,65 @@ import java.util.Map;
  */
 final class InternalContext {
 
-  private final InjectorOptions options;
+  /**
+   * The per-thread carrier shared by all injectors. It holds the injector being scoped by
+   * {@link Scoping}, followed by pairs of injector trees and weak references to their contexts.
+   * The tree a thread used last comes first, so a thread working with a single tree finds its
+   * context at a fixed index, whatever the number of injectors in the tree.
+   *
+   * <p>Contexts are only weakly referenced, so that neither they, nor the construction contexts
+   * and injectors they refer to, are kept alive by long-lived threads. A context in use is kept
+   * alive by the callers between {@link #enter} and {@link #exit}.
+   *
+   * <p>Holds Object[] rather than Guice types, since the carrier never gets cleaned up at any
+   * point. This could lead to problems when, for example, an OSGI application is reloaded, the
+   * injector is destroyed, but the thread that the injector runs on is kept alive. In such a case,
+   * the ThreadLocal would hold on to the old InternalContext.class object, which would hold on to
+   * the old classloader that loaded that class, and so on. For the same reason there is no
+   * ThreadLocal.initialValue(), see https://github.com/google/guice/issues/288.
+   */
+  private static final ThreadLocal<Object[]> carriers = new ThreadLocal<Object[]>();
+
+  /** Index of the injector being scoped in the carrier. */
+  private static final int SCOPING_INJECTOR = 0;
+
+  /** Index of the first pair of injector tree and context in the carrier. */
+  private static final int FIRST_TREE = 1;
+
+  private static final ConstructionContext<?>[] NO_CONSTRUCTION_CONTEXTS = {};
+  private static final ConstructionContext.Slot[] NO_SLOTS = {};
+
+  /**
+   * Number of slot indexes kept in arrays. Indexes are never reused, so a tree that keeps creating
+   * child injectors eventually runs past it, and the contexts of later slots are kept in a map.
+   */
+  static final int MAX_INDEXED_SLOTS = 1024;
+
+  /** Set by the outermost {@link #enter} call. */
+  private InjectorOptions options;
 
-  private Map<Object, ConstructionContext<?>> constructionContexts = Maps.newHashMap();
+  /** Number of calls currently using this context. */
+  private int enterCount;
+
+  /**
+   * Errors for the outermost provision on this thread, shared by successive provisions so that
+   * successful ones don't allocate. Replaced whenever a provision leaves errors behind.
+   */
+  private Errors errors = new Errors();
+
+  /** Source of {@link ConstructionContext.Slot} indexes, shared by the injector tree. */
+  private final AtomicInteger slotIndexes;
+
+  /** Construction contexts by slot index, along with the slot owning each of them. */
+  private ConstructionContext<?>[] constructionContexts = NO_CONSTRUCTION_CONTEXTS;
+  private ConstructionContext.Slot[] constructionContextSlots = NO_SLOTS;
+
+  /**
+   * Construction contexts of slots indexed by another injector tree or past
+   * {@link #MAX_INDEXED_SLOTS}, created on demand. Weakly keyed, so that the slots of factories
+   * which have been garbage collected, along with their injectors, don't accumulate.
+   */
+  private Map<ConstructionContext.Slot, ConstructionContext<?>> foreignConstructionContexts;
 
   /** Keeps track of the type that is currently being requested for injection. */
   private Dependency<?> dependency;
@@ -46,21 +104,207 @@ final class InternalContext {
   /** Keeps track of the hierarchy of types needed during injection. */
   private final DependencyStack state = new DependencyStack();
 
-  InternalContext(InjectorOptions options) {
-    this.options = options;
+  /**
+   * Whether {@link #state} is recorded, set by the outermost {@link #enter} call asking for it and
+   * cleared when that call exits, so that pushes and pops stay balanced.
+   */
+  private boolean recordingState;
+
+  /** The {@link #enterCount} of the call that started recording {@link #state}. */
+  private int recordingSince;
+
+  private InternalContext(AtomicInteger slotIndexes) {
+    this.slotIndexes = slotIndexes;
+  }
+
+  /** Returns the carrier of the current thread, creating it if necessary. */
+  private static Object[] carrier() {
+    Object[] carrier = carriers.get();
+    if (carrier == null) {
+      carrier = new Object[FIRST_TREE + 2];
+      carriers.set(carrier);
+    }
+    return carrier;
+  }
+
+  /** Returns the carrier of the current thread, with the pair of {@code tree} at the front. */
+  private static Object[] carrier(AtomicInteger tree) {
+    Object[] carrier = carrier();
+    return carrier[FIRST_TREE] == tree ? carrier : moveToFront(carrier, tree);
+  }
+
+  /**
+   * Moves the pair of {@code tree} to the front of the carrier, and returns the carrier. A tree
+   * the carrier doesn't hold takes the place of a tree whose context has been garbage collected,
+   * or is appended to a new carrier.
+   */
+  private static Object[] moveToFront(Object[] carrier, AtomicInteger tree) {
+    int found = -1;
+    int unused = -1;
+    for (int i = FIRST_TREE; i < carrier.length; i += 2) {
+      if (carrier[i] == tree) {
+        found = i;
+        break;
+      } else if (unused < 0 && isCollected((WeakReference<?>) carrier[i + 1])) {
+        unused = i;
+      }
+    }
+    if (found < 0) {
+      if (unused < 0) {
+        // every tree still has a context on this thread, make room for one more
+        unused = carrier.length;
+        carrier = Arrays.copyOf(carrier, carrier.length + 2);
+        carriers.set(carrier);
+      }
+      found = unused;
+      carrier[found] = tree;
+      carrier[found + 1] = null;
+    }
+    Object context = carrier[found + 1];
+    carrier[found] = carrier[FIRST_TREE];
+    carrier[found + 1] = carrier[FIRST_TREE + 1];
+    carrier[FIRST_TREE] = tree;
+    carrier[FIRST_TREE + 1] = context;
+    return carrier;
+  }
+
+  /** Returns the context at the front of the carrier, or null. */
+  private static InternalContext first(Object[] carrier) {
+    @SuppressWarnings("unchecked")
+    WeakReference<InternalContext> context =
+        (WeakReference<InternalContext>) carrier[FIRST_TREE + 1];
+    return context != null ? context.get() : null;
+  }
+
+  private static boolean isCollected(WeakReference<?> context) {
+    return context == null || context.get() == null;
+  }
+
+  /**
+   * Enters the context of the injector tree whose construction context slots are indexed by
+   * {@code slotIndexes} on the current thread. The outermost call activates the context left idle
+   * by the previous outermost call if it has not been garbage collected yet, or a new one
+   * otherwise. Every call must be paired with a call to {@link #exit}, and the caller must keep
+   * the returned context until then, see {@link #carriers}.
+   *
+   * @param slotIndexes source of construction context slot indexes for the injector tree, which
+   *     also identifies the tree
+   * @param recordDependencyChain whether the dependency chain should be recorded from this call
+   *     on, if it isn't already, see {@link #getDependencyChain}
+   */
+  static InternalContext enter(InjectorOptions options, AtomicInteger slotIndexes,
+      boolean recordDependencyChain) {
+    Object[] carrier = carrier(slotIndexes);
+    InternalContext context = first(carrier);
+    if (context == null) {
+      context = new InternalContext(slotIndexes);
+      carrier[FIRST_TREE + 1] = new WeakReference<InternalContext>(context);
+    }
+    if (context.enterCount == 0) {
+      context.options = options;
+    }
+    context.enterCount++;
+    if (recordDependencyChain && !context.recordingState) {
+      context.recordingState = true;
+      context.recordingSince = context.enterCount;
+    }
+    return context;
+  }
+
+  /**
+   * Returns the context that is currently in use on this thread by the injector tree whose
+   * construction context slots are indexed by {@code slotIndexes}, or null.
+   */
+  static InternalContext current(AtomicInteger slotIndexes) {
+    InternalContext context = first(carrier(slotIndexes));
+    return context != null && context.enterCount > 0 ? context : null;
+  }
+
+  /**
+   * Sets the injector whose bindings are being scoped on the current thread, so that scopes
+   * needing it can find it, and returns the previous one.
+   *
+   * @see SingletonScope#scope
+   */
+  static InjectorImpl setScopingInjector(InjectorImpl injector) {
+    Object[] carrier = carrier();
+    InjectorImpl previous = (InjectorImpl) carrier[SCOPING_INJECTOR];
+    carrier[SCOPING_INJECTOR] = injector;
+    return previous;
+  }
+
+  /** Returns the injector whose bindings are being scoped on the current thread, or null. */
+  static InjectorImpl getScopingInjector() {
+    Object[] carrier = carriers.get();
+    return carrier != null ? (InjectorImpl) carrier[SCOPING_INJECTOR] : null;
+  }
+
+  /** Exits this context, deactivating it when the outermost call exits. */
+  void exit() {
+    if (recordingState && enterCount == recordingSince) {
+      recordingState = false;
+    }
+    if (--enterCount == 0) {
+      dependency = null;
+      if (errors.hasErrors()) {
+        errors = new Errors();
+      }
+    }
+  }
+
+  /**
+   * Returns errors for a provision of {@code dependency} that is about to start in this context.
+   * The outermost provision borrows the shared errors, nested provisions get their own.
+   */
+  Errors borrowErrors(Dependency<?> dependency) {
+    return enterCount == 1 ? errors.reuseFor(dependency) : new Errors(dependency);
   }
 
   public InjectorOptions getInjectorOptions() {
     return options;
   }
 
+  /**
+   * Returns the construction context of the factory owning {@code slot}, found by the index of
+   * the slot. Slots of factories shared with another injector tree may collide with the slots of
+   * this tree, their contexts are kept in a map instead, as are those of slots indexed past
+   * {@link #MAX_INDEXED_SLOTS}.
+   */
   @SuppressWarnings("unchecked")
-  public <T> ConstructionContext<T> getConstructionContext(Object key) {
+  public <T> ConstructionContext<T> getConstructionContext(ConstructionContext.Slot slot) {
+    int index = slot.index(slotIndexes);
+    if (index >= MAX_INDEXED_SLOTS) {
+      return getForeignConstructionContext(slot);
+    } else if (index < constructionContextSlots.length) {
+      ConstructionContext.Slot owner = constructionContextSlots[index];
+      if (owner == slot) {
+        return (ConstructionContext<T>) constructionContexts[index];
+      } else if (owner != null) {
+        return getForeignConstructionContext(slot);
+      }
+    } else {
+      int length = Math.min(
+          Math.max(index + 1, constructionContextSlots.length * 2), MAX_INDEXED_SLOTS);
+      constructionContexts = Arrays.copyOf(constructionContexts, length);
+      constructionContextSlots = Arrays.copyOf(constructionContextSlots, length);
+    }
+    ConstructionContext<T> constructionContext = new ConstructionContext<T>();
+    constructionContexts[index] = constructionContext;
+    constructionContextSlots[index] = slot;
+    return constructionContext;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> ConstructionContext<T> getForeignConstructionContext(ConstructionContext.Slot slot) {
+    if (foreignConstructionContexts == null) {
+      foreignConstructionContexts =
+          new WeakHashMap<ConstructionContext.Slot, ConstructionContext<?>>();
+    }
     ConstructionContext<T> constructionContext
-        = (ConstructionContext<T>) constructionContexts.get(key);
+        = (ConstructionContext<T>) foreignConstructionContexts.get(slot);
     if (constructionContext == null) {
       constructionContext = new ConstructionContext<T>();
-      constructionContexts.put(key, constructionContext);
+      foreignConstructionContexts.put(slot, constructionContext);
     }
     return constructionContext;
   }
@@ -73,27 +317,39 @@ final class InternalContext {
   public Dependency<?> pushDependency(Dependency<?> dependency, Object source) {
     Dependency<?> previous = this.dependency;
     this.dependency = dependency;
-    state.add(dependency, source);
+    if (recordingState) {
+      state.add(dependency, source);
+    }
     return previous;
   }
 
   /** Pops the current state & sets the new dependency. */
   public void popStateAndSetDependency(Dependency<?> newDependency) {
-    state.pop();
+    if (recordingState) {
+      state.pop();
+    }
     this.dependency = newDependency;
   }
 
   /** Adds to the state without setting the dependency. */
   public void pushState(Key<?> key, Object source) {
-    state.add(key, source);
+    if (recordingState) {
+      state.add(key, source);
+    }
   }
   
   /** Pops from the state without setting a dependency. */
   public void popState() {
-    state.pop();
+    if (recordingState) {
+      state.pop();
+    }
   }
 
-  /** Returns the current dependency chain (all the state). */
+  /**
+   * Returns the current dependency chain (all the state). When the {@code guice_dependency_chain}
+   * flag limits recording to injectors with provision listeners, the chain only starts at the
+   * outermost provision of such an injector on this thread, and is empty outside of them.
+   */
   public List<DependencyAndSource> getDependencyChain() {
     ImmutableList.Builder<DependencyAndSource> builder = ImmutableList.builder();
     for (int i = 0; i < state.size(); i += 2) {
@@ -36,6 +36,22 @@ public class InternalFlags {
   private static final NullableProvidesOption NULLABLE_PROVIDES
       = parseNullableProvidesOption(NullableProvidesOption.ERROR);
 
+  private static final MemberAccessOption MEMBER_ACCESS = parseMemberAccessOption();
+
+  private static final DependencyChainOption DEPENDENCY_CHAIN = parseDependencyChainOption();
+
+  private static final OriginalElementSourceOption ORIGINAL_ELEMENT_SOURCES =
+      parseOriginalElementSourceOption();
+
+  private static final InterceptorDispatchOption INTERCEPTOR_DISPATCH =
+      parseInterceptorDispatchOption();
+
+  private static final int EAGER_SINGLETON_THREADS = parseEagerSingletonThreads();
+
+  private static final int FLATTENED_LOOKUP_DEPTH = parseFlattenedLookupDepth();
+
+  private static final String BYTECODE_CACHE = getSystemOption("guice_bytecode_cache");
+
 
   /**
    * The options for Guice stack trace collection.
@@ -59,6 +75,56 @@ public class InternalFlags {
     BRIDGE
   }
 
+  /**
+   * The options for invoking constructors and methods of injected types.
+   */
+  public enum MemberAccessOption {
+    /** Use reflection, which the JVM compiles into accessors for frequently invoked members */
+    REFLECTION,
+    /** Use a cglib FastClass generated for each declaring class (Default) */
+    FAST_CLASS
+  }
+
+  /**
+   * The options for recording the chain of dependencies being provisioned.
+   */
+  public enum DependencyChainOption {
+    /** Always record the dependency chain (Default) */
+    ALWAYS,
+    /**
+     * Only record it in injectors with provision listeners, which may ask for it, their child
+     * injectors, and the injectors created along with them
+     */
+    WITH_PROVISION_LISTENERS
+  }
+
+  /**
+   * The options for the sources of elements that other elements were copied from, for example
+   * by {@link com.google.inject.util.Modules#override overriding modules}.
+   *
+   * <p>Only the original sources of copies are affected, and only as the copies are recorded.
+   * Element sources are otherwise kept as recorded, also after the injector is built.
+   */
+  public enum OriginalElementSourceOption {
+    /** Keep original element sources as they were recorded (Default) */
+    KEEP,
+    /** Drop the call stacks of original element sources, keep their declaring and module sources */
+    DROP_STACK_TRACES
+  }
+
+  /**
+   * The options for passing the arguments of intercepted methods to their interceptors.
+   */
+  public enum InterceptorDispatchOption {
+    /** Box the arguments into an array on every call (Default) */
+    BOXED,
+    /**
+     * Generate an invocation class for each intercepted method taking primitives, which keeps the
+     * arguments unboxed until an interceptor asks for them
+     */
+    SPECIALIZED
+  }
+
   public enum NullableProvidesOption {
     /** Ignore null parameters to @Provides methods. */
     IGNORE,
@@ -80,6 +146,48 @@ public class InternalFlags {
     return NULLABLE_PROVIDES;
   }
 
+  public static MemberAccessOption getMemberAccessOption() {
+    return MEMBER_ACCESS;
+  }
+
+  public static DependencyChainOption getDependencyChainOption() {
+    return DEPENDENCY_CHAIN;
+  }
+
+  public static OriginalElementSourceOption getOriginalElementSourceOption() {
+    return ORIGINAL_ELEMENT_SOURCES;
+  }
+
+  public static InterceptorDispatchOption getInterceptorDispatchOption() {
+    return INTERCEPTOR_DISPATCH;
+  }
+
+  /**
+   * Returns the number of threads used to create eager singletons of a new injector. Eager
+   * singletons are created on the thread creating the injector unless this is more than one.
+   */
+  public static int getEagerSingletonThreads() {
+    return EAGER_SINGLETON_THREADS;
+  }
+
+  /**
+   * Returns the depth of injectors, the root injector being 1, from which the explicit bindings,
+   * scopes and converters of an injector and its ancestors are looked up in a single index rather
+   * than one level at a time. Lookups are never flattened unless the
+   * {@code guice_flattened_lookup_depth} flag is set.
+   */
+  public static int getFlattenedLookupDepth() {
+    return FLATTENED_LOOKUP_DEPTH;
+  }
+
+  /**
+   * Returns the path of the directory keeping the bytecode of generated classes between runs, or
+   * null if they are generated on every run. See {@code BytecodeCache}.
+   */
+  public static String getBytecodeCache() {
+    return BYTECODE_CACHE;
+  }
+
   private static IncludeStackTraceOption parseIncludeStackTraceOption() {
     return getSystemOption("guice_include_stack_traces",
         IncludeStackTraceOption.ONLY_FOR_DECLARING_SOURCE);
@@ -95,6 +203,30 @@ public class InternalFlags {
     return getSystemOption("guice_check_nullable_provides_params", defaultValue);
   }
 
+  private static MemberAccessOption parseMemberAccessOption() {
+    return getSystemOption("guice_member_access", MemberAccessOption.FAST_CLASS);
+  }
+
+  private static DependencyChainOption parseDependencyChainOption() {
+    return getSystemOption("guice_dependency_chain", DependencyChainOption.ALWAYS);
+  }
+
+  private static OriginalElementSourceOption parseOriginalElementSourceOption() {
+    return getSystemOption("guice_original_element_sources", OriginalElementSourceOption.KEEP);
+  }
+
+  private static InterceptorDispatchOption parseInterceptorDispatchOption() {
+    return getSystemOption("guice_interceptor_dispatch", InterceptorDispatchOption.BOXED);
+  }
+
+  private static int parseEagerSingletonThreads() {
+    return getSystemOption("guice_eager_singleton_threads", 1);
+  }
+
+  private static int parseFlattenedLookupDepth() {
+    return getSystemOption("guice_flattened_lookup_depth", Integer.MAX_VALUE);
+  }
+
   /**
    * Gets the system option indicated by the specified key; runs as a privileged action.
    *
@@ -135,4 +267,58 @@ public class InternalFlags {
       return defaultValue;
     }
   }
+
+  /**
+   * Gets the positive integer system option indicated by the specified key; runs as a privileged
+   * action.
+   *
+   * @param name of the system option
+   * @param defaultValue if the option is not set or disallowed by the security manager
+   *
+   * @return value of the option, defaultValue if not set
+   */
+  private static int getSystemOption(final String name, int defaultValue) {
+    String value = null;
+    try {
+      value = AccessController.doPrivileged(new PrivilegedAction<String>() {
+        public String run() {
+          return System.getProperty(name);
+        }
+      });
+      if (value == null || value.length() == 0) {
+        return defaultValue;
+      }
+      int intValue = Integer.parseInt(value);
+      if (intValue > 0) {
+        return intValue;
+      }
+    } catch (SecurityException e) {
+      return defaultValue;
+    } catch (NumberFormatException e) {
+      // logged below
+    }
+    logger.warning(value + " is not a valid flag value for " + name + ". "
+        + " Values must be positive integers");
+    return defaultValue;
+  }
+
+  /**
+   * Gets the system option indicated by the specified key; runs as a privileged action.
+   *
+   * @param name of the system option
+   *
+   * @return value of the option, null if not set or disallowed by the security manager
+   */
+  private static String getSystemOption(final String name) {
+    try {
+      String value = AccessController.doPrivileged(new PrivilegedAction<String>() {
+        public String run() {
+          return System.getProperty(name);
+        }
+      });
+      return (value != null && value.length() > 0) ? value : null;
+    } catch (SecurityException e) {
+      return null;
+    }
+  }
 }
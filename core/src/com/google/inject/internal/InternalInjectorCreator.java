@@ -16,8 +16,12 @@
 
 package com.google.inject.internal;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.inject.Binding;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -27,7 +31,6 @@ import com.google.inject.Provider;
 import com.google.inject.Scope;
 import com.google.inject.Stage;
 import com.google.inject.TypeLiteral;
-import com.google.inject.internal.util.Stopwatch;
 import com.google.inject.spi.Dependency;
 import com.google.inject.spi.TypeConverterBinding;
 
@@ -58,7 +61,7 @@ import java.util.Set;
  */
 public final class InternalInjectorCreator {
 
-  private final Stopwatch stopwatch = new Stopwatch();
+  private StartupProfiler profiler = new StartupProfiler(false);
   private final Errors errors = new Errors();
 
   private final Initializer initializer = new Initializer();
@@ -67,6 +70,8 @@ public final class InternalInjectorCreator {
 
   private final InjectorShell.Builder shellBuilder = new InjectorShell.Builder();
   private List<InjectorShell> shells;
+  private InjectorImpl parent;
+  private int eagerSingletonThreads = InternalFlags.getEagerSingletonThreads();
   
   public InternalInjectorCreator() {
     injectionRequestProcessor = new InjectionRequestProcessor(errors, initializer);
@@ -84,10 +89,27 @@ public final class InternalInjectorCreator {
    * injector also required them.
    */
   public InternalInjectorCreator parentInjector(InjectorImpl parent) {
+    this.parent = parent;
     shellBuilder.parent(parent);
     return this;
   }
 
+  /**
+   * Sets the number of threads creating eager singletons, defaults to the
+   * {@code guice_eager_singleton_threads} flag.
+   */
+  InternalInjectorCreator eagerSingletonThreads(int eagerSingletonThreads) {
+    checkArgument(eagerSingletonThreads > 0, "eagerSingletonThreads must be positive");
+    this.eagerSingletonThreads = eagerSingletonThreads;
+    return this;
+  }
+
+  /** Sets the profiler timing the creation of the injector. */
+  public InternalInjectorCreator profiler(StartupProfiler profiler) {
+    this.profiler = checkNotNull(profiler, "profiler");
+    return this;
+  }
+
   public InternalInjectorCreator addModules(Iterable<? extends Module> modules) {
     shellBuilder.addModules(modules);
     return this;
@@ -98,16 +120,38 @@ public final class InternalInjectorCreator {
       throw new AssertionError("Already built, builders are not reusable.");
     }
 
+    StartupProfiler previous = profiler.attach();
+    try {
+      return buildProfiled();
+    } finally {
+      profiler.detach(previous);
+    }
+  }
+
+  private Injector buildProfiled() {
     // Synchronize while we're building up the bindings and other injector state. This ensures that
     // the JIT bindings in the parent injector don't change while we're being built
     synchronized (shellBuilder.lock()) {
-      shells = shellBuilder.build(initializer, bindingData, stopwatch, errors);
-      stopwatch.resetAndLog("Injector construction");
-
-      initializeStatically();
+      // Existing JIT bindings are looked up without the lock, so tell those lookups that the
+      // parent's JIT bindings are in flux until we're done.
+      boolean changingJitBindings = parent != null && parent.startJitBindingChanges();
+      try {
+        shells = shellBuilder.build(initializer, bindingData, profiler, errors);
+        profiler.endPhase("Injector construction");
+
+        initializeStatically();
+      } finally {
+        if (changingJitBindings) {
+          parent.finishJitBindingChanges();
+        }
+      }
     }
 
     injectDynamically();
+    for (InjectorShell shell : shells) {
+      profiler.addJustInTimeBindings(shell.getInjector().jitBindings.size());
+    }
+    releaseCreationState();
 
     if (shellBuilder.getStage() == Stage.TOOL) {
       // wrap the primaryInjector in a ToolStageInjector
@@ -121,30 +165,39 @@ public final class InternalInjectorCreator {
   /** Initialize and validate everything. */
   private void initializeStatically() {
     bindingData.initializeBindings();
-    stopwatch.resetAndLog("Binding initialization");
+    profiler.endPhase("Binding initialization");
 
+    // the injectors of private modules provision the bindings they expose for their parent, so
+    // all injectors created together record dependency chains if any of them has listeners
+    boolean provisionListeners = false;
     for (InjectorShell shell : shells) {
       shell.getInjector().index();
+      provisionListeners |= shell.getInjector().hasProvisionListeners();
     }
-    stopwatch.resetAndLog("Binding indexing");
+    if (provisionListeners) {
+      for (InjectorShell shell : shells) {
+        shell.getInjector().recordDependencyChain();
+      }
+    }
+    profiler.endPhase("Binding indexing");
 
     injectionRequestProcessor.process(shells);
-    stopwatch.resetAndLog("Collecting injection requests");
+    profiler.endPhase("Collecting injection requests");
 
     bindingData.runCreationListeners(errors);
-    stopwatch.resetAndLog("Binding validation");
+    profiler.endPhase("Binding validation");
 
     injectionRequestProcessor.validate();
-    stopwatch.resetAndLog("Static validation");
+    profiler.endPhase("Static validation");
 
     initializer.validateOustandingInjections(errors);
-    stopwatch.resetAndLog("Instance member validation");
+    profiler.endPhase("Instance member validation");
 
     new LookupProcessor(errors).process(shells);
     for (InjectorShell shell : shells) {
       ((DeferredLookups) shell.getInjector().lookups).initialize(errors);
     }
-    stopwatch.resetAndLog("Provider verification");
+    profiler.endPhase("Provider verification");
 
     for (InjectorShell shell : shells) {
       if (!shell.getElements().isEmpty()) {
@@ -169,54 +222,86 @@ public final class InternalInjectorCreator {
    */
   private void injectDynamically() {
     injectionRequestProcessor.injectMembers();
-    stopwatch.resetAndLog("Static member injection");
+    profiler.endPhase("Static member injection");
 
     initializer.injectAll(errors);
-    stopwatch.resetAndLog("Instance injection");
+    profiler.endPhase("Instance injection");
     errors.throwCreationExceptionIfErrorsExist();
 
     if(shellBuilder.getStage() != Stage.TOOL) {
       for (InjectorShell shell : shells) {
         loadEagerSingletons(shell.getInjector(), shellBuilder.getStage(), errors);
       }
-      stopwatch.resetAndLog("Preloading singletons");
+      profiler.endPhase("Preloading singletons");
     }
     errors.throwCreationExceptionIfErrorsExist();
   }
 
+  /**
+   * Releases the state that was only needed to create the injector, but is still reachable from
+   * its bindings, so that it can be collected while the injector is in use.
+   */
+  private void releaseCreationState() {
+    initializer.releaseInjections();
+    profiler.endPhase("Releasing creation state");
+  }
+
   /**
    * Loads eager singletons, or all singletons if we're in Stage.PRODUCTION. Bindings discovered
-   * while we're binding these singletons are not be eager.
+   * while we're binding these singletons are not be eager. Singletons are loaded by a
+   * {@link ParallelSingletonLoader} if more than one thread may be used.
    */
   void loadEagerSingletons(InjectorImpl injector, Stage stage, final Errors errors) {
     @SuppressWarnings("unchecked") // casting Collection<Binding> to Collection<BindingImpl> is safe
     Iterable<BindingImpl<?>> candidateBindings = ImmutableList.copyOf(Iterables.concat(
         (Collection) injector.state.getExplicitBindingsThisLevel().values(),
         injector.jitBindings.values()));
+    List<BindingImpl<?>> eagerSingletons = Lists.newArrayList();
     for (final BindingImpl<?> binding : candidateBindings) {
       if (isEagerSingleton(injector, binding, stage)) {
-        try {
-          injector.callInContext(new ContextualCallable<Void>() {
-            Dependency<?> dependency = Dependency.get(binding.getKey());
-            public Void call(InternalContext context) {
-              Dependency previous = context.pushDependency(dependency, binding.getSource());
-              Errors errorsForBinding = errors.withSource(dependency);
-              try {
-                binding.getInternalFactory().get(errorsForBinding, context, dependency, false);
-              } catch (ErrorsException e) {
-                errorsForBinding.merge(e.getErrors());
-              } finally {
-                context.popStateAndSetDependency(previous);
-              }
-
-              return null;
-            }
-          });
-        } catch (ErrorsException e) {
-          throw new AssertionError();
-        }
+        eagerSingletons.add(binding);
       }
     }
+
+    if (eagerSingletonThreads > 1 && eagerSingletons.size() > 1) {
+      new ParallelSingletonLoader(injector, eagerSingletons, profiler)
+          .load(eagerSingletonThreads, errors);
+    } else {
+      for (BindingImpl<?> binding : eagerSingletons) {
+        loadEagerSingleton(injector, binding, errors, profiler);
+      }
+    }
+  }
+
+  /**
+   * Gets the instance of {@code binding}, adding any errors to {@code errors}, and records the time
+   * it took with {@code profiler}.
+   */
+  static void loadEagerSingleton(InjectorImpl injector, final BindingImpl<?> binding,
+      final Errors errors, StartupProfiler profiler) {
+    long[] start = profiler.startSingleton();
+    try {
+      injector.callInContext(new ContextualCallable<Void>() {
+        Dependency<?> dependency = Dependency.get(binding.getKey());
+        public Void call(InternalContext context) {
+          Dependency previous = context.pushDependency(dependency, binding.getSource());
+          Errors errorsForBinding = errors.withSource(dependency);
+          try {
+            binding.getInternalFactory().get(errorsForBinding, context, dependency, false);
+          } catch (ErrorsException e) {
+            errorsForBinding.merge(e.getErrors());
+          } finally {
+            context.popStateAndSetDependency(previous);
+          }
+
+          return null;
+        }
+      });
+    } catch (ErrorsException e) {
+      throw new AssertionError();
+    } finally {
+      profiler.endSingleton(binding.getKey(), start);
+    }
   }
 
   private boolean isEagerSingleton(InjectorImpl injector, BindingImpl<?> binding, Stage stage) {
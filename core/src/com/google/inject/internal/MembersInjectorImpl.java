@@ -36,6 +36,10 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
   private final ImmutableList<SingleMemberInjector> memberInjectors;
   private final ImmutableSet<MembersInjector<? super T>> userMembersInjectors;
   private final ImmutableSet<InjectionListener<? super T>> injectionListeners;
+  /** {@link #memberInjectors} as an array, which is what each injection iterates. */
+  private final SingleMemberInjector[] memberInjectorArray;
+  /** True if injecting members or notifying listeners never does anything. */
+  private final boolean injectsNothing;
   /*if[AOP]*/
   private final ImmutableList<MethodAspect> addedAspects;
   /*end[AOP]*/
@@ -47,6 +51,9 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
     this.memberInjectors = memberInjectors;
     this.userMembersInjectors = encounter.getMembersInjectors();
     this.injectionListeners = encounter.getInjectionListeners();
+    this.memberInjectorArray = memberInjectors.toArray(new SingleMemberInjector[0]);
+    this.injectsNothing = memberInjectors.isEmpty() && userMembersInjectors.isEmpty()
+        && injectionListeners.isEmpty();
     /*if[AOP]*/
     this.addedAspects = encounter.getAspects();
     /*end[AOP]*/
@@ -112,6 +119,14 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
     }
   }
 
+  /**
+   * Returns true if neither {@link #injectMembers(Object, Errors, InternalContext, boolean)} nor
+   * {@link #notifyListeners} would do anything, so callers can skip both.
+   */
+  boolean injectsNothing() {
+    return injectsNothing;
+  }
+
   void notifyListeners(T instance, Errors errors) throws ErrorsException {
     int numErrorsBefore = errors.size();
     for (InjectionListener<? super T> injectionListener : injectionListeners) {
@@ -126,8 +141,9 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
 
   void injectMembers(T t, Errors errors, InternalContext context, boolean toolableOnly) {
     // optimization: use manual for/each to save allocating an iterator here
-    for (int i = 0, size = memberInjectors.size(); i < size; i++) {
-      SingleMemberInjector injector = memberInjectors.get(i);
+    SingleMemberInjector[] memberInjectors = memberInjectorArray;
+    for (int i = 0, size = memberInjectors.length; i < size; i++) {
+      SingleMemberInjector injector = memberInjectors[i];
       if(!toolableOnly || injector.getInjectionPoint().isToolable()) {
         injector.inject(errors, context, t);
       }
@@ -90,7 +90,7 @@ final class MembersInjectorStore {
 
     Set<InjectionPoint> injectionPoints;
     try {
-      injectionPoints = InjectionPoint.forInstanceMethodsAndFields(type);
+      injectionPoints = InjectionPointCache.forInstanceMethodsAndFields(type, injector);
     } catch (ConfigurationException e) {
       errors.merge(e.getErrorMessages());
       injectionPoints = e.getPartialValue();
@@ -22,6 +22,7 @@ import com.google.inject.matcher.Matcher;
 
 import org.aopalliance.intercept.MethodInterceptor;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
@@ -36,6 +37,7 @@ final class MethodAspect {
   private final Matcher<? super Class<?>> classMatcher;
   private final Matcher<? super Method> methodMatcher;
   private final List<MethodInterceptor> interceptors;
+  private final Class<? extends Annotation> requiredAnnotationType;
 
   /**
    * @param classMatcher matches classes the interceptor should apply to. For example: {@code
@@ -49,6 +51,9 @@ final class MethodAspect {
     this.classMatcher = checkNotNull(classMatcher, "class matcher");
     this.methodMatcher = checkNotNull(methodMatcher, "method matcher");
     this.interceptors = checkNotNull(interceptors, "interceptors");
+    this.requiredAnnotationType = methodMatcher instanceof AnnotationRequiringMatcher
+        ? ((AnnotationRequiringMatcher) methodMatcher).requiredAnnotationType()
+        : null;
   }
 
   MethodAspect(Matcher<? super Class<?>> classMatcher,
@@ -67,4 +72,12 @@ final class MethodAspect {
   List<MethodInterceptor> interceptors() {
     return interceptors;
   }
+
+  /**
+   * Returns the annotation type of all methods this matches, or null if methods may match without
+   * any particular annotation.
+   */
+  Class<? extends Annotation> requiredAnnotationType() {
+    return requiredAnnotationType;
+  }
 }
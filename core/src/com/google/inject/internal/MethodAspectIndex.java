@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import net.sf.cglib.proxy.Enhancer;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The method aspects of an injector, indexed by the annotation types their method matchers
+ * require. Methods are only matched against the aspects that could match them: those requiring
+ * none of the annotations of a method are skipped without calling their matchers.
+ *
+ * <p>When every aspect applying to a class requires an annotation, and no method of the class has
+ * any of them, the class isn't intercepted and its methods aren't matched at all. The annotations
+ * of each class's methods are kept for that between injectors, for as long as the class is loaded.
+ */
+final class MethodAspectIndex {
+
+  /**
+   * The names of the annotation types on the methods an enhanced subclass of each class would
+   * override. Names rather than types, so the annotations don't keep their class loaders.
+   */
+  private static final LoadingCache<Class<?>, Set<String>> METHOD_ANNOTATIONS =
+      CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<Class<?>, Set<String>>() {
+        @Override public Set<String> load(Class<?> type) {
+          List<Method> methods = Lists.newArrayList();
+          Enhancer.getMethods(type, null, methods);
+          ImmutableSet.Builder<String> names = ImmutableSet.builder();
+          for (Method method : methods) {
+            for (Annotation annotation : method.getAnnotations()) {
+              names.add(annotation.annotationType().getName());
+            }
+          }
+          return names.build();
+        }
+      });
+
+  private final ImmutableList<MethodAspect> aspects;
+
+  MethodAspectIndex(Iterable<MethodAspect> aspects) {
+    this.aspects = ImmutableList.copyOf(aspects);
+  }
+
+  /**
+   * Returns the aspects applying to {@code type}, or null if none may match any of its methods.
+   */
+  ClassAspects forClass(Class<?> type) {
+    List<MethodAspect> applicable = Lists.newArrayList();
+    boolean allRequireAnnotations = true;
+    for (MethodAspect aspect : aspects) {
+      if (aspect.matches(type)) {
+        applicable.add(aspect);
+        allRequireAnnotations &= aspect.requiredAnnotationType() != null;
+      }
+    }
+    if (applicable.isEmpty()
+        || (allRequireAnnotations && !anyAnnotationPresent(type, applicable))) {
+      return null;
+    }
+    return new ClassAspects(applicable);
+  }
+
+  /** Returns false if no method of {@code type} has the annotation any aspect requires. */
+  private static boolean anyAnnotationPresent(Class<?> type, List<MethodAspect> aspects) {
+    Set<String> present;
+    try {
+      present = METHOD_ANNOTATIONS.getUnchecked(type);
+    } catch (RuntimeException e) {
+      return true; // reported once the methods are matched
+    } catch (LinkageError e) {
+      return true;
+    }
+    for (MethodAspect aspect : aspects) {
+      if (present.contains(aspect.requiredAnnotationType().getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The aspects applying to a class, those requiring annotations bucketed by annotation type.
+   * Aspects are identified by their position, which is the order their interceptors apply in.
+   */
+  static final class ClassAspects {
+    private final List<MethodAspect> aspects;
+    private final int[] unannotated;
+    private final Map<Class<? extends Annotation>, int[]> byAnnotation;
+
+    ClassAspects(List<MethodAspect> aspects) {
+      this.aspects = aspects;
+      List<Integer> unannotated = Lists.newArrayList();
+      Map<Class<? extends Annotation>, List<Integer>> byAnnotation = Maps.newHashMap();
+      for (int i = 0; i < aspects.size(); i++) {
+        Class<? extends Annotation> annotationType = aspects.get(i).requiredAnnotationType();
+        if (annotationType == null) {
+          unannotated.add(i);
+          continue;
+        }
+        List<Integer> bucket = byAnnotation.get(annotationType);
+        if (bucket == null) {
+          bucket = Lists.newArrayList();
+          byAnnotation.put(annotationType, bucket);
+        }
+        bucket.add(i);
+      }
+      this.unannotated = Ints.toArray(unannotated);
+      this.byAnnotation = Maps.newHashMapWithExpectedSize(byAnnotation.size());
+      for (Map.Entry<Class<? extends Annotation>, List<Integer>> entry : byAnnotation.entrySet()) {
+        this.byAnnotation.put(entry.getKey(), Ints.toArray(entry.getValue()));
+      }
+    }
+
+    /** Returns the aspects matching {@code method}, in the order their interceptors apply in. */
+    List<MethodAspect> matching(Method method) {
+      BitSet candidates = null;
+      if (!byAnnotation.isEmpty()) {
+        for (Annotation annotation : method.getAnnotations()) {
+          int[] bucket = byAnnotation.get(annotation.annotationType());
+          if (bucket == null) {
+            continue;
+          }
+          if (candidates == null) {
+            candidates = new BitSet(aspects.size());
+            for (int i : unannotated) {
+              candidates.set(i);
+            }
+          }
+          for (int i : bucket) {
+            candidates.set(i);
+          }
+        }
+      }
+
+      List<MethodAspect> matching = ImmutableList.of();
+      if (candidates == null) {
+        for (int i : unannotated) {
+          matching = addIfMatches(matching, aspects.get(i), method);
+        }
+      } else {
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+          matching = addIfMatches(matching, aspects.get(i), method);
+        }
+      }
+      return matching;
+    }
+
+    private static List<MethodAspect> addIfMatches(
+        List<MethodAspect> matching, MethodAspect aspect, Method method) {
+      if (!aspect.matches(method)) {
+        return matching;
+      }
+      if (matching.isEmpty()) {
+        matching = Lists.newArrayList();
+      }
+      matching.add(aspect);
+      return matching;
+    }
+  }
+}
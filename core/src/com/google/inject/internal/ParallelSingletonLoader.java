@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binding;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads eager singletons of an injector on a bounded pool of threads. A singleton is only started
+ * once the eager singletons it depends on, directly or through unscoped bindings, are loaded, so
+ * independent singletons are created concurrently while dependent ones rarely wait on each other.
+ *
+ * <p>Singletons depending on each other in a cycle are started one at a time. Whenever threads
+ * still race for the same singleton, {@link SingletonScope} serializes them and detects deadlocks
+ * exactly as it does for user threads.
+ *
+ * <p>Errors are collected per singleton and merged in binding order once all singletons are
+ * loaded, so the reported errors don't depend on the number of threads.
+ *
+ * @see InternalInjectorCreator#loadEagerSingletons
+ */
+final class ParallelSingletonLoader {
+
+  private final InjectorImpl injector;
+  private final StartupProfiler profiler;
+  /** Eager singletons in binding order. */
+  private final List<Node> nodes;
+  /** Eager singletons by binding, bindings are compared by identity. */
+  private final Map<Binding<?>, Node> nodesByBinding = Maps.newIdentityHashMap();
+
+  ParallelSingletonLoader(InjectorImpl injector, List<BindingImpl<?>> eagerSingletons,
+      StartupProfiler profiler) {
+    this.injector = injector;
+    this.profiler = profiler;
+    this.nodes = Lists.newArrayListWithCapacity(eagerSingletons.size());
+    for (BindingImpl<?> binding : eagerSingletons) {
+      Node node = new Node(binding);
+      nodes.add(node);
+      nodesByBinding.put(binding, node);
+    }
+    for (Node node : nodes) {
+      for (Node dependency : findEagerDependencies(node.binding)) {
+        if (dependency != node) {
+          dependency.dependents.add(node);
+          node.unloadedDependencies++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the eager singletons that {@code binding} depends on, following dependencies through
+   * other bindings until an eager singleton is found. Bindings that don't exist yet and providers,
+   * which can't be called before the binding is created, are not followed.
+   */
+  private Set<Node> findEagerDependencies(BindingImpl<?> binding) {
+    Set<Node> result = Sets.newLinkedHashSet();
+    Set<Binding<?>> visited = Sets.newIdentityHashSet();
+    Deque<Binding<?>> pending = new ArrayDeque<Binding<?>>();
+    pending.push(binding);
+    while (!pending.isEmpty()) {
+      Binding<?> current = pending.pop();
+      if (!(current instanceof HasDependencies)) {
+        continue;
+      }
+      for (Dependency<?> dependency : ((HasDependencies) current).getDependencies()) {
+        if (InjectorImpl.isProvider(dependency.getKey())) {
+          continue;
+        }
+        Binding<?> dependencyBinding = injector.getExistingBinding(dependency.getKey());
+        if (dependencyBinding == null || !visited.add(dependencyBinding)) {
+          continue;
+        }
+        Node node = nodesByBinding.get(dependencyBinding);
+        if (node != null) {
+          result.add(node);
+        } else {
+          pending.push(dependencyBinding);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Loads all eager singletons using at most {@code threads} threads, and adds their errors to
+   * {@code errors}. Runtime exceptions thrown while loading a singleton are rethrown.
+   */
+  void load(int threads, Errors errors) {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(threads, nodes.size()), newThreadFactory());
+    try {
+      CompletionService<Node> completionService = new ExecutorCompletionService<Node>(executor);
+      Deque<Node> ready = new ArrayDeque<Node>();
+      for (Node node : nodes) {
+        if (node.unloadedDependencies == 0) {
+          ready.add(node);
+        }
+      }
+
+      Iterator<Node> inBindingOrder = nodes.iterator();
+      int running = 0;
+      for (int loaded = 0; loaded < nodes.size(); loaded++) {
+        for (Node node = ready.poll(); node != null; node = ready.poll()) {
+          submit(completionService, node);
+          running++;
+        }
+        if (running == 0) {
+          // all remaining singletons depend on each other, start with the first one bound
+          Node node = inBindingOrder.next();
+          while (node.submitted) {
+            node = inBindingOrder.next();
+          }
+          submit(completionService, node);
+          running++;
+        }
+
+        Node node = take(completionService);
+        running--;
+        for (Node dependent : node.dependents) {
+          if (--dependent.unloadedDependencies == 0 && !dependent.submitted) {
+            ready.add(dependent);
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (Node node : nodes) {
+      if (node.failure != null) {
+        Throwables.propagateIfPossible(node.failure);
+        throw new AssertionError(node.failure);
+      }
+      errors.merge(node.errors);
+    }
+  }
+
+  private void submit(CompletionService<Node> completionService, final Node node) {
+    node.submitted = true;
+    completionService.submit(new Callable<Node>() {
+      public Node call() {
+        try {
+          InternalInjectorCreator.loadEagerSingleton(
+              injector, node.binding, node.errors, profiler);
+        } catch (RuntimeException e) {
+          node.failure = e;
+        } catch (Error e) {
+          node.failure = e;
+        }
+        return node;
+      }
+    });
+  }
+
+  /**
+   * Waits for the next singleton to be loaded. Interrupts are deferred, as the injector can't be
+   * created without its singletons.
+   */
+  private static Node take(CompletionService<Node> completionService) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return completionService.take().get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new AssertionError(e); // loading singletons doesn't throw
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Creates daemon threads sharing the context class loader of the thread creating the injector. */
+  private static ThreadFactory newThreadFactory() {
+    final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    return new ThreadFactoryBuilder()
+        .setNameFormat("Guice eager singleton loader %d")
+        .setDaemon(true)
+        .setThreadFactory(new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+          }
+        })
+        .build();
+  }
+
+  /**
+   * An eager singleton to load. The scheduling state is only used by the thread creating the
+   * injector, the outcome is set by the thread loading the singleton.
+   */
+  private static final class Node {
+    final BindingImpl<?> binding;
+    /** Eager singletons waiting for this one to be loaded. */
+    final List<Node> dependents = Lists.newArrayList();
+    /** Errors of loading this singleton, merged into the injector's errors at the end. */
+    final Errors errors = new Errors();
+    int unloadedDependencies;
+    boolean submitted;
+    /** Unchecked exception thrown by the loading thread. */
+    Throwable failure;
+
+    Node(BindingImpl<?> binding) {
+      this.binding = binding;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import javax.inject.Provider;
 abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
   
   protected final Object source;
+  private final ConstructionContext.Slot constructionContextSlot = new ConstructionContext.Slot();
   
   ProviderInternalFactory(Object source) {
     this.source = checkNotNull(source, "source");
@@ -42,7 +43,8 @@ abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
       InternalContext context, final Dependency<?> dependency,
       ProvisionListenerStackCallback<T> provisionCallback)
       throws ErrorsException {    
-    final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+    final ConstructionContext<T> constructionContext =
+        context.getConstructionContext(constructionContextSlot);
 
     // We have a circular reference between constructors. Return a proxy.
     if (constructionContext.isConstructing()) {
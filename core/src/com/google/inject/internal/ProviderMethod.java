@@ -24,6 +24,7 @@ import com.google.inject.Key;
 import com.google.inject.PrivateBinder;
 import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.internal.InternalFlags.MemberAccessOption;
 import com.google.inject.internal.ProvisionListenerStackCallback.ProvisionCallback;
 import com.google.inject.internal.util.StackTraceElements;
 import com.google.inject.spi.BindingTargetVisitor;
@@ -53,10 +54,10 @@ public abstract class ProviderMethod<T> implements ProviderWithExtensionVisitor<
   /**
    * Creates a {@link ProviderMethod}.
    *
-   * <p>Unless {@code skipFastClassGeneration} is set, this will use
-   * {@link net.sf.cglib.reflect.FastClass} to invoke the actual method, since it is significantly
-   * faster. However, this will fail if the method is {@code private} or {@code protected}, since
-   * fastclass is subject to java access policies.
+   * <p>Unless {@code skipFastClassGeneration} is set or the {@code guice_member_access} flag asks
+   * for reflection, this will use {@link net.sf.cglib.reflect.FastClass} to invoke the actual
+   * method, since it is significantly faster. However, this will fail if the method is
+   * {@code private} or {@code protected}, since fastclass is subject to java access policies.
    */
   static <T> ProviderMethod<T> create(Key<T> key, Method method, Object instance,
       ImmutableSet<Dependency<?>> dependencies, List<Provider<?>> parameterProviders,
@@ -64,7 +65,8 @@ public abstract class ProviderMethod<T> implements ProviderWithExtensionVisitor<
       Annotation annotation) {
     int modifiers = method.getModifiers();
     /*if[AOP]*/
-    if (!skipFastClassGeneration) {
+    if (!skipFastClassGeneration
+        && InternalFlags.getMemberAccessOption() == MemberAccessOption.FAST_CLASS) {
       try {
         net.sf.cglib.reflect.FastClass fc = BytecodeGen.newFastClassForMember(method);
         if (fc != null) {
@@ -346,6 +348,8 @@ public abstract class ProviderMethod<T> implements ProviderWithExtensionVisitor<
     private final ProviderMethod<T> providerMethod;
     private ProvisionListenerStackCallback<T> provisionCallback;
     private SingleParameterInjector<?>[] parameterInjectors;
+    private final ConstructionContext.Slot constructionContextSlot =
+        new ConstructionContext.Slot();
 
     Factory(Object source, ProviderMethod<T> providerMethod) {
       this.source = source;
@@ -359,7 +363,8 @@ public abstract class ProviderMethod<T> implements ProviderWithExtensionVisitor<
         final Dependency<?> dependency,
         boolean linked)
         throws ErrorsException {
-      final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+      final ConstructionContext<T> constructionContext =
+          context.getConstructionContext(constructionContextSlot);
       // We have a circular reference between bindings. Return a proxy.
       if (constructionContext.isConstructing()) {
         Class<?> expectedType = dependency.getKey().getTypeLiteral().getRawType();
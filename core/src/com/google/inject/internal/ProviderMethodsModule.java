@@ -19,10 +19,14 @@ package com.google.inject.internal;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.inject.Binder;
 import com.google.inject.Key;
 import com.google.inject.Module;
@@ -66,6 +70,26 @@ public final class ProviderMethodsModule implements Module {
         }
       };
 
+  /**
+   * The names of the annotated methods declared by each module class, the only ones that may be
+   * provider methods. Modules of the same class are often installed over and over, by child
+   * injectors in particular, and most of their methods aren't annotated. Names rather than methods,
+   * so the cache doesn't keep the classes it is keyed by.
+   */
+  private static final LoadingCache<Class<?>, Set<String>> annotatedMethodNames =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<Class<?>, Set<String>>() {
+            @Override public Set<String> load(Class<?> c) {
+              ImmutableSet.Builder<String> names = ImmutableSet.builder();
+              for (Method method : c.getDeclaredMethods()) {
+                if (method.getDeclaredAnnotations().length > 0) {
+                  names.add(method.getName());
+                }
+              }
+              return names.build();
+            }
+          });
+
   private final Object delegate;
   private final TypeLiteral<?> typeLiteral;
   private final boolean skipFastClassGeneration;
@@ -127,6 +151,31 @@ public final class ProviderMethodsModule implements Module {
 
   public List<ProviderMethod<?>> getProviderMethods(Binder binder) {
     List<ProviderMethod<?>> result = Lists.newArrayList();
+    for (Class<?> c = delegate.getClass(); c != Object.class; c = c.getSuperclass()) {
+      Set<String> names = annotatedMethodNames.getUnchecked(c);
+      if (names.isEmpty()) {
+        continue;
+      }
+      for (Method method : c.getDeclaredMethods()) {
+        if (!names.contains(method.getName())) {
+          continue;
+        }
+        Optional<Annotation> annotation = isProvider(binder, method);
+        if (annotation.isPresent()) {
+          result.add(createProviderMethod(binder, method, annotation.get()));
+        }
+      }
+    }
+    if (result.isEmpty()) {
+      return result;
+    }
+
+    // Resolving signatures is costly, and most modules declare no provider methods at all. Only
+    // methods named like a provider method can override it, so only their signatures are needed.
+    Set<String> providerNames = Sets.newHashSet();
+    for (ProviderMethod<?> provider : result) {
+      providerNames.add(provider.getMethod().getName());
+    }
     Multimap<Signature, Method> methodsBySignature = HashMultimap.create();
     for (Class<?> c = delegate.getClass(); c != Object.class; c = c.getSuperclass()) {
       for (Method method : c.getDeclaredMethods()) {
@@ -136,13 +185,10 @@ public final class ProviderMethodsModule implements Module {
         // synthetic overrides in some cases where we don't want to generate an error (e.g.
         // increasing visibility of a subclass).
         if (((method.getModifiers() & (Modifier.PRIVATE | Modifier.STATIC)) == 0)
-            && !method.isBridge() && !method.isSynthetic()) {
+            && !method.isBridge() && !method.isSynthetic()
+            && providerNames.contains(method.getName())) {
           methodsBySignature.put(new Signature(method), method);
         }
-        Optional<Annotation> annotation = isProvider(binder, method);
-        if (annotation.isPresent()) {
-          result.add(createProviderMethod(binder, method, annotation.get()));
-        }
       }
     }
     // we have found all the providers and now need to identify if any were overridden
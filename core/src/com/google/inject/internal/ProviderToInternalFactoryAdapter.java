@@ -34,6 +34,10 @@ final class ProviderToInternalFactoryAdapter<T> implements Provider<T> {
     this.internalFactory = internalFactory;
   }
 
+  InjectorImpl getInjector() {
+    return injector;
+  }
+
   public T get() {
     final Errors errors = new Errors();
     try {
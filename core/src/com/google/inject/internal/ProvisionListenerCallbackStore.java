@@ -63,8 +63,9 @@ final class ProvisionListenerCallbackStore {
    */
   @SuppressWarnings("unchecked") // the ProvisionListenerStackCallback type always agrees with the passed type
   public <T> ProvisionListenerStackCallback<T> get(Binding<T> binding) {
-    // Never notify any listeners for internal bindings.
-    if (!INTERNAL_BINDINGS.contains(binding.getKey())) {
+    // Never notify any listeners for internal bindings. Without listeners there is nothing worth
+    // caching for each binding.
+    if (!listenerBindings.isEmpty() && !INTERNAL_BINDINGS.contains(binding.getKey())) {
       return (ProvisionListenerStackCallback<T>) cache.getUnchecked(
           new KeyBinding(binding.getKey(), binding));
     }
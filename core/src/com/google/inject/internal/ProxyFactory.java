@@ -16,13 +16,12 @@
 
 package com.google.inject.internal;
 
-import static com.google.inject.internal.BytecodeGen.newFastClassForMember;
-
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.inject.internal.InternalFlags.InterceptorDispatchOption;
 import com.google.inject.spi.InjectionPoint;
 
 import net.sf.cglib.core.MethodWrapper;
@@ -38,6 +37,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +56,8 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
   private final Class<T> declaringClass;
   private final List<Method> methods;
   private final Callback[] callbacks;
+  /** The intercepted methods whose arguments are passed to the interceptors unboxed. */
+  private final List<Method> specialized;
 
   /**
    * PUBLIC is default; it's used if all the methods we're intercepting are public. This impacts
@@ -64,24 +66,28 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
   private BytecodeGen.Visibility visibility = BytecodeGen.Visibility.PUBLIC;
 
   ProxyFactory(InjectionPoint injectionPoint, Iterable<MethodAspect> methodAspects) {
+    this(injectionPoint, new MethodAspectIndex(methodAspects));
+  }
+
+  ProxyFactory(InjectionPoint injectionPoint, MethodAspectIndex methodAspects) {
+    this(injectionPoint, methodAspects, InternalFlags.getInterceptorDispatchOption());
+  }
+
+  ProxyFactory(InjectionPoint injectionPoint, MethodAspectIndex methodAspects,
+      InterceptorDispatchOption dispatch) {
     this.injectionPoint = injectionPoint;
 
     @SuppressWarnings("unchecked") // the member of injectionPoint is always a Constructor<T>
         Constructor<T> constructor = (Constructor<T>) injectionPoint.getMember();
     declaringClass = constructor.getDeclaringClass();
 
-    // Find applicable aspects. Bow out if none are applicable to this class.
-    List<MethodAspect> applicableAspects = Lists.newArrayList();
-    for (MethodAspect methodAspect : methodAspects) {
-      if (methodAspect.matches(declaringClass)) {
-        applicableAspects.add(methodAspect);
-      }
-    }
-
-    if (applicableAspects.isEmpty()) {
+    // Find applicable aspects. Bow out if none may apply to the methods of this class.
+    MethodAspectIndex.ClassAspects applicableAspects = methodAspects.forClass(declaringClass);
+    if (applicableAspects == null) {
       interceptors = ImmutableMap.of();
       methods = ImmutableList.of();
       callbacks = null;
+      specialized = ImmutableList.of();
       return;
     }
 
@@ -95,34 +101,34 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
       methodInterceptorsPairs.add(new MethodInterceptorsPair(method));
     }
 
-    // Iterate over aspects and add interceptors for the methods they apply to
+    // Add the interceptors of the aspects that apply to each method
     boolean anyMatched = false;
-    for (MethodAspect methodAspect : applicableAspects) {
-      for (MethodInterceptorsPair pair : methodInterceptorsPairs) {
-        if (methodAspect.matches(pair.method)) {
-          if(pair.method.isSynthetic()) {
-            logger.log(Level.WARNING,
-                "Method [{0}] is synthetic and is being intercepted by {1}."
-              + " This could indicate a bug.  The method may be intercepted twice,"
-              + " or may not be intercepted at all.",
-                new Object[] { pair.method, methodAspect.interceptors() });
-          }
-          visibility = visibility.and(BytecodeGen.Visibility.forMember(pair.method));
-          pair.addAll(methodAspect.interceptors());
-          anyMatched = true;
+    for (MethodInterceptorsPair pair : methodInterceptorsPairs) {
+      for (MethodAspect methodAspect : applicableAspects.matching(pair.method)) {
+        if(pair.method.isSynthetic()) {
+          logger.log(Level.WARNING,
+              "Method [{0}] is synthetic and is being intercepted by {1}."
+            + " This could indicate a bug.  The method may be intercepted twice,"
+            + " or may not be intercepted at all.",
+              new Object[] { pair.method, methodAspect.interceptors() });
         }
+        visibility = visibility.and(BytecodeGen.Visibility.forMember(pair.method));
+        pair.addAll(methodAspect.interceptors());
+        anyMatched = true;
       }
     }
 
     if (!anyMatched) {
       interceptors = ImmutableMap.of();
       callbacks = null;
+      specialized = ImmutableList.of();
       return;
     }
 
     ImmutableMap.Builder<Method, List<MethodInterceptor>> interceptorsMapBuilder = null; // lazy
 
     callbacks = new Callback[methods.size()];
+    specialized = Lists.newArrayList();
     for (int i = 0; i < methods.size(); i++) {
       MethodInterceptorsPair pair = methodInterceptorsPairs.get(i);
 
@@ -139,6 +145,10 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
           ImmutableSet.copyOf(pair.interceptors).asList();
       interceptorsMapBuilder.put(pair.method, deDuplicated);
       callbacks[i] = new InterceptorStackCallback(pair.method, deDuplicated);
+      if (dispatch == InterceptorDispatchOption.SPECIALIZED
+          && SpecializedDispatch.isWorthSpecializing(pair.method)) {
+        specialized.add(pair.method);
+      }
     }
 
     interceptors = interceptorsMapBuilder != null
@@ -171,10 +181,9 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
     // Create the proxied class. We're careful to ensure that all enhancer state is not-specific
     // to this injector. Otherwise, the proxies for each injector will waste PermGen memory
     try {
-    Enhancer enhancer = BytecodeGen.newEnhancer(declaringClass, visibility);
-    enhancer.setCallbackFilter(new IndicesCallbackFilter(methods));
-    enhancer.setCallbackTypes(callbackTypes);
-    return new ProxyConstructor<T>(enhancer, injectionPoint, callbacks, interceptors);
+      EnhancedClassCache.EnhancedClass enhanced = EnhancedClassCache.get(declaringClass,
+          visibility, new IndicesCallbackFilter(methods, specialized), callbackTypes, specialized);
+      return new ProxyConstructor<T>(enhanced, injectionPoint, callbacks, interceptors);
     } catch (Throwable e) {
       throw new Errors().errorEnhancingClass(declaringClass, e).toException();
     }
@@ -204,19 +213,44 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
    * A callback filter that maps methods to unique IDs. We define equals and
    * hashCode without using any state related to the injector so that enhanced
    * classes intercepting the same methods can be shared between injectors (and
-   * child injectors, etc).
+   * child injectors, etc). The methods specialized are part of the filter, since their enhanced
+   * classes differ from those of the same methods boxing their arguments.
    */
   private static class IndicesCallbackFilter implements CallbackFilter {
     final Map<Object, Integer> indices;
+    final Set<Object> specialized;
     final int hashCode;
-
-    IndicesCallbackFilter(List<Method> methods) {
+    /**
+     * Describes the callback of each method, in the order of the callbacks. This is a string rather
+     * than the methods themselves: cglib keeps filters for as long as their class loader, and
+     * methods would keep the classes they intercept, and so their class loader, from unloading.
+     */
+    final String description;
+
+    IndicesCallbackFilter(List<Method> methods, List<Method> specialized) {
       final Map<Object, Integer> indices = Maps.newHashMap();
       for (int i = 0; i < methods.size(); i++) {
         indices.put(MethodWrapper.create(methods.get(i)), i);
       }
+      @SuppressWarnings("unchecked") // cglib's set of method keys is raw
+      Set<Object> specializedKeys = MethodWrapper.createSet(specialized);
       this.indices = indices;
-      this.hashCode = indices.hashCode();
+      this.specialized = specializedKeys;
+      this.hashCode = indices.hashCode() * 31 + specializedKeys.hashCode();
+      this.description = describe(methods, specializedKeys);
+    }
+
+    private static String describe(List<Method> methods, Set<Object> specialized) {
+      StringBuilder description = new StringBuilder();
+      for (int i = 0; i < methods.size(); i++) {
+        Method method = methods.get(i);
+        description.append(i).append(' ').append(method);
+        if (specialized.contains(MethodWrapper.create(method))) {
+          description.append(" specialized");
+        }
+        description.append('\n');
+      }
+      return description.toString();
     }
 
     public int accept(Method method) {
@@ -225,18 +259,25 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
 
     @Override public boolean equals(Object o) {
       return o instanceof IndicesCallbackFilter &&
-          ((IndicesCallbackFilter) o).indices.equals(indices);
+          ((IndicesCallbackFilter) o).indices.equals(indices) &&
+          ((IndicesCallbackFilter) o).specialized.equals(specialized);
     }
 
     @Override public int hashCode() {
       return hashCode;
     }
+
+    @Override public String toString() {
+      return description;
+    }
   }
 
   /**
    * Constructs instances that participate in AOP.
    */
   private static class ProxyConstructor<T> implements ConstructionProxy<T> {
+    /** Keeps the enhanced class cached for as long as this is used. */
+    final EnhancedClassCache.EnhancedClass enhancedClass;
     final Class<?> enhanced;
     final InjectionPoint injectionPoint;
     final Constructor<T> constructor;
@@ -247,14 +288,15 @@ final class ProxyFactory<T> implements ConstructionProxyFactory<T> {
     final FastClass fastClass;
 
     @SuppressWarnings("unchecked") // the constructor promises to construct 'T's
-    ProxyConstructor(Enhancer enhancer, InjectionPoint injectionPoint, Callback[] callbacks,
-        ImmutableMap<Method, List<MethodInterceptor>> methodInterceptors) {
-      this.enhanced = enhancer.createClass(); // this returns a cached class if possible
+    ProxyConstructor(EnhancedClassCache.EnhancedClass enhancedClass, InjectionPoint injectionPoint,
+        Callback[] callbacks, ImmutableMap<Method, List<MethodInterceptor>> methodInterceptors) {
+      this.enhancedClass = enhancedClass;
+      this.enhanced = enhancedClass.type;
       this.injectionPoint = injectionPoint;
       this.constructor = (Constructor<T>) injectionPoint.getMember();
       this.callbacks = callbacks;
       this.methodInterceptors = methodInterceptors;
-      this.fastClass = newFastClassForMember(enhanced, constructor);
+      this.fastClass = enhancedClass.fastClassFor(constructor);
       this.constructorIndex = fastClass.getIndex(constructor.getParameterTypes());
     }
 
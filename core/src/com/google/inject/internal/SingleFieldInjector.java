@@ -30,6 +30,9 @@ final class SingleFieldInjector implements SingleMemberInjector {
   final InjectionPoint injectionPoint;
   final Dependency<?> dependency;
   final BindingImpl<?> binding;
+  /** The factory and source of {@link #binding}, resolved once rather than for each injection. */
+  private final InternalFactory<?> factory;
+  private final Object source;
 
   public SingleFieldInjector(InjectorImpl injector, InjectionPoint injectionPoint, Errors errors)
       throws ErrorsException {
@@ -40,6 +43,8 @@ final class SingleFieldInjector implements SingleMemberInjector {
     // Ewwwww...
     field.setAccessible(true);
     binding = injector.getBindingOrThrow(dependency.getKey(), errors, JitLimitation.NO_JIT);
+    factory = binding.getInternalFactory();
+    source = binding.getSource();
   }
 
   public InjectionPoint getInjectionPoint() {
@@ -49,9 +54,9 @@ final class SingleFieldInjector implements SingleMemberInjector {
   public void inject(Errors errors, InternalContext context, Object o) {
     errors = errors.withSource(dependency);
 
-    Dependency previous = context.pushDependency(dependency, binding.getSource());
+    Dependency previous = context.pushDependency(dependency, source);
     try {
-      Object value = binding.getInternalFactory().get(errors, context, dependency, false);
+      Object value = factory.get(errors, context, dependency, false);
       field.set(o, value);
     } catch (ErrorsException e) {
       errors.withSource(injectionPoint).merge(e.getErrors());
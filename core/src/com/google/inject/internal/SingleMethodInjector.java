@@ -16,7 +16,12 @@
 
 package com.google.inject.internal;
 
+import static com.google.inject.internal.InternalFlags.getMemberAccessOption;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.internal.InjectorImpl.MethodInvoker;
+import com.google.inject.internal.InternalFlags.MemberAccessOption;
 import com.google.inject.spi.InjectionPoint;
 
 import java.lang.reflect.InvocationTargetException;
@@ -27,35 +32,65 @@ import java.lang.reflect.Modifier;
  * Invokes an injectable method.
  */
 final class SingleMethodInjector implements SingleMemberInjector {
+  /**
+   * Invokers of injectable methods, shared by all injectors since they only depend on the method.
+   * The methods are those of the {@link InjectionPointCache shared injection points}. Invokers
+   * reference their methods, so they are weak too, and kept by the injectors using them.
+   */
+  private static final Cache<Method, MethodInvoker> invokers =
+      CacheBuilder.newBuilder().weakKeys().weakValues().build();
+
   private final MethodInvoker methodInvoker;
   private final SingleParameterInjector<?>[] parameterInjectors;
   private final InjectionPoint injectionPoint;
 
   SingleMethodInjector(InjectorImpl injector, InjectionPoint injectionPoint, Errors errors)
       throws ErrorsException {
+    this(injector, injectionPoint, errors, getMemberAccessOption());
+  }
+
+  /**
+   * @param memberAccess how the method is invoked, regardless of the {@code guice_member_access}
+   *     flag
+   */
+  SingleMethodInjector(InjectorImpl injector, InjectionPoint injectionPoint, Errors errors,
+      MemberAccessOption memberAccess) throws ErrorsException {
     this.injectionPoint = injectionPoint;
     final Method method = (Method) injectionPoint.getMember();
-    methodInvoker = createMethodInvoker(method);
+    if (memberAccess != getMemberAccessOption()) {
+      // the shared invokers invoke methods as the flag asks
+      methodInvoker = createMethodInvoker(method, memberAccess);
+    } else {
+      MethodInvoker invoker = invokers.getIfPresent(method);
+      if (invoker == null) {
+        invoker = createMethodInvoker(method, memberAccess);
+        invokers.put(method, invoker);
+      }
+      methodInvoker = invoker;
+    }
     parameterInjectors = injector.getParametersInjectors(injectionPoint.getDependencies(), errors);
   }
 
-  private MethodInvoker createMethodInvoker(final Method method) {
+  private static MethodInvoker createMethodInvoker(
+      final Method method, MemberAccessOption memberAccess) {
 
     /*if[AOP]*/
-    try {
-    final net.sf.cglib.reflect.FastClass fastClass =
-        BytecodeGen.newFastClassForMember(method);
-      if (fastClass != null) {
-        final int index = fastClass.getMethod(method).getIndex();
-
-        return new MethodInvoker() {
-          public Object invoke(Object target, Object... parameters)
-              throws IllegalAccessException, InvocationTargetException {
-            return fastClass.invoke(index, target, parameters);
-          }
-        };
-      }
-    } catch (net.sf.cglib.core.CodeGenerationException e) {/* fall-through */}
+    if (memberAccess == MemberAccessOption.FAST_CLASS) {
+      try {
+        final net.sf.cglib.reflect.FastClass fastClass =
+            BytecodeGen.newFastClassForMember(method);
+        if (fastClass != null) {
+          final int index = fastClass.getMethod(method).getIndex();
+
+          return new MethodInvoker() {
+            public Object invoke(Object target, Object... parameters)
+                throws IllegalAccessException, InvocationTargetException {
+              return fastClass.invoke(index, target, parameters);
+            }
+          };
+        }
+      } catch (net.sf.cglib.core.CodeGenerationException e) {/* fall-through */}
+    }
     /*end[AOP]*/
 
     int modifiers = method.getModifiers();
@@ -25,17 +25,20 @@ final class SingleParameterInjector<T> {
   private static final Object[] NO_ARGUMENTS = {}; 
 
   private final Dependency<T> dependency;
-  private final BindingImpl<? extends T> binding;
+  /** The factory and source of the binding, resolved once rather than for each injection. */
+  private final InternalFactory<? extends T> factory;
+  private final Object source;
 
   SingleParameterInjector(Dependency<T> dependency, BindingImpl<? extends T> binding) {
     this.dependency = dependency;
-    this.binding = binding;
+    this.factory = binding.getInternalFactory();
+    this.source = binding.getSource();
   }
 
   private T inject(Errors errors, InternalContext context) throws ErrorsException {
-    Dependency previous = context.pushDependency(dependency, binding.getSource());
+    Dependency previous = context.pushDependency(dependency, source);
     try {
-      return binding.getInternalFactory().get(errors.withSource(dependency), context, dependency, false);
+      return factory.get(errors.withSource(dependency), context, dependency, false);
     } finally {
       context.popStateAndSetDependency(previous);
     }
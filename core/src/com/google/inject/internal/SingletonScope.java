@@ -19,7 +19,6 @@ import com.google.inject.spi.Dependency;
 import com.google.inject.spi.DependencyAndSource;
 import com.google.inject.spi.Message;
 
-import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -77,25 +76,6 @@ public class SingletonScope implements Scope {
   /** A sentinel value representing null. */
   private static final Object NULL = new Object();
 
-  /**
-   * SingletonScope needs the owning injector's thread-specific InternalContext object during
-   * singleton instantiation, to look up type information on the singleton instance, and to
-   * determine whether circular proxy creation is enabled within InjectorOptions.
-   *
-   * For additional complications: the owning injector's InternalContext can change between
-   * provider creation and actually instantiating the singleton, via calls to
-   * {@link InjectorImpl#callInContext}.
-   *
-   * A thread-specific reference to the owning injector is stored here, so that the singleton
-   * provider can access the correct InternalContext for the given thread during provider.get().
-   *
-   * The ThreadLocal stores WeakReference, so that the references here and inside the singleton
-   * provider do not interfere with garbage collection and post-collection cleanup of child
-   * injectors, happening in {@link WeakKeySet}.
-   */
-  static final ThreadLocal<WeakReference<InjectorImpl>> currentInjector =
-      new ThreadLocal<WeakReference<InjectorImpl>>();
-
   /**
    * A map of thread running singleton instantiation, to the InternalContext that is relevant
    * to the singleton being instantiated. In the case of a multithreaded circular dependency in
@@ -132,6 +112,7 @@ public class SingletonScope implements Scope {
    */
   @Override
   public <T> Provider<T> scope(final Key<T> key, final Provider<T> creator) {
+    final InjectorImpl owningInjector = owningInjector(creator);
     /**
      * Locking strategy:
      * - volatile instance: double-checked locking for quick exit when scope is initialized,
@@ -159,9 +140,12 @@ public class SingletonScope implements Scope {
 
       /**
        * The singleton provider needs a reference back to the injector, in order to get ahold
-       * of InternalContext during instantiation.
+       * of InternalContext during instantiation. The owning injector's InternalContext can change
+       * between provider creation and actually instantiating the singleton, via calls to
+       * {@link InjectorImpl#callInContext}, so only the injector is kept here and its context
+       * is looked up by provider.get(). Null when scoped outside of an injector.
        */
-      final InjectorImpl injector = currentInjector.get().get();
+      final InjectorImpl injector = owningInjector;
 
       @SuppressWarnings("DoubleCheckedLocking")
       @Override
@@ -175,14 +159,21 @@ public class SingletonScope implements Scope {
           // dependency error, we can use the InternalContext objects to create a complete
           // error message.
           final Thread currentThread = Thread.currentThread();
-          final InternalContext context = injector.getLocalContext();
+          final InternalContext context = injector != null ? injector.getLocalContext() : null;
           final InternalContext previousContext = internalContextsMap.get(currentThread);
-          internalContextsMap.put(currentThread, context);
+          if (context != null) {
+            internalContextsMap.put(currentThread, context);
+          }
 
+          final InjectorEvents events = InjectorEvents.INSTALLED;
+          final Object event = events != null ? events.beginSingleton(key) : null;
           try {
             // acquire lock for current binding to initialize an instance
             final ListMultimap<Long, Key<?>> locksCycle =
                 creationLock.lockOrDetectPotentialLocksCycle();
+            if (event != null) {
+              events.singletonLockAcquired(event);
+            }
 
             if (locksCycle.isEmpty()) {
               // this thread now owns creation of an instance
@@ -231,6 +222,12 @@ public class SingletonScope implements Scope {
               synchronized (constructionContext) {
                 // guarantee thread-safety for instance and proxies initialization
                 if (instance == null) {
+                  if (context == null) {
+                    // scoped outside of an injector, there is no dependency to proxy
+                    throw new ProvisionException(String.format(
+                        "Encountered circular dependency spanning several threads while "
+                        + "providing %s outside of an injector.", key));
+                  }
                   // creating a proxy to satisfy circular dependency across several threads
                   Dependency<?> dependency = Preconditions.checkNotNull(
                       context.getDependency(), "internalContext.getDependency()");
@@ -257,12 +254,17 @@ public class SingletonScope implements Scope {
               }
             }
           } finally {
+            if (event != null) {
+              events.endSingleton(event);
+            }
             // restore internalContextsMap to previous state, in order to support nested singleton
             // construction spanning multiple injectors.
-            if (previousContext != null) {
-              internalContextsMap.put(currentThread, previousContext);
-            } else {
-              internalContextsMap.remove(currentThread);
+            if (context != null) {
+              if (previousContext != null) {
+                internalContextsMap.put(currentThread, previousContext);
+              } else {
+                internalContextsMap.remove(currentThread);
+              }
             }
           }
 
@@ -387,6 +389,21 @@ public class SingletonScope implements Scope {
     };
   }
 
+  /**
+   * Returns the injector {@code creator} provisions from: the injector whose bindings are being
+   * scoped on the current thread, or, when a custom scope delegates to this one later on, the
+   * injector of the unscoped provider it was passed. Returns null for any other provider scoped
+   * outside of an injector, whose scoped provider still creates a single instance, but can't
+   * proxy circular dependencies spanning several threads.
+   */
+  private static InjectorImpl owningInjector(Provider<?> creator) {
+    InjectorImpl injector = InternalContext.getScopingInjector();
+    if (injector == null && creator instanceof ProviderToInternalFactoryAdapter) {
+      injector = ((ProviderToInternalFactoryAdapter<?>) creator).getInjector();
+    }
+    return injector;
+  }
+
   @Override public String toString() {
     return "Scopes.SINGLETON";
   }
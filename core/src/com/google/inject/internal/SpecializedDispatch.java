@@ -0,0 +1,510 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASM5;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP_X1;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.transform.AbstractClassTransformer;
+import net.sf.cglib.transform.TransformingClassGenerator;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.security.ProtectionDomain;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates enhanced classes whose intercepted methods pass their arguments to the interceptors
+ * without boxing them. cglib calls the interceptors of a method with its arguments boxed into an
+ * array, which for methods taking primitives allocates a wrapper per argument on every call, even
+ * though most interceptors never look at the arguments.
+ *
+ * <p>For each method to specialize, this replaces the body cglib generates with one that creates
+ * an {@link InterceptedMethodInvocation} of a class generated for that method. The invocation
+ * keeps the arguments in typed fields, boxes them only if an interceptor calls
+ * {@link InterceptedMethodInvocation#getArguments getArguments()}, and calls the method with them
+ * through the accessor cglib generates for {@code MethodProxy.invokeSuper}. The value returned is
+ * still boxed, since interceptors return objects.
+ *
+ * <p>Used only with the {@code guice_interceptor_dispatch=SPECIALIZED} flag.
+ */
+final class SpecializedDispatch extends DefaultGeneratorStrategy
+    implements BytecodeCache.DefiningStrategy {
+
+  private static final String INVOCATION_TYPE =
+      Type.getInternalName(InterceptedMethodInvocation.class);
+  private static final String CALLBACK_DESCRIPTOR = Type.getDescriptor(MethodInterceptor.class);
+  private static final String OBJECT_TYPE = Type.getInternalName(Object.class);
+  private static final String OBJECT_DESCRIPTOR = Type.getDescriptor(Object.class);
+  private static final String BIND_CALLBACKS = "CGLIB$BIND_CALLBACKS";
+
+  /** The names and descriptors of the methods to specialize. */
+  private final Set<String> methods = Sets.newHashSet();
+  private final ClassLoader classLoader;
+  private final ProtectionDomain protectionDomain;
+  /** The bytecode of the invocations defined for the last class generated, by class name. */
+  private final Map<String, byte[]> invocations = Maps.newLinkedHashMap();
+
+  /**
+   * @param methods the intercepted methods to specialize
+   * @param classLoader the class loader of the enhanced class
+   * @param superclass the class being enhanced
+   */
+  SpecializedDispatch(Collection<Method> methods, ClassLoader classLoader, Class<?> superclass) {
+    for (Method method : methods) {
+      this.methods.add(method.getName() + Type.getMethodDescriptor(method));
+    }
+    this.classLoader = classLoader;
+    this.protectionDomain = ReflectUtils.getProtectionDomain(superclass);
+  }
+
+  /** Returns true if calls to {@code method} would box arguments that specializing keeps. */
+  static boolean isWorthSpecializing(Method method) {
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      if (parameterType.isPrimitive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public Map<String, byte[]> definedClasses() {
+    return invocations;
+  }
+
+  @Override protected ClassGenerator transform(ClassGenerator generator) {
+    // cglib also generates the FastClasses of method proxies with the strategy of the enhancer
+    invocations.clear();
+    return new TransformingClassGenerator(generator, new Transformer());
+  }
+
+  /** An intercepted method whose body cglib generated was dropped. */
+  private static class Intercepted {
+    final int access;
+    final String name;
+    final String descriptor;
+    final String signature;
+    final String[] exceptions;
+    /** The field of the enhanced class holding the callback of this method. */
+    String callbackField;
+
+    Intercepted(int access, String name, String descriptor, String signature, String[] exceptions) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.signature = signature;
+      this.exceptions = exceptions;
+    }
+  }
+
+  private class Transformer extends AbstractClassTransformer {
+    String className;
+    String superName;
+    final Map<String, Intercepted> dropped = Maps.newLinkedHashMap();
+    /** The accessors calling the superclass methods, by the name and descriptor of the method. */
+    final Map<String, String> accessors = Maps.newHashMap();
+
+    @Override public void visit(int version, int access, String name, String signature,
+        String superName, String[] interfaces) {
+      this.className = name;
+      this.superName = superName;
+      super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override public MethodVisitor visitMethod(int access, String name,
+        String descriptor, String signature, String[] exceptions) {
+      String key = name + descriptor;
+      if ((access & ACC_STATIC) == 0 && methods.contains(key)) {
+        final Intercepted method =
+            new Intercepted(access, name, descriptor, signature, exceptions);
+        dropped.put(key, method);
+        // drops the body, only noting the callback it reads first
+        return new MethodVisitor(ASM5) {
+          @Override public void visitFieldInsn(
+              int opcode, String owner, String name, String descriptor) {
+            if (method.callbackField == null && opcode == GETFIELD
+                && owner.equals(className) && descriptor.equals(CALLBACK_DESCRIPTOR)) {
+              method.callbackField = name;
+            }
+          }
+        };
+      }
+      String superMethod = superMethodOf(name);
+      if ((access & ACC_STATIC) == 0 && superMethod != null
+          && methods.contains(superMethod + descriptor)) {
+        accessors.put(superMethod + descriptor, name);
+      }
+      return super.visitMethod(access, name, descriptor, signature, exceptions);
+    }
+
+    @Override public void visitEnd() {
+      int index = 0;
+      for (Map.Entry<String, Intercepted> entry : dropped.entrySet()) {
+        Intercepted method = entry.getValue();
+        String accessor = accessors.get(entry.getKey());
+        if (accessor == null || method.callbackField == null) {
+          throw new IllegalStateException("Unexpected enhanced method " + method.name
+              + method.descriptor + " in " + className);
+        }
+        String invocationType = className + "$$InvocationByGuice$$" + index++;
+        defineInvocation(invocationType, className, accessor, method.descriptor);
+        writeMethod(method, invocationType);
+      }
+      super.visitEnd();
+    }
+
+    /** Returns the name of the method {@code name} is cglib's accessor for, or null. */
+    private String superMethodOf(String name) {
+      if (!name.startsWith("CGLIB$")) {
+        return null;
+      }
+      int separator = name.lastIndexOf('$');
+      if (separator <= "CGLIB$".length() || separator == name.length() - 1) {
+        return null;
+      }
+      for (int i = separator + 1; i < name.length(); i++) {
+        if (!Character.isDigit(name.charAt(i))) {
+          return null;
+        }
+      }
+      return name.substring("CGLIB$".length(), separator);
+    }
+
+    /**
+     * Writes the intercepted method, which calls the superclass method directly while no callback
+     * is registered, as cglib does.
+     */
+    private void writeMethod(Intercepted method, String invocationType) {
+      Type[] parameterTypes = Type.getArgumentTypes(method.descriptor);
+      Type returnType = Type.getReturnType(method.descriptor);
+      MethodVisitor mv = cv.visitMethod(
+          method.access, method.name, method.descriptor, method.signature, method.exceptions);
+      mv.visitCode();
+      Label bound = new Label();
+      Label intercepted = new Label();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, className, method.callbackField, CALLBACK_DESCRIPTOR);
+      mv.visitInsn(DUP);
+      mv.visitJumpInsn(IFNONNULL, bound);
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitMethodInsn(INVOKESTATIC, className, BIND_CALLBACKS,
+          "(" + OBJECT_DESCRIPTOR + ")V", false);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, className, method.callbackField, CALLBACK_DESCRIPTOR);
+      mv.visitLabel(bound);
+      mv.visitInsn(DUP);
+      mv.visitJumpInsn(IFNONNULL, intercepted);
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 0);
+      int slot = loadArguments(mv, parameterTypes, 1);
+      mv.visitMethodInsn(INVOKESPECIAL, superName, method.name, method.descriptor, false);
+      mv.visitInsn(returnType.getOpcode(IRETURN));
+      mv.visitLabel(intercepted);
+      mv.visitVarInsn(ASTORE, slot);
+      mv.visitTypeInsn(NEW, invocationType);
+      mv.visitInsn(DUP);
+      mv.visitVarInsn(ALOAD, slot);
+      mv.visitVarInsn(ALOAD, 0);
+      loadArguments(mv, parameterTypes, 1);
+      mv.visitMethodInsn(INVOKESPECIAL, invocationType, "<init>",
+          constructorDescriptor(parameterTypes), false);
+      mv.visitMethodInsn(INVOKEVIRTUAL, invocationType, "dispatch",
+          "()" + OBJECT_DESCRIPTOR, false);
+      unboxOrZero(mv, returnType);
+      mv.visitInsn(returnType.getOpcode(IRETURN));
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+  }
+
+  /**
+   * Defines the invocation of {@code accessor}, in the class loader of the enhanced class so that
+   * it may call the package-private accessor.
+   */
+  private void defineInvocation(
+      String invocationType, String enhancedType, String accessor, String descriptor) {
+    Type[] parameterTypes = Type.getArgumentTypes(descriptor);
+    Type returnType = Type.getReturnType(descriptor);
+    String argumentsDescriptor = "[" + OBJECT_DESCRIPTOR;
+
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, invocationType, null, INVOCATION_TYPE, null);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "a" + i, parameterTypes[i].getDescriptor(), null,
+          null).visitEnd();
+    }
+    cw.visitField(ACC_PRIVATE, "arguments", argumentsDescriptor, null, null).visitEnd();
+
+    // the constructor, taking the callback, the enhanced instance and the arguments
+    MethodVisitor mv = cw.visitMethod(
+        ACC_PUBLIC, "<init>", constructorDescriptor(parameterTypes), null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKESPECIAL, INVOCATION_TYPE, "<init>",
+        "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")V", false);
+    int slot = 3;
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(parameterTypes[i].getOpcode(ILOAD), slot);
+      mv.visitFieldInsn(PUTFIELD, invocationType, "a" + i, parameterTypes[i].getDescriptor());
+      slot += parameterTypes[i].getSize();
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    // getArguments(), boxing the arguments once
+    mv = cw.visitMethod(ACC_PUBLIC, "getArguments", "()" + argumentsDescriptor, null, null);
+    mv.visitCode();
+    Label boxed = new Label();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, invocationType, "arguments", argumentsDescriptor);
+    mv.visitInsn(DUP);
+    mv.visitJumpInsn(IFNONNULL, boxed);
+    mv.visitInsn(POP);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitLdcInsn(parameterTypes.length);
+    mv.visitTypeInsn(ANEWARRAY, OBJECT_TYPE);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitInsn(DUP);
+      mv.visitLdcInsn(i);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, invocationType, "a" + i, parameterTypes[i].getDescriptor());
+      box(mv, parameterTypes[i]);
+      mv.visitInsn(AASTORE);
+    }
+    mv.visitInsn(DUP_X1);
+    mv.visitFieldInsn(PUTFIELD, invocationType, "arguments", argumentsDescriptor);
+    mv.visitLabel(boxed);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    // invokeMethod(), with the boxed arguments if an interceptor may have changed them
+    mv = cw.visitMethod(ACC_PROTECTED, "invokeMethod", "()" + OBJECT_DESCRIPTOR, null,
+        new String[] {Type.getInternalName(Throwable.class)});
+    mv.visitCode();
+    Label fromArray = new Label();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, invocationType, "arguments", argumentsDescriptor);
+    mv.visitJumpInsn(IFNONNULL, fromArray);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, INVOCATION_TYPE, "proxy", OBJECT_DESCRIPTOR);
+    mv.visitTypeInsn(CHECKCAST, enhancedType);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, invocationType, "a" + i, parameterTypes[i].getDescriptor());
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, enhancedType, accessor, descriptor, false);
+    boxResult(mv, returnType);
+    mv.visitInsn(ARETURN);
+    mv.visitLabel(fromArray);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, INVOCATION_TYPE, "proxy", OBJECT_DESCRIPTOR);
+    mv.visitTypeInsn(CHECKCAST, enhancedType);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, invocationType, "arguments", argumentsDescriptor);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      unbox(mv, parameterTypes[i]);
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, enhancedType, accessor, descriptor, false);
+    boxResult(mv, returnType);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    String name = invocationType.replace('/', '.');
+    byte[] bytecode = cw.toByteArray();
+    try {
+      ReflectUtils.defineClass(name, bytecode, classLoader, protectionDomain);
+      invocations.put(name, bytecode);
+    } catch (Exception e) {
+      throw new IllegalStateException("Unable to define " + invocationType, e);
+    }
+  }
+
+  private static String constructorDescriptor(Type[] parameterTypes) {
+    StringBuilder descriptor = new StringBuilder("(").append(OBJECT_DESCRIPTOR)
+        .append(OBJECT_DESCRIPTOR);
+    for (Type parameterType : parameterTypes) {
+      descriptor.append(parameterType.getDescriptor());
+    }
+    return descriptor.append(")V").toString();
+  }
+
+  /** Loads the arguments starting at {@code slot}, returning the first slot after them. */
+  private static int loadArguments(MethodVisitor mv, Type[] parameterTypes, int slot) {
+    for (Type parameterType : parameterTypes) {
+      mv.visitVarInsn(parameterType.getOpcode(ILOAD), slot);
+      slot += parameterType.getSize();
+    }
+    return slot;
+  }
+
+  /** Boxes the value of {@code type} on the stack, or pushes null for void. */
+  private static void boxResult(MethodVisitor mv, Type type) {
+    if (type.getSort() == Type.VOID) {
+      mv.visitInsn(ACONST_NULL);
+    } else {
+      box(mv, type);
+    }
+  }
+
+  private static void box(MethodVisitor mv, Type type) {
+    Type boxed = boxedType(type);
+    if (boxed != null) {
+      mv.visitMethodInsn(INVOKESTATIC, boxed.getInternalName(), "valueOf",
+          "(" + type.getDescriptor() + ")" + boxed.getDescriptor(), false);
+    }
+  }
+
+  /** Unboxes the object on the stack to {@code type}, failing on null. */
+  private static void unbox(MethodVisitor mv, Type type) {
+    Type boxed = boxedType(type);
+    if (boxed == null) {
+      mv.visitTypeInsn(CHECKCAST, type.getSort() == Type.ARRAY
+          ? type.getDescriptor() : type.getInternalName());
+      return;
+    }
+    mv.visitTypeInsn(CHECKCAST, boxed.getInternalName());
+    mv.visitMethodInsn(INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value",
+        "()" + type.getDescriptor(), false);
+  }
+
+  /**
+   * Converts the object returned by the interceptors to {@code type}, null being zero or false
+   * for primitives, as it is for cglib. Primitives other than booleans and chars may be returned
+   * as any number.
+   */
+  private static void unboxOrZero(MethodVisitor mv, Type type) {
+    switch (type.getSort()) {
+      case Type.VOID:
+        mv.visitInsn(POP);
+        return;
+      case Type.OBJECT:
+      case Type.ARRAY:
+        unbox(mv, type);
+        return;
+      default:
+        break;
+    }
+    Label present = new Label();
+    Label done = new Label();
+    mv.visitInsn(DUP);
+    mv.visitJumpInsn(IFNONNULL, present);
+    mv.visitInsn(POP);
+    switch (type.getSort()) {
+      case Type.LONG:
+        mv.visitInsn(LCONST_0);
+        break;
+      case Type.FLOAT:
+        mv.visitInsn(FCONST_0);
+        break;
+      case Type.DOUBLE:
+        mv.visitInsn(DCONST_0);
+        break;
+      default:
+        mv.visitInsn(ICONST_0);
+        break;
+    }
+    mv.visitJumpInsn(GOTO, done);
+    mv.visitLabel(present);
+    if (type.getSort() == Type.BOOLEAN || type.getSort() == Type.CHAR) {
+      unbox(mv, type);
+    } else {
+      String number = Type.getInternalName(Number.class);
+      mv.visitTypeInsn(CHECKCAST, number);
+      mv.visitMethodInsn(INVOKEVIRTUAL, number, type.getClassName() + "Value",
+          "()" + type.getDescriptor(), false);
+    }
+    mv.visitLabel(done);
+  }
+
+  private static Type boxedType(Type type) {
+    switch (type.getSort()) {
+      case Type.BOOLEAN:
+        return Type.getType(Boolean.class);
+      case Type.CHAR:
+        return Type.getType(Character.class);
+      case Type.BYTE:
+        return Type.getType(Byte.class);
+      case Type.SHORT:
+        return Type.getType(Short.class);
+      case Type.INT:
+        return Type.getType(Integer.class);
+      case Type.FLOAT:
+        return Type.getType(Float.class);
+      case Type.LONG:
+        return Type.getType(Long.class);
+      case Type.DOUBLE:
+        return Type.getType(Double.class);
+      default:
+        return null;
+    }
+  }
+}
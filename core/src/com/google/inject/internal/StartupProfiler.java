@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Key;
+import com.google.inject.spi.StartupProfile;
+import com.google.inject.spi.StartupProfile.Timing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times the phases of injector creation, and logs them at FINE level. A recording profiler also
+ * keeps the wall and CPU time of each phase, of the modules recorded by the creating thread and of
+ * the eager singletons, for a {@link StartupProfile}.
+ */
+public final class StartupProfiler {
+  private static final Logger logger = Logger.getLogger(StartupProfiler.class.getName());
+
+  /** The profiler of the injector being created by the current thread. */
+  private static final ThreadLocal<StartupProfiler> current = new ThreadLocal<StartupProfiler>();
+
+  private final boolean recording;
+  private final ThreadMXBean threads;
+
+  private long phaseStart = System.nanoTime();
+  private long phaseCpuStart;
+  /** The {@link InjectorEvents} event of the current phase, if any. */
+  private Object phaseEvent;
+
+  /** Phases timed so far. Only kept when recording. */
+  private final List<Timing> phases = Lists.newArrayList();
+
+  /** Modules and singletons timed during the current phase. Guarded by this. */
+  private List<Timing> phaseChildren = Lists.newArrayList();
+
+  /** The modules being recorded by the creating thread, innermost first. */
+  private final Deque<Frame> modules = new ArrayDeque<Frame>();
+
+  private int justInTimeBindingCount;
+
+  public StartupProfiler(boolean recording) {
+    this.recording = recording;
+    this.threads = recording ? ManagementFactory.getThreadMXBean() : null;
+    this.phaseCpuStart = cpuTime();
+    InjectorEvents events = InjectorEvents.INSTALLED;
+    if (events != null) {
+      phaseEvent = events.beginPhase();
+    }
+  }
+
+  /**
+   * Returns the recording profiler of the injector being created by this thread, if any. Injectors
+   * created while creating another injector, such as child injectors, have their own profiler.
+   */
+  public static StartupProfiler current() {
+    StartupProfiler profiler = current.get();
+    return profiler != null && profiler.recording ? profiler : null;
+  }
+
+  /**
+   * Makes this the profiler of the injector being created by this thread, returning the previous
+   * one to be passed to {@link #detach}.
+   */
+  StartupProfiler attach() {
+    StartupProfiler previous = current.get();
+    current.set(this);
+    return previous;
+  }
+
+  void detach(StartupProfiler previous) {
+    if (previous != null) {
+      current.set(previous);
+    } else {
+      current.remove();
+    }
+  }
+
+  /** Ends the current phase, named {@code label}, and starts the next. */
+  void endPhase(String label) {
+    long now = System.nanoTime();
+    long elapsed = now - phaseStart;
+    phaseStart = now;
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine(label + ": " + elapsed / 1000000 + "ms");
+    }
+    InjectorEvents events = InjectorEvents.INSTALLED;
+    if (events != null) {
+      if (phaseEvent != null) {
+        events.endPhase(phaseEvent, label);
+      }
+      phaseEvent = events.beginPhase();
+    }
+    if (recording) {
+      long cpuNow = cpuTime();
+      long cpuElapsed = cpuNow >= 0 ? cpuNow - phaseCpuStart : -1;
+      phaseCpuStart = cpuNow;
+      synchronized (this) {
+        phases.add(new Timing(label, elapsed, cpuElapsed, phaseChildren));
+        phaseChildren = Lists.newArrayList();
+      }
+    }
+  }
+
+  /** Starts timing the recording of {@code module}, which may install other modules. */
+  public void startModule(Object module) {
+    modules.push(new Frame(module.getClass().getName(), System.nanoTime(), cpuTime()));
+  }
+
+  /** Stops timing the module {@link #startModule started} last. */
+  public void endModule() {
+    Frame frame = modules.pop();
+    Timing timing = frame.end(System.nanoTime(), cpuTime());
+    if (modules.isEmpty()) {
+      addPhaseChild(timing);
+    } else {
+      modules.peek().children.add(timing);
+    }
+  }
+
+  /**
+   * Returns the time the current thread started loading an eager singleton, if recording, to be
+   * passed to {@link #endSingleton}.
+   */
+  long[] startSingleton() {
+    return recording ? new long[] {System.nanoTime(), cpuTime()} : null;
+  }
+
+  /** Records the time spent loading the eager singleton bound to {@code key}. */
+  void endSingleton(Key<?> key, long[] start) {
+    if (start != null) {
+      long cpuNow = cpuTime();
+      addPhaseChild(new Timing(key.toString(), System.nanoTime() - start[0],
+          cpuNow >= 0 ? cpuNow - start[1] : -1, ImmutableList.<Timing>of()));
+    }
+  }
+
+  void addJustInTimeBindings(int count) {
+    justInTimeBindingCount += count;
+  }
+
+  private synchronized void addPhaseChild(Timing timing) {
+    phaseChildren.add(timing);
+  }
+
+  public synchronized List<Timing> getPhases() {
+    return ImmutableList.copyOf(phases);
+  }
+
+  public int getJustInTimeBindingCount() {
+    return justInTimeBindingCount;
+  }
+
+  /** Returns the CPU time of the current thread, or -1 if it isn't measured. */
+  private long cpuTime() {
+    return threads != null && threads.isCurrentThreadCpuTimeSupported()
+        ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  /** A module being recorded. */
+  private static final class Frame {
+    final String name;
+    final long start;
+    final long cpuStart;
+    final List<Timing> children = Lists.newArrayList();
+
+    Frame(String name, long start, long cpuStart) {
+      this.name = name;
+      this.start = start;
+      this.cpuStart = cpuStart;
+    }
+
+    Timing end(long now, long cpuNow) {
+      return new Timing(name, now - start, cpuNow >= 0 ? cpuNow - cpuStart : -1, children);
+    }
+  }
+}
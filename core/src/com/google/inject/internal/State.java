@@ -81,6 +81,10 @@ interface State {
       return ImmutableSet.of();
     }
 
+    public void flatten() {
+      throw new UnsupportedOperationException();
+    }
+
     /*if[AOP]*/
     public void addMethodAspect(MethodAspect methodAspect) {
       throw new UnsupportedOperationException();
@@ -162,6 +166,13 @@ interface State {
   /** Returns all converters at this level only. */
   Iterable<TypeConverterBinding> getConvertersThisLevel();
 
+  /**
+   * Indexes the explicit bindings, scopes and converters of this level and all parent levels
+   * together, so that looking them up takes a single probe instead of one per level. Adding
+   * bindings, scopes or converters to this level afterwards drops the index again.
+   */
+  void flatten();
+
   /*if[AOP]*/
   void addMethodAspect(MethodAspect methodAspect);
 
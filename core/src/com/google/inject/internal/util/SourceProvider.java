@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -79,6 +80,18 @@ public final class SourceProvider {
    * is not skipped.
    */
   public StackTraceElement get(StackTraceElement[] stackTraceElements) {
+    Preconditions.checkNotNull(stackTraceElements, "The stack trace elements cannot be null.");
+    return get(Arrays.asList(stackTraceElements));
+  }
+
+  /**
+   * Returns the calling line of code. The selected line is the nearest to the top of the stack that
+   * is not skipped. Only the elements up to the selected one are read, so that lazy stack traces
+   * need not be read in full.
+   *
+   * @see com.google.common.base.Throwables#lazyStackTrace
+   */
+  public StackTraceElement get(List<StackTraceElement> stackTraceElements) {
     Preconditions.checkNotNull(stackTraceElements, "The stack trace elements cannot be null.");
     for (final StackTraceElement element : stackTraceElements) {
       String className = element.getClassName();
@@ -19,12 +19,12 @@ package com.google.inject.internal.util;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Member;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Creates stack trace elements for members.
@@ -34,7 +34,7 @@ import java.util.concurrent.ConcurrentMap;
 public class StackTraceElements {
 
   private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
-  private static final InMemoryStackTraceElement[] EMPTY_INMEMORY_STACK_TRACE = 
+  private static final InMemoryStackTraceElement[] EMPTY_PACKED_STACK_TRACE =
       new InMemoryStackTraceElement[0];
 
   /*if[AOP]*/
@@ -52,10 +52,12 @@ public class StackTraceElements {
           });
   /*end[AOP]*/
 
-  private static final ConcurrentMap<InMemoryStackTraceElement, InMemoryStackTraceElement>
-      elementCache = new ConcurrentHashMap<InMemoryStackTraceElement, InMemoryStackTraceElement>();
-  private static final ConcurrentMap<String, String> stringCache =
-      new ConcurrentHashMap<String, String>();
+  /**
+   * Distinct frames of packed call stacks. Frames recur in most call stacks, so each is only kept
+   * once, and only for as long as a packed call stack uses it.
+   */
+  private static final Interner<InMemoryStackTraceElement> frames = Interners.newWeakInterner();
+  private static final Interner<String> names = Interners.newWeakInterner();
 
   private static final String UNKNOWN_SOURCE = "Unknown Source";
 
@@ -97,84 +99,46 @@ public class StackTraceElements {
   }
   
   /**
-   * Clears the internal cache for {@link StackTraceElement StackTraceElements}.
+   * Returns {@code stackTraceElements} packed as frames shared by all packed call stacks. File
+   * names are left out.
    */
-  public static void clearCache() {
-    elementCache.clear();
-    stringCache.clear();
-  }
-  
-  /**
-   * Returns encoded in-memory version of {@link StackTraceElement StackTraceElements}.
-   */
-  public static InMemoryStackTraceElement[] convertToInMemoryStackTraceElement(
-      StackTraceElement[] stackTraceElements) {
+  public static InMemoryStackTraceElement[] pack(StackTraceElement[] stackTraceElements) {
     if (stackTraceElements.length == 0) {
-      return EMPTY_INMEMORY_STACK_TRACE;
+      return EMPTY_PACKED_STACK_TRACE;
     }
-    InMemoryStackTraceElement[] inMemoryStackTraceElements = 
-        new InMemoryStackTraceElement[stackTraceElements.length];
+    InMemoryStackTraceElement[] packed = new InMemoryStackTraceElement[stackTraceElements.length];
     for (int i = 0; i < stackTraceElements.length; i++) {
-      inMemoryStackTraceElements[i] = 
-          weakIntern(new InMemoryStackTraceElement(stackTraceElements[i]));
+      StackTraceElement element = stackTraceElements[i];
+      packed[i] = frames.intern(new InMemoryStackTraceElement(names.intern(element.getClassName()),
+          names.intern(element.getMethodName()), element.getLineNumber()));
     }
-    return inMemoryStackTraceElements;
+    return packed;
   }
-  
+
   /**
-   * Decodes in-memory stack trace elements to regular {@link StackTraceElement StackTraceElements}.
+   * Unpacks call stacks {@link #pack packed} to regular {@link StackTraceElement
+   * StackTraceElements}.
    */
-  public static StackTraceElement[] convertToStackTraceElement(
-      InMemoryStackTraceElement[] inMemoryStackTraceElements) {
-    if (inMemoryStackTraceElements.length == 0) {
+  public static StackTraceElement[] unpack(InMemoryStackTraceElement[] packed) {
+    if (packed.length == 0) {
       return EMPTY_STACK_TRACE;
     }
-    StackTraceElement[] stackTraceElements = 
-        new StackTraceElement[inMemoryStackTraceElements.length];
-    for (int i = 0; i < inMemoryStackTraceElements.length; i++) {
-      String declaringClass = inMemoryStackTraceElements[i].getClassName();
-      String methodName = inMemoryStackTraceElements[i].getMethodName();
-      int lineNumber = inMemoryStackTraceElements[i].getLineNumber();
-      stackTraceElements[i] = 
-          new StackTraceElement(declaringClass, methodName, UNKNOWN_SOURCE, lineNumber);
+    StackTraceElement[] stackTraceElements = new StackTraceElement[packed.length];
+    for (int i = 0; i < packed.length; i++) {
+      InMemoryStackTraceElement frame = packed[i];
+      stackTraceElements[i] = new StackTraceElement(
+          frame.getClassName(), frame.getMethodName(), UNKNOWN_SOURCE, frame.getLineNumber());
     }
     return stackTraceElements;
   }
-  
-  private static InMemoryStackTraceElement weakIntern(
-      InMemoryStackTraceElement inMemoryStackTraceElement) {
-    InMemoryStackTraceElement cached = elementCache.get(inMemoryStackTraceElement);
-    if (cached != null) {
-      return cached;
-    }
-    inMemoryStackTraceElement = new InMemoryStackTraceElement(
-        weakIntern(inMemoryStackTraceElement.getClassName()), 
-        weakIntern(inMemoryStackTraceElement.getMethodName()), 
-        inMemoryStackTraceElement.getLineNumber());
-    elementCache.put(inMemoryStackTraceElement, inMemoryStackTraceElement);
-    return inMemoryStackTraceElement;
-  }
-  
-  private static String weakIntern(String s) {
-    String cached = stringCache.get(s);
-    if (cached != null) {
-      return cached;
-    }
-    stringCache.put(s, s);
-    return s;
-  }
-  
+
   /**
    * In-Memory version of {@link StackTraceElement} that does not store the file name. 
    */
   public static class InMemoryStackTraceElement {
-    private String declaringClass;
-    private String methodName;
-    private int lineNumber;
-
-    InMemoryStackTraceElement(StackTraceElement ste) {
-      this(ste.getClassName(), ste.getMethodName(), ste.getLineNumber());
-    }
+    private final String declaringClass;
+    private final String methodName;
+    private final int lineNumber;
 
     InMemoryStackTraceElement(String declaringClass, String methodName, int lineNumber) {
       this.declaringClass = declaringClass;
@@ -16,7 +16,10 @@
 
 package com.google.inject.matcher;
 
+import com.google.inject.internal.AnnotationRequiringMatcher;
+
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
 
 /**
  * Implements {@code and()} and {@code or()}.
@@ -33,7 +36,8 @@ public abstract class AbstractMatcher<T> implements Matcher<T> {
     return new OrMatcher<T>(this, other);
   }
 
-  private static class AndMatcher<T> extends AbstractMatcher<T> implements Serializable {
+  private static class AndMatcher<T> extends AbstractMatcher<T>
+      implements AnnotationRequiringMatcher, Serializable {
     private final Matcher<? super T> a, b;
 
     public AndMatcher(Matcher<? super T> a, Matcher<? super T> b) {
@@ -45,6 +49,17 @@ public abstract class AbstractMatcher<T> implements Matcher<T> {
       return a.matches(t) && b.matches(t);
     }
 
+    public Class<? extends Annotation> requiredAnnotationType() {
+      Class<? extends Annotation> required = requiredAnnotationType(a);
+      return required != null ? required : requiredAnnotationType(b);
+    }
+
+    private static Class<? extends Annotation> requiredAnnotationType(Matcher<?> matcher) {
+      return matcher instanceof AnnotationRequiringMatcher
+          ? ((AnnotationRequiringMatcher) matcher).requiredAnnotationType()
+          : null;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AndMatcher
           && ((AndMatcher) other).a.equals(a)
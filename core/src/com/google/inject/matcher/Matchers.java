@@ -19,6 +19,8 @@ package com.google.inject.matcher;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.inject.internal.AnnotationRequiringMatcher;
+
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
@@ -110,7 +112,7 @@ public class Matchers {
   }
 
   private static class AnnotatedWithType extends AbstractMatcher<AnnotatedElement>
-      implements Serializable {
+      implements AnnotationRequiringMatcher, Serializable {
     private final Class<? extends Annotation> annotationType;
 
     public AnnotatedWithType(Class<? extends Annotation> annotationType) {
@@ -122,6 +124,10 @@ public class Matchers {
       return element.isAnnotationPresent(annotationType);
     }
 
+    public Class<? extends Annotation> requiredAnnotationType() {
+      return annotationType;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AnnotatedWithType
           && ((AnnotatedWithType) other).annotationType.equals(annotationType);
@@ -148,7 +154,7 @@ public class Matchers {
   }
 
   private static class AnnotatedWith extends AbstractMatcher<AnnotatedElement>
-      implements Serializable {
+      implements AnnotationRequiringMatcher, Serializable {
     private final Annotation annotation;
 
     public AnnotatedWith(Annotation annotation) {
@@ -161,6 +167,10 @@ public class Matchers {
       return fromElement != null && annotation.equals(fromElement);
     }
 
+    public Class<? extends Annotation> requiredAnnotationType() {
+      return annotation.annotationType();
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AnnotatedWith
           && ((AnnotatedWith) other).annotation.equals(annotation);
@@ -71,6 +71,8 @@ public final class ElementSource {
   /** 
    * The partial call stack that starts at the last module {@link Module#Configure(Binder)
    * configure(Binder)} call. The value is empty if stack trace collection is off.
+   *
+   * @see StackTraceElements#pack
    */
   final InMemoryStackTraceElement[] partialCallStack;
   
@@ -99,7 +101,26 @@ public final class ElementSource {
     this.originalElementSource = originalSource;
     this.declaringSource = declaringSource;
     this.moduleSource = moduleSource;
-    this.partialCallStack = StackTraceElements.convertToInMemoryStackTraceElement(partialCallStack);
+    this.partialCallStack = StackTraceElements.pack(partialCallStack);
+  }
+
+  private ElementSource(/* @Nullable */ ElementSource originalSource, Object declaringSource,
+      ModuleSource moduleSource) {
+    this.originalElementSource = originalSource;
+    this.declaringSource = declaringSource;
+    this.moduleSource = moduleSource;
+    this.partialCallStack = StackTraceElements.pack(new StackTraceElement[0]);
+  }
+
+  /**
+   * Returns this source and its original sources without call stacks, the same as if stack trace
+   * collection had been off when the elements were recorded. Declaring sources and module class
+   * names are kept, so error messages don't change.
+   */
+  ElementSource withoutStackTraces() {
+    return new ElementSource(
+        originalElementSource != null ? originalElementSource.withoutStackTraces() : null,
+        declaringSource, moduleSource.withoutStackTraces());
   }
   
   /**
@@ -176,7 +197,7 @@ public final class ElementSource {
     int size = moduleSource.getStackTraceSize() + chunkSize;
     StackTraceElement[] callStack = new StackTraceElement[size];
     System.arraycopy(
-        StackTraceElements.convertToStackTraceElement(partialCallStack), 0, callStack, 0, 
+        StackTraceElements.unpack(partialCallStack), 0, callStack, 0, 
         chunkSize);
     System.arraycopy(moduleSource.getStackTrace(), 0, callStack, chunkSize, modulesCallStackSize);
     return callStack;
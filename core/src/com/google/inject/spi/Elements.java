@@ -18,8 +18,12 @@ package com.google.inject.spi;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.inject.internal.InternalFlags.getIncludeStackTraceOption;
+import static com.google.inject.internal.InternalFlags.getOriginalElementSourceOption;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -44,11 +48,12 @@ import com.google.inject.internal.ConstantBindingBuilderImpl;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ExposureBuilder;
 import com.google.inject.internal.InternalFlags.IncludeStackTraceOption;
+import com.google.inject.internal.InternalFlags.OriginalElementSourceOption;
 import com.google.inject.internal.MoreTypes;
 import com.google.inject.internal.PrivateElementsImpl;
 import com.google.inject.internal.ProviderMethodsModule;
+import com.google.inject.internal.StartupProfiler;
 import com.google.inject.internal.util.SourceProvider;
-import com.google.inject.internal.util.StackTraceElements;
 import com.google.inject.matcher.Matcher;
 
 import java.lang.annotation.Annotation;
@@ -113,8 +118,6 @@ public final class Elements {
     for (RecordingBinder child : binder.privateBinders) {
       child.scanForAnnotatedMethods();
     }
-    // Free the memory consumed by the stack trace elements cache
-    StackTraceElements.clearCache();
     return Collections.unmodifiableList(binder.elements);
   }
 
@@ -158,6 +161,13 @@ public final class Elements {
   }
 
   private static class RecordingBinder implements Binder, PrivateBinder {
+    /**
+     * Declaring sources found in call stacks or module class names, shared by the elements bound
+     * by the same line or module.
+     */
+    private static final Interner<Object> declaringSources =
+        Interners.newWeakInterner();
+
     private final Stage stage;
     private final Map<Module, ModuleInfo> modules;
     private final List<Element> elements;
@@ -336,17 +346,29 @@ public final class Elements {
         // Always store this in the parent binder (even if it was a private module)
         // so that we know not to process it again, and so that scanners inherit down.
         modules.put(module, new ModuleInfo(binder, moduleSource, skipScanning));
+        // provider methods are timed along with their module
+        StartupProfiler profiler =
+            module instanceof ProviderMethodsModule ? null : StartupProfiler.current();
+        if (profiler != null) {
+          profiler.startModule(module);
+        }
         try {
-          module.configure(binder);
-        } catch (RuntimeException e) {
-          Collection<Message> messages = Errors.getMessagesFromThrowable(e);
-          if (!messages.isEmpty()) {
-            elements.addAll(messages);
-          } else {
-            addError(e);
+          try {
+            module.configure(binder);
+          } catch (RuntimeException e) {
+            Collection<Message> messages = Errors.getMessagesFromThrowable(e);
+            if (!messages.isEmpty()) {
+              elements.addAll(messages);
+            } else {
+              addError(e);
+            }
+          }
+          binder.install(ProviderMethodsModule.forModule(module));
+        } finally {
+          if (profiler != null) {
+            profiler.endModule();
           }
         }
-        binder.install(ProviderMethodsModule.forModule(module));
         // We are done with this module, so undo module source change
         if (unwrapModuleSource) {
           moduleSource = moduleSource.getParent();
@@ -514,25 +536,30 @@ public final class Elements {
       if (declaringSource instanceof ElementSource) {
         originalSource = (ElementSource) declaringSource;
         declaringSource = originalSource.getDeclaringSource();
+        // the copied elements, and their full sources, are usually gone once the injector is built;
+        // only the copies' references to them are trimmed, the copied sources are left as they are
+        if (getOriginalElementSourceOption() == OriginalElementSourceOption.DROP_STACK_TRACES) {
+          originalSource = originalSource.withoutStackTraces();
+        }
       }
       IncludeStackTraceOption stackTraceOption = getIncludeStackTraceOption();
-      if (stackTraceOption == IncludeStackTraceOption.COMPLETE ||
-          (stackTraceOption == IncludeStackTraceOption.ONLY_FOR_DECLARING_SOURCE
-          && declaringSource == null)) {
-        callStack = new Throwable().getStackTrace();
-      }
       if (stackTraceOption == IncludeStackTraceOption.COMPLETE) {
+        callStack = new Throwable().getStackTrace();
         partialCallStack = getPartialCallStack(callStack);
       }
       if (declaringSource == null) {
         // So 'source' and 'originalSource' are null otherwise declaringSource has some value
-        if (stackTraceOption == IncludeStackTraceOption.COMPLETE ||
-            stackTraceOption == IncludeStackTraceOption.ONLY_FOR_DECLARING_SOURCE) {
+        if (stackTraceOption == IncludeStackTraceOption.COMPLETE) {
           // With the above conditions and assignments 'callStack' is non-null
-          declaringSource = sourceProvider.get(callStack);
+          declaringSource = declaringSources.intern(sourceProvider.get(callStack));
+        } else if (stackTraceOption == IncludeStackTraceOption.ONLY_FOR_DECLARING_SOURCE) {
+          // only the frames up to the caller are needed, don't build the elements of all others
+          declaringSource = declaringSources.intern(
+              sourceProvider.get(Throwables.lazyStackTrace(new Throwable())));
         } else { // or if (stackTraceOption == IncludeStackTraceOptions.OFF)
           // As neither 'declaring source' nor 'call stack' is available use 'module source'
-          declaringSource = sourceProvider.getFromClassNames(moduleSource.getModuleClassNames());
+          declaringSource = declaringSources.intern(
+              sourceProvider.getFromClassNames(moduleSource.getModuleClassNames()));
         }
       }
       // Build the binding call stack
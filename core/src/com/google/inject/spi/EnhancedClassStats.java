@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.spi;
+
+import com.google.inject.internal.EnhancedClassCache;
+
+/**
+ * Statistics of the classes Guice generates to apply method interceptors, which all injectors in
+ * the JVM share. An injector reuses the class another injector generated for the same type, class
+ * loader and intercepted methods, for as long as some injector still uses it.
+ *
+ * <p>Sizes are those of the generated bytecode, and approximate the metaspace the classes take.
+ *
+ * @since 4.1
+ */
+public final class EnhancedClassStats {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long classCount;
+  private final long generatedBytes;
+  private final long savedBytes;
+
+  private EnhancedClassStats(long hitCount, long missCount, long classCount,
+      long generatedBytes, long savedBytes) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.classCount = classCount;
+    this.generatedBytes = generatedBytes;
+    this.savedBytes = savedBytes;
+  }
+
+  /** Returns the statistics of the classes generated so far. */
+  public static EnhancedClassStats get() {
+    return new EnhancedClassStats(EnhancedClassCache.hitCount(), EnhancedClassCache.missCount(),
+        EnhancedClassCache.size(), EnhancedClassCache.generatedBytes(),
+        EnhancedClassCache.savedBytes());
+  }
+
+  /** Returns the number of times an injector reused a class generated for another. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of times an injector needed a class no other injector was using. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of classes currently shared, approximately, since classes no longer used
+   * are only dropped once they're garbage collected.
+   */
+  public long getClassCount() {
+    return classCount;
+  }
+
+  /** Returns the size of the bytecode generated for the classes and the FastClasses they use. */
+  public long getGeneratedBytes() {
+    return generatedBytes;
+  }
+
+  /** Returns the size of the bytecode injectors didn't generate, since they reused classes. */
+  public long getSavedBytes() {
+    return savedBytes;
+  }
+
+  @Override public String toString() {
+    return "EnhancedClassStats[hits=" + hitCount + ", misses=" + missCount
+        + ", classes=" + classCount + ", generatedBytes=" + generatedBytes
+        + ", savedBytes=" + savedBytes + "]";
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.spi;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Injectable members of classes, as recorded at compile time by the Guice annotation processor in
+ * {@value #RESOURCE} resources. {@link InjectionPoint} only reads the annotations of the members
+ * listed here for classes that were recorded, and falls back to reading the annotations of all
+ * members for other classes.
+ *
+ * <p>Each line of a resource either names a recorded class by its binary name, or is one of its
+ * members annotated with {@literal @}{@code Inject}, following the class name and a space:
+ * <pre>
+ * com.example.Foo
+ * com.example.Foo constructor (com.example.Bar,int[])
+ * com.example.Foo field baz
+ * com.example.Foo method setQux(java.util.List)
+ * </pre>
+ * Parameter types are erased, arrays are written with trailing brackets.
+ *
+ * <p>The resources are read once per class loader, the first time a class it can see is scanned.
+ */
+final class InjectableMemberIndex {
+
+  private static final Logger logger = Logger.getLogger(InjectableMemberIndex.class.getName());
+
+  static final String RESOURCE = "META-INF/guice/injection-points";
+
+  private static final LoadingCache<ClassLoader, Map<String, Members>> indexes =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<ClassLoader, Map<String, Members>>() {
+            @Override public Map<String, Members> load(ClassLoader classLoader) {
+              return read(classLoader);
+            }
+          });
+
+  private InjectableMemberIndex() {}
+
+  /** Returns the recorded injectable members of {@code type}, or null if it wasn't recorded. */
+  static Members get(Class<?> type) {
+    ClassLoader classLoader = type.getClassLoader();
+    if (classLoader == null) {
+      return null;
+    }
+    return indexes.getUnchecked(classLoader).get(type.getName());
+  }
+
+  private static Map<String, Members> read(ClassLoader classLoader) {
+    Enumeration<URL> resources;
+    try {
+      resources = classLoader.getResources(RESOURCE);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot find " + RESOURCE + " resources", e);
+      return ImmutableMap.of();
+    }
+    if (!resources.hasMoreElements()) {
+      return ImmutableMap.of();
+    }
+
+    Map<String, Members> index = Maps.newHashMap();
+    Set<String> readBefore = Sets.newHashSet();
+    while (resources.hasMoreElements()) {
+      URL resource = resources.nextElement();
+      // classes recorded by resources further down the class path are shadowed, just like the
+      // classes themselves would be
+      Set<String> recordedHere = Sets.newHashSet();
+      try {
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(resource.openStream(), Charsets.UTF_8));
+        try {
+          for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+              continue;
+            }
+            int space = line.indexOf(' ');
+            String className = space < 0 ? line : line.substring(0, space);
+            if (readBefore.contains(className)) {
+              continue;
+            }
+            recordedHere.add(className);
+            Members members = index.get(className);
+            if (members == null) {
+              members = new Members();
+              index.put(className, members);
+            }
+            if (space >= 0) {
+              members.add(line.substring(space + 1).trim());
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot read " + resource, e);
+        for (String className : recordedHere) {
+          index.remove(className);
+        }
+      }
+      readBefore.addAll(recordedHere);
+    }
+    return index;
+  }
+
+  /** Returns the erased name of {@code type} in the format used by the resources. */
+  static String typeName(Class<?> type) {
+    return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+  }
+
+  static String parameters(Class<?>[] parameterTypes) {
+    StringBuilder result = new StringBuilder().append('(');
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        result.append(',');
+      }
+      result.append(typeName(parameterTypes[i]));
+    }
+    return result.append(')').toString();
+  }
+
+  /** The injectable members declared by a recorded class. */
+  static final class Members {
+    private Set<String> constructors = Collections.emptySet();
+    private Set<String> fields = Collections.emptySet();
+    private Set<String> methodNames = Collections.emptySet();
+    private Set<String> methods = Collections.emptySet();
+
+    private void add(String member) {
+      int space = member.indexOf(' ');
+      if (space < 0) {
+        return;
+      }
+      String kind = member.substring(0, space);
+      String signature = member.substring(space + 1).trim();
+      if (kind.equals("constructor")) {
+        constructors = add(constructors, signature);
+      } else if (kind.equals("field")) {
+        fields = add(fields, signature);
+      } else if (kind.equals("method")) {
+        int parenthesis = signature.indexOf('(');
+        if (parenthesis > 0) {
+          methodNames = add(methodNames, signature.substring(0, parenthesis));
+          methods = add(methods, signature);
+        }
+      }
+    }
+
+    private static Set<String> add(Set<String> set, String element) {
+      if (set.isEmpty()) {
+        set = Sets.newHashSet();
+      }
+      set.add(element);
+      return set;
+    }
+
+    boolean hasFields() {
+      return !fields.isEmpty();
+    }
+
+    boolean hasMethods() {
+      return !methods.isEmpty();
+    }
+
+    boolean isInjectable(Constructor<?> constructor) {
+      return !constructors.isEmpty()
+          && constructors.contains(parameters(constructor.getParameterTypes()));
+    }
+
+    boolean isInjectable(Field field) {
+      return fields.contains(field.getName());
+    }
+
+    boolean isInjectable(Method method) {
+      return methodNames.contains(method.getName())
+          && methods.contains(method.getName() + parameters(method.getParameterTypes()));
+    }
+  }
+}
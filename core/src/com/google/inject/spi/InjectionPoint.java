@@ -61,6 +61,9 @@ public final class InjectionPoint {
   
   private static final Logger logger = Logger.getLogger(InjectionPoint.class.getName());
 
+  private static final Field[] NO_FIELDS = {};
+  private static final Method[] NO_METHODS = {};
+
   private final boolean optional;
   private final Member member;
   private final TypeLiteral<?> declaringType;
@@ -242,7 +245,11 @@ public final class InjectionPoint {
     Errors errors = new Errors(rawType);
 
     Constructor<?> injectableConstructor = null;
+    InjectableMemberIndex.Members recorded = InjectableMemberIndex.get(rawType);
     for (Constructor<?> constructor : rawType.getDeclaredConstructors()) {
+      if (recorded != null && !recorded.isInjectable(constructor)) {
+        continue;
+      }
 
       boolean optional;
       Inject guiceInject = constructor.getAnnotation(Inject.class);
@@ -671,9 +678,15 @@ public final class InjectionPoint {
       }
 
       TypeLiteral<?> current = hierarchy.get(i);
-
-      for (Field field : current.getRawType().getDeclaredFields()) {
-        if (Modifier.isStatic(field.getModifiers()) == statics) {
+      Class<?> rawType = current.getRawType();
+      // only the annotations of members recorded at compile time need to be read, if any
+      InjectableMemberIndex.Members recorded = InjectableMemberIndex.get(rawType);
+
+      Field[] fields = recorded == null || recorded.hasFields()
+          ? rawType.getDeclaredFields() : NO_FIELDS;
+      for (Field field : fields) {
+        if (Modifier.isStatic(field.getModifiers()) == statics
+            && (recorded == null || recorded.isInjectable(field))) {
           Annotation atInject = getAtInject(field);
           if (atInject != null) {
             InjectableField injectableField = new InjectableField(current, field, atInject);
@@ -685,9 +698,13 @@ public final class InjectionPoint {
         }
       }
 
-      for (Method method : current.getRawType().getDeclaredMethods()) {
+      // methods that aren't injectable still matter when they override injectable ones
+      Method[] methods = recorded == null || recorded.hasMethods() || overrideIndex != null
+          ? rawType.getDeclaredMethods() : NO_METHODS;
+      for (Method method : methods) {
         if (isEligibleForInjection(method, statics)) {
-          Annotation atInject = getAtInject(method);
+          Annotation atInject = recorded == null || recorded.isInjectable(method)
+              ? getAtInject(method) : null;
           if (atInject != null) {
             InjectableMethod injectableMethod = new InjectableMethod(
                 current, method, atInject);
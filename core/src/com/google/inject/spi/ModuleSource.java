@@ -19,10 +19,13 @@ package com.google.inject.spi;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Module;
+import com.google.common.collect.Maps;
 import com.google.inject.internal.util.StackTraceElements;
 import com.google.inject.internal.util.StackTraceElements.InMemoryStackTraceElement;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Associated to a {@link Module module}, provides the module class name, the parent module {@link
@@ -31,6 +34,9 @@ import java.util.List;
  */
 final class ModuleSource {
 
+  private static final InMemoryStackTraceElement[] NO_CALL_STACK =
+      new InMemoryStackTraceElement[0];
+
   /**
    * The class name of module that this {@link ModuleSource} associated to.
    */
@@ -46,9 +52,20 @@ final class ModuleSource {
    * configure(Binder)} call and ends just before the module {@link Module#configure(Binder)
    * configure(Binder)} method invocation. For a module without a parent module the chunk starts
    * from the bottom of call stack. The array is non-empty if stack trace collection is on.
+   *
+   * @see StackTraceElements#pack
    */
   private final InMemoryStackTraceElement[] partialCallStack;
 
+  /**
+   * The children created so far, keyed by module class name and partial call stack. Modules of
+   * the same class installed from the same place share their module source.
+   */
+  private Map<ChildKey, ModuleSource> children;
+
+  /** This module source without call stacks, created on demand. */
+  private ModuleSource withoutStackTraces;
+
   /**
    * Creates a new {@link ModuleSource} with a {@literal null} parent.
    * @param module the corresponding module
@@ -74,7 +91,15 @@ final class ModuleSource {
     Preconditions.checkNotNull(partialCallStack, "partialCallStack cannot be null.");
     this.parent = parent;
     this.moduleClassName = module.getClass().getName();
-    this.partialCallStack = StackTraceElements.convertToInMemoryStackTraceElement(partialCallStack);
+    this.partialCallStack = StackTraceElements.pack(partialCallStack);
+  }
+
+  private ModuleSource(
+      /* @Nullable */ ModuleSource parent, String moduleClassName,
+      InMemoryStackTraceElement[] partialCallStack) {
+    this.parent = parent;
+    this.moduleClassName = moduleClassName;
+    this.partialCallStack = partialCallStack;
   }
 
   /**
@@ -93,7 +118,7 @@ final class ModuleSource {
    * only if stack trace collection is on.
    */
   StackTraceElement[] getPartialCallStack() {
-    return StackTraceElements.convertToStackTraceElement(partialCallStack);
+    return StackTraceElements.unpack(partialCallStack);
   }
 
   /**
@@ -111,7 +136,39 @@ final class ModuleSource {
    * Module#configure(Binder) configure(Binder)} method invocation
    */
   ModuleSource createChild(Object module, StackTraceElement[] partialCallStack) {
-    return new ModuleSource(this, module, partialCallStack);
+    Preconditions.checkNotNull(module, "module cannot be null.");
+    Preconditions.checkNotNull(partialCallStack, "partialCallStack cannot be null.");
+    return getChild(module.getClass().getName(), StackTraceElements.pack(partialCallStack));
+  }
+
+  private synchronized ModuleSource getChild(
+      String moduleClassName, InMemoryStackTraceElement[] partialCallStack) {
+    if (children == null) {
+      children = Maps.newHashMap();
+    }
+    ChildKey key = new ChildKey(moduleClassName, partialCallStack);
+    ModuleSource child = children.get(key);
+    if (child == null) {
+      child = new ModuleSource(this, moduleClassName, partialCallStack);
+      children.put(key, child);
+    }
+    return child;
+  }
+
+  /**
+   * Returns this module source without call stacks, the same as if stack trace collection had
+   * been off when the modules were installed.
+   */
+  synchronized ModuleSource withoutStackTraces() {
+    if (withoutStackTraces == null) {
+      if (parent == null) {
+        withoutStackTraces = partialCallStack.length == 0
+            ? this : new ModuleSource(null, moduleClassName, NO_CALL_STACK);
+      } else {
+        withoutStackTraces = parent.withoutStackTraces().getChild(moduleClassName, NO_CALL_STACK);
+      }
+    }
+    return withoutStackTraces;
   }
 
   /**
@@ -170,8 +227,7 @@ final class ModuleSource {
     int cursor = 0;
     ModuleSource current = this;
     while (current != null) {
-      StackTraceElement[] chunk =
-          StackTraceElements.convertToStackTraceElement(current.partialCallStack);
+      StackTraceElement[] chunk = StackTraceElements.unpack(current.partialCallStack);
       int chunkSize = chunk.length;
       System.arraycopy(chunk, 0, callStack, cursor, chunkSize);
       current = current.parent;
@@ -179,4 +235,28 @@ final class ModuleSource {
     }
     return callStack;
   }
+
+  /** Identifies the children of a module source. */
+  private static final class ChildKey {
+    final String moduleClassName;
+    final InMemoryStackTraceElement[] partialCallStack;
+
+    ChildKey(String moduleClassName, InMemoryStackTraceElement[] partialCallStack) {
+      this.moduleClassName = moduleClassName;
+      this.partialCallStack = partialCallStack;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (!(obj instanceof ChildKey)) {
+        return false;
+      }
+      ChildKey other = (ChildKey) obj;
+      return moduleClassName.equals(other.moduleClassName)
+          && Arrays.equals(partialCallStack, other.partialCallStack);
+    }
+
+    @Override public int hashCode() {
+      return 31 * moduleClassName.hashCode() + Arrays.hashCode(partialCallStack);
+    }
+  }
 }
@@ -67,7 +67,16 @@ public interface ProvisionListener {
     /** Performs the provision, returning the object provisioned. */
     public abstract T provision();
     
-    /** Returns the dependency chain that led to this object being provisioned. */
+    /**
+     * Returns the dependency chain that led to this object being provisioned. The chain is
+     * recorded for every provision, unless the {@code guice_dependency_chain} system property is
+     * {@code WITH_PROVISION_LISTENERS}, in which case it is only recorded by provisions started
+     * from an injector that has provision listeners, inherits them from its parent, or was created
+     * with the injector of a private module that has them. Otherwise the chain is empty. A
+     * provision of such an injector nested in one of an injector without provision listeners, as
+     * when a provider calls another injector of the same tree, only records the chain from the
+     * outermost provision of an injector with listeners on.
+     */
     public abstract List<DependencyAndSource> getDependencyChain();
     
   }
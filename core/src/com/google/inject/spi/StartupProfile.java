@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.spi;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.internal.InternalInjectorCreator;
+import com.google.inject.internal.StartupProfiler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time went while an injector was created. Create the injector with one of the
+ * {@code createInjector} methods of this class, instead of those of
+ * {@link com.google.inject.Guice}, to get its profile.
+ *
+ * <p>The profile holds the wall and CPU time of each {@link #getPhases phase} of injector
+ * creation, in the order they ran. Phases of private environments are listed along with those of
+ * the injector. The time spent recording each module installed by the creating thread is held by
+ * the module execution phases, and the time spent loading each eager singleton by the phase that
+ * preloads singletons. Modules hold the modules they install.
+ *
+ * @since 4.1
+ */
+public final class StartupProfile {
+
+  private final Injector injector;
+  private final ImmutableList<Timing> phases;
+  private final int justInTimeBindingCount;
+
+  StartupProfile(Injector injector, List<Timing> phases, int justInTimeBindingCount) {
+    this.injector = injector;
+    this.phases = ImmutableList.copyOf(phases);
+    this.justInTimeBindingCount = justInTimeBindingCount;
+  }
+
+  /**
+   * Creates an injector for the given set of modules, and profiles it. This is equivalent to
+   * calling {@link #createInjector(Stage, Module...)} with Stage.DEVELOPMENT.
+   *
+   * @throws com.google.inject.CreationException if one or more errors occur during injector
+   *     creation
+   */
+  public static StartupProfile createInjector(Module... modules) {
+    return createInjector(Arrays.asList(modules));
+  }
+
+  /**
+   * Creates an injector for the given set of modules, and profiles it. This is equivalent to
+   * calling {@link #createInjector(Stage, Iterable)} with Stage.DEVELOPMENT.
+   *
+   * @throws com.google.inject.CreationException if one or more errors occur during injector
+   *     creation
+   */
+  public static StartupProfile createInjector(Iterable<? extends Module> modules) {
+    return createInjector(Stage.DEVELOPMENT, modules);
+  }
+
+  /**
+   * Creates an injector for the given set of modules, in a given development stage, and profiles
+   * it.
+   *
+   * @throws com.google.inject.CreationException if one or more errors occur during injector
+   *     creation
+   */
+  public static StartupProfile createInjector(Stage stage, Module... modules) {
+    return createInjector(stage, Arrays.asList(modules));
+  }
+
+  /**
+   * Creates an injector for the given set of modules, in a given development stage, and profiles
+   * it.
+   *
+   * @throws com.google.inject.CreationException if one or more errors occur during injector
+   *     creation
+   */
+  public static StartupProfile createInjector(Stage stage, Iterable<? extends Module> modules) {
+    StartupProfiler profiler = new StartupProfiler(true);
+    Injector injector = new InternalInjectorCreator()
+        .stage(stage)
+        .profiler(profiler)
+        .addModules(modules)
+        .build();
+    return new StartupProfile(
+        injector, profiler.getPhases(), profiler.getJustInTimeBindingCount());
+  }
+
+  /** Returns the injector that was profiled. */
+  public Injector getInjector() {
+    return injector;
+  }
+
+  /** Returns the phases of injector creation, in the order they ran. */
+  public List<Timing> getPhases() {
+    return phases;
+  }
+
+  /** Returns the number of just-in-time bindings created along with the injector. */
+  public int getJustInTimeBindingCount() {
+    return justInTimeBindingCount;
+  }
+
+  /** Returns the total wall time of injector creation, in nanoseconds. */
+  public long getWallNanos() {
+    long total = 0;
+    for (Timing phase : phases) {
+      total += phase.getWallNanos();
+    }
+    return total;
+  }
+
+  /**
+   * Returns this profile as a JSON object, with the just-in-time binding count and the phases.
+   * Each phase, module and singleton is an object with its {@code name}, {@code wallNanos},
+   * {@code cpuNanos} and {@code children}. CPU times are -1 if the JVM doesn't measure them.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder()
+        .append("{\"justInTimeBindings\":").append(justInTimeBindingCount)
+        .append(",\"wallNanos\":").append(getWallNanos())
+        .append(",\"phases\":");
+    appendJson(json, phases);
+    return json.append('}').toString();
+  }
+
+  private static void appendJson(StringBuilder json, List<Timing> timings) {
+    json.append('[');
+    for (int i = 0; i < timings.size(); i++) {
+      Timing timing = timings.get(i);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"name\":");
+      appendJsonString(json, timing.getName());
+      json.append(",\"wallNanos\":").append(timing.getWallNanos())
+          .append(",\"cpuNanos\":").append(timing.getCpuNanos())
+          .append(",\"children\":");
+      appendJson(json, timing.getChildren());
+      json.append('}');
+    }
+    json.append(']');
+  }
+
+  private static void appendJsonString(StringBuilder json, String s) {
+    json.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * Returns this profile in the collapsed stack format read by flame graph tools: one line per
+   * phase, module and singleton, with the names from the phase down separated by semicolons,
+   * followed by a space and the wall time spent there but not in its children, in microseconds.
+   */
+  public String toCollapsedStacks() {
+    StringBuilder stacks = new StringBuilder();
+    for (Timing phase : phases) {
+      appendCollapsedStacks(stacks, "", phase);
+    }
+    return stacks.toString();
+  }
+
+  private static void appendCollapsedStacks(StringBuilder stacks, String parent, Timing timing) {
+    // semicolons separate the frames, spaces the time
+    String stack = parent + timing.getName().replace(';', ',');
+    long childrenNanos = 0;
+    for (Timing child : timing.getChildren()) {
+      childrenNanos += child.getWallNanos();
+    }
+    // singletons may be loaded in parallel, so their time may add up to more than the phase
+    long selfMicros =
+        TimeUnit.NANOSECONDS.toMicros(Math.max(0, timing.getWallNanos() - childrenNanos));
+    stacks.append(stack).append(' ').append(selfMicros).append('\n');
+    for (Timing child : timing.getChildren()) {
+      appendCollapsedStacks(stacks, stack + ';', child);
+    }
+  }
+
+  @Override public String toString() {
+    return toCollapsedStacks();
+  }
+
+  /** The time spent in a phase of injector creation, a module or an eager singleton. */
+  public static final class Timing {
+    private final String name;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final ImmutableList<Timing> children;
+
+    /**
+     * @param name the name of the phase, the class name of the module or the key of the singleton
+     * @param wallNanos the wall time spent, in nanoseconds
+     * @param cpuNanos the CPU time spent by the thread, in nanoseconds, or -1 if not measured
+     * @param children the modules installed by the module, or the modules recorded and the
+     *     singletons loaded during the phase
+     */
+    public Timing(String name, long wallNanos, long cpuNanos, List<Timing> children) {
+      this.name = checkNotNull(name, "name");
+      this.wallNanos = wallNanos;
+      this.cpuNanos = cpuNanos;
+      this.children = ImmutableList.copyOf(children);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the wall time spent, including the time of the children, in nanoseconds. */
+    public long getWallNanos() {
+      return wallNanos;
+    }
+
+    /**
+     * Returns the CPU time spent by the thread, including the time of the children, in
+     * nanoseconds. Returns -1 if the JVM doesn't measure the CPU time of threads.
+     */
+    public long getCpuNanos() {
+      return cpuNanos;
+    }
+
+    public List<Timing> getChildren() {
+      return children;
+    }
+
+    @Override public String toString() {
+      return name + " " + TimeUnit.NANOSECONDS.toMicros(wallNanos) + "us";
+    }
+  }
+}
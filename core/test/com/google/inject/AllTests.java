@@ -95,6 +95,7 @@ public class AllTests {
     suite.addTestSuite(ParentInjectorTest.class);
     suite.addTestSuite(PrivateModuleTest.class);
     suite.addTestSuite(ProviderInjectionTest.class);
+    suite.addTestSuite(ProvisionAllocationTest.class);
     suite.addTestSuite(ProvisionExceptionTest.class);
     suite.addTestSuite(ProvisionListenerTest.class);
     // ProxyFactoryTest is AOP-only
@@ -146,8 +147,13 @@ public class AllTests {
     suite.addTestSuite(TypesTest.class);
 
     /*if[AOP]*/
+    suite.addTestSuite(com.google.inject.internal.BytecodeCacheTest.class);
+    suite.addTestSuite(com.google.inject.internal.EnhancedClassCacheTest.class);
+    suite.addTestSuite(com.google.inject.internal.MethodAspectIndexTest.class);
     suite.addTestSuite(com.google.inject.internal.ProxyFactoryTest.class);
+    suite.addTestSuite(com.google.inject.internal.SpecializedDispatchTest.class);
     suite.addTestSuite(IntegrationTest.class);
+    suite.addTestSuite(InterceptorChainTest.class);
     suite.addTestSuite(MethodInterceptionTest.class);
     suite.addTestSuite(com.googlecode.guice.BytecodeGenTest.class);
     /*end[AOP]*/
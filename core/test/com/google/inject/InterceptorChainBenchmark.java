@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InterceptorChainTest.ITERATIONS;
+import static com.google.inject.InterceptorChainTest.ROUNDS;
+import static com.google.inject.InterceptorChainTest.WARMUP;
+import static com.google.inject.InterceptorChainTest.bytesPerCall;
+import static com.google.inject.InterceptorChainTest.intercepted;
+import static com.google.inject.InterceptorChainTest.passThroughs;
+
+import com.google.inject.InterceptorChainTest.Service;
+
+/**
+ * Prints the time taken and the memory allocated by calls to methods intercepted by chains of 0,
+ * 1, 3 and 8 interceptors.
+ */
+public class InterceptorChainBenchmark {
+
+  static volatile int sink;
+
+  public static void main(String[] args) {
+    for (int round = 0; round < 3; round++) {
+      for (int count : new int[] {0, 1, 3, 8}) {
+        Service service = intercepted(passThroughs(count));
+        System.err.printf("%d interceptors: %.1f ns/call, %d bytes/call%n",
+            count, nanosPerCall(service), bytesPerCall(service));
+      }
+    }
+  }
+
+  static double nanosPerCall(Service service) {
+    for (int i = 0; i < WARMUP; i++) {
+      sink = service.call(i);
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS * 10; i++) {
+        sink = service.call(i);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / (ITERATIONS * 10);
+  }
+}
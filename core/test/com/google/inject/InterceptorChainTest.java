@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.matcher.Matchers.any;
+
+import com.google.common.collect.Lists;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+
+import junit.framework.TestCase;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that each interceptor of a method may proceed more than once, later, or from several
+ * threads, and that all of them see the same call.
+ */
+public class InterceptorChainTest extends TestCase {
+
+  static final int WARMUP = 20000;
+  static final int ITERATIONS = 100000;
+  static final int ROUNDS = 3;
+
+  static volatile int sink;
+
+  static final Matcher<Method> CALL = new AbstractMatcher<Method>() {
+    @Override public boolean matches(Method method) {
+      return method.getName().equals("call");
+    }
+  };
+
+  public static class Service {
+    int calls;
+
+    public int call(int value) {
+      calls++;
+      return value + 1;
+    }
+  }
+
+  static class PassThrough implements MethodInterceptor {
+    int invocations;
+
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      invocations++;
+      return invocation.proceed();
+    }
+  }
+
+  static Service intercepted(final MethodInterceptor... interceptors) {
+    return Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        if (interceptors.length > 0) {
+          bindInterceptor(any(), CALL, interceptors);
+        }
+      }
+    }).getInstance(Service.class);
+  }
+
+  static MethodInterceptor[] passThroughs(int count) {
+    MethodInterceptor[] interceptors = new MethodInterceptor[count];
+    for (int i = 0; i < count; i++) {
+      interceptors[i] = new PassThrough();
+    }
+    return interceptors;
+  }
+
+  public void testInterceptorMayProceedMoreThanOnce() {
+    PassThrough inner = new PassThrough();
+    Service service = intercepted(new MethodInterceptor() {
+      public Object invoke(MethodInvocation invocation) throws Throwable {
+        invocation.proceed();
+        return invocation.proceed();
+      }
+    }, inner);
+    assertEquals(2, service.call(1));
+    assertEquals(2, inner.invocations);
+    assertEquals(2, service.calls);
+  }
+
+  public void testInnermostInterceptorMayProceedLater() throws Throwable {
+    final List<MethodInvocation> later = Lists.newArrayList();
+    PassThrough outer = new PassThrough();
+    Service service = intercepted(outer, new MethodInterceptor() {
+      public Object invoke(MethodInvocation invocation) {
+        later.add(invocation);
+        return 0;
+      }
+    });
+    assertEquals(0, service.call(1));
+    assertEquals(0, service.calls);
+    assertEquals(2, later.get(0).proceed());
+    assertEquals(1, service.calls);
+    assertEquals(1, outer.invocations);
+  }
+
+  public void testOuterInterceptorMayProceedLater() throws Throwable {
+    final List<MethodInvocation> later = Lists.newArrayList();
+    PassThrough inner = new PassThrough();
+    Service service = intercepted(new MethodInterceptor() {
+      public Object invoke(MethodInvocation invocation) {
+        later.add(invocation);
+        return 0;
+      }
+    }, inner);
+    assertEquals(0, service.call(1));
+    assertEquals(0, inner.invocations);
+    assertEquals(2, later.get(0).proceed());
+    assertEquals(1, inner.invocations);
+    assertEquals(1, service.calls);
+  }
+
+  public void testInterceptorMayProceedFromSeveralThreads() throws Throwable {
+    final int threads = 4;
+    final CyclicBarrier allInside = new CyclicBarrier(threads);
+    final AtomicInteger innerInvocations = new AtomicInteger();
+    MethodInterceptor inner = new MethodInterceptor() {
+      public Object invoke(MethodInvocation invocation) throws Throwable {
+        innerInvocations.incrementAndGet();
+        allInside.await(10, TimeUnit.SECONDS);
+        return (Integer) invocation.proceed() * 10;
+      }
+    };
+    Service service = intercepted(new MethodInterceptor() {
+      public Object invoke(final MethodInvocation invocation) throws Throwable {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+          List<Future<Object>> results = Lists.newArrayList();
+          for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+              public Object call() throws Exception {
+                try {
+                  return invocation.proceed();
+                } catch (Throwable t) {
+                  throw new Exception(t);
+                }
+              }
+            }));
+          }
+          int sum = 0;
+          for (Future<Object> result : results) {
+            sum += (Integer) result.get(10, TimeUnit.SECONDS);
+          }
+          return sum;
+        } finally {
+          executor.shutdown();
+        }
+      }
+    }, inner);
+    assertEquals(threads * 20, service.call(1));
+    assertEquals(threads, innerInvocations.get());
+  }
+
+  public void testInterceptorsSeeTheSameCall() {
+    final List<Object> seen = Lists.newArrayList();
+    class Recording implements MethodInterceptor {
+      public Object invoke(MethodInvocation invocation) throws Throwable {
+        seen.add(invocation.getThis());
+        seen.add(invocation.getMethod().getName());
+        seen.add(invocation.getArguments()[0]);
+        return invocation.proceed();
+      }
+    }
+    Service service = intercepted(new Recording(), new Recording());
+    assertEquals(6, service.call(5));
+    assertEquals(Lists.<Object>newArrayList(service, "call", 5, service, "call", 5), seen);
+  }
+
+  static long bytesPerCall(Service service) {
+    for (int i = 0; i < WARMUP; i++) {
+      sink = service.call(i);
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = ProvisionAllocationTest.allocatedBytes();
+      for (int i = 0; i < ITERATIONS; i++) {
+        sink = service.call(i);
+      }
+      best = Math.min(best, (ProvisionAllocationTest.allocatedBytes() - before) / ITERATIONS);
+    }
+    return best;
+  }
+}
@@ -20,6 +20,8 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertSame;
 
+import com.google.inject.internal.InternalFlags;
+
 import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
@@ -34,13 +36,16 @@ import java.util.concurrent.Callable;
  * A semi-useless microbenchmark. Spring and Guice constuct the same object
  * graph a bunch of times, and we see who can construct the most per second.
  * As of this writing Guice is more than 50X faster. Also useful for comparing 
- * pure Java configuration options.
+ * pure Java configuration options. Run it with {@code -Dguice_member_access=REFLECTION} to
+ * compare reflection with the FastClass used by default to invoke constructors and methods.
  *
  * @author crazybob@google.com (Bob Lee)
  */
 public class PerformanceComparison {
 
   public static void main(String[] args) throws Exception {
+    System.err.println("Member access: " + InternalFlags.getMemberAccessOption());
+
     // Once warm up. Takes lazy loading out of the equation and ensures we
     // created the graphs properly.
     validate(springFactory);
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.ProvisionAllocationTest.bytesPerGet;
+
+import com.google.inject.ProvisionAllocationTest.SingletonScoped;
+import com.google.inject.ProvisionAllocationTest.Unscoped;
+
+/**
+ * Prints the memory allocated by {@link Provider#get()} for unscoped and singleton bindings, as
+ * {@link ProvisionAllocationTest} measures it.
+ */
+public class ProvisionAllocationBenchmark {
+
+  public static void main(String[] args) {
+    Provider<Unscoped> unscoped = Guice.createInjector().getProvider(Unscoped.class);
+    Provider<SingletonScoped> singleton = Guice.createInjector().getProvider(SingletonScoped.class);
+    for (int i = 0; i < 5; i++) {
+      System.err.println("Unscoped:  " + bytesPerGet(unscoped) + " bytes/get()");
+      System.err.println("Singleton: " + bytesPerGet(singleton) + " bytes/get()");
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the memory allocated by {@link Provider#get()} on the current thread, using the
+ * HotSpot specific {@code com.sun.management.ThreadMXBean}. Skipped on VMs that can't measure it.
+ */
+public class ProvisionAllocationTest extends TestCase {
+
+  private static final int WARMUP = 20000;
+  private static final int ITERATIONS = 100000;
+  private static final int ROUNDS = 3;
+
+  /** Keeps provisioned instances reachable, so their allocation can't be optimized away. */
+  static volatile Object sink;
+
+  static class Unscoped {}
+
+  @Singleton
+  static class SingletonScoped {}
+
+  public void testSingletonProvisionDoesNotAllocate() {
+    if (!canMeasure()) {
+      return;
+    }
+    Provider<SingletonScoped> provider = Guice.createInjector().getProvider(SingletonScoped.class);
+    long bytesPerGet = bytesPerGet(provider);
+    assertTrue("allocated " + bytesPerGet + " bytes per get()", bytesPerGet == 0);
+  }
+
+  public void testUnscopedProvisionOnlyAllocatesInstance() {
+    if (!canMeasure()) {
+      return;
+    }
+    Provider<Unscoped> provider = Guice.createInjector().getProvider(Unscoped.class);
+    long bytesPerGet = bytesPerGet(provider);
+    long bytesPerInstance = bytesPerGet(new Provider<Unscoped>() {
+      public Unscoped get() {
+        return new Unscoped();
+      }
+    });
+    assertTrue("allocated " + bytesPerGet + " bytes per get(), but instances only need "
+        + bytesPerInstance, bytesPerGet <= bytesPerInstance);
+  }
+
+  public void testExplicitSingletonProvisionDoesNotAllocate() {
+    if (!canMeasure()) {
+      return;
+    }
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(Unscoped.class).in(Scopes.SINGLETON);
+      }
+    });
+    long bytesPerGet = bytesPerGet(injector.getProvider(Unscoped.class));
+    assertTrue("allocated " + bytesPerGet + " bytes per get()", bytesPerGet == 0);
+  }
+
+  /**
+   * Returns the rounded down number of bytes allocated by each call to {@code provider.get()}.
+   * A garbage collection or compilation can cost a provider an occasional allocation, which
+   * rounding and taking the best of a few rounds absorbs.
+   */
+  static long bytesPerGet(Provider<?> provider) {
+    for (int i = 0; i < WARMUP; i++) {
+      sink = provider.get();
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = allocatedBytes();
+      for (int i = 0; i < ITERATIONS; i++) {
+        sink = provider.get();
+      }
+      best = Math.min(best, (allocatedBytes() - before) / ITERATIONS);
+    }
+    return best;
+  }
+
+  public static boolean canMeasure() {
+    try {
+      return allocatedBytes() >= 0;
+    } catch (LinkageError e) {
+      return false;
+    } catch (ClassCastException e) {
+      return false;
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  public static long allocatedBytes() {
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
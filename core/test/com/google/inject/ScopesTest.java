@@ -48,6 +48,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -413,6 +414,29 @@ public class ScopesTest extends TestCase {
     assertNull(injector.getInstance(String.class));
   }
 
+  public void testSingletonScopeWorksOutsideOfAnInjector() throws Exception {
+    final Iterator<String> values = Arrays.asList("A", "B").iterator();
+    final Provider<String> scoped = Scopes.SINGLETON.scope(Key.get(String.class),
+        new Provider<String>() {
+          public String get() {
+            return values.next();
+          }
+        });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> fromAnotherThread = executor.submit(new Callable<String>() {
+        public String call() {
+          return scoped.get();
+        }
+      });
+      assertEquals("A", fromAnotherThread.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals("A", scoped.get());
+  }
+
   class RememberProviderScope implements Scope {
     final Map<Key<?>, Provider<?>> providers = Maps.newHashMap();
     public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.reflect.FastClass;
+
+import org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Tests for {@link BytecodeCache}.
+ */
+public class BytecodeCacheTest extends TestCase {
+
+  public static class Service {
+    public String name() {
+      return "service";
+    }
+  }
+
+  static class Upper implements MethodInterceptor {
+    public Object intercept(Object object, Method method, Object[] arguments, MethodProxy proxy)
+        throws Throwable {
+      return ((String) proxy.invokeSuper(object, arguments)).toUpperCase();
+    }
+  }
+
+  private File directory;
+
+  @Override protected void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @Override protected void tearDown() {
+    for (File child : directory.listFiles()) {
+      child.delete();
+    }
+    directory.delete();
+  }
+
+  public void testClassesAreDefinedFromSavedBytecodeInLaterRuns() throws Exception {
+    BytecodeCache cache = new BytecodeCache(directory, "version");
+    Class<?> generated = run(cache);
+    // also counts the FastClasses of method proxies, which cglib generates with the same strategy
+    int generatedCount = cache.misses.get();
+    assertTrue(generatedCount >= 2);
+    assertEquals(0, cache.hits.get());
+    assertEquals(generatedCount, directory.listFiles().length);
+
+    BytecodeCache later = new BytecodeCache(directory, "version");
+    Class<?> read = run(later);
+    assertNotSame(generated, read);
+    assertEquals(generated.getName(), read.getName());
+    assertEquals(generatedCount, later.hits.get());
+    assertEquals(0, later.misses.get());
+  }
+
+  /** Enhances a new copy of {@link Service} and calls it through its FastClass. */
+  private static Class<?> run(BytecodeCache cache) throws Exception {
+    Class<?> enhanced = enhance(cache, isolatedService(), "inputs");
+    assertEquals("SERVICE", fastClass(cache, enhanced).invoke(
+        "name", new Class<?>[0], newInstance(enhanced), new Object[0]));
+    assertEquals("SERVICE", enhanced.getMethod("name").invoke(newInstance(enhanced)));
+    return enhanced;
+  }
+
+  public void testClassesAreGeneratedAgainForOtherVersionsAndInputs() throws Exception {
+    enhance(new BytecodeCache(directory, "version"), isolatedService(), "inputs");
+
+    BytecodeCache otherVersion = new BytecodeCache(directory, "other");
+    enhance(otherVersion, isolatedService(), "inputs");
+    assertEquals(1, otherVersion.misses.get());
+
+    BytecodeCache otherInputs = new BytecodeCache(directory, "version");
+    enhance(otherInputs, isolatedService(), "other");
+    assertEquals(1, otherInputs.misses.get());
+    assertEquals(3, directory.listFiles().length);
+  }
+
+  public void testClassesWithoutClassFilesAreNotHashed() {
+    BytecodeCache cache = new BytecodeCache(directory, "version");
+    assertNotNull(cache.hierarchyHash(Service.class));
+    assertFalse(cache.hierarchyHash(Service.class).equals(cache.hierarchyHash(Upper.class)));
+
+    Enhancer enhancer = new Enhancer();
+    enhancer.setSuperclass(Service.class);
+    enhancer.setUseFactory(false);
+    enhancer.setCallbackType(MethodInterceptor.class);
+    assertNull(cache.hierarchyHash(enhancer.createClass()));
+  }
+
+  public void testClassesDefinedAlongAreSavedWithTheirClass() throws Exception {
+    Class<?> service = isolatedService();
+    ClassLoader classLoader = service.getClassLoader();
+    enhance(new BytecodeCache(directory, "version"), service, "inputs",
+        new DefiningCompanion(classLoader));
+    Class.forName(DefiningCompanion.NAME, false, classLoader);
+
+    Class<?> laterService = isolatedService();
+    ClassLoader later = laterService.getClassLoader();
+    try {
+      Class.forName(DefiningCompanion.NAME, false, later);
+      fail();
+    } catch (ClassNotFoundException expected) {
+    }
+    BytecodeCache cache = new BytecodeCache(directory, "version");
+    enhance(cache, laterService, "inputs");
+    assertEquals(1, cache.hits.get());
+    assertEquals(later, Class.forName(DefiningCompanion.NAME, false, later).getClassLoader());
+  }
+
+  private static Class<?> enhance(BytecodeCache cache, Class<?> type, String inputs) {
+    return enhance(cache, type, inputs, DefaultGeneratorStrategy.INSTANCE);
+  }
+
+  private static Class<?> enhance(
+      BytecodeCache cache, Class<?> type, String inputs, GeneratorStrategy strategy) {
+    Enhancer enhancer = new Enhancer();
+    enhancer.setSuperclass(type);
+    enhancer.setUseFactory(false);
+    enhancer.setCallbackType(MethodInterceptor.class);
+    enhancer.setNamingPolicy(BytecodeGen.ENHANCER_NAMING_POLICY);
+    enhancer.setStrategy(cache.caching(strategy, type, inputs));
+    return enhancer.createClass();
+  }
+
+  private static FastClass fastClass(BytecodeCache cache, Class<?> type) {
+    FastClass.Generator generator = new FastClass.Generator();
+    generator.setType(type);
+    generator.setNamingPolicy(BytecodeGen.FASTCLASS_NAMING_POLICY);
+    generator.setStrategy(cache.caching(DefaultGeneratorStrategy.INSTANCE, type, "FastClass"));
+    return generator.create();
+  }
+
+  private static Object newInstance(Class<?> enhanced) throws Exception {
+    Enhancer.registerCallbacks(enhanced, new Callback[] {new Upper()});
+    try {
+      return enhanced.newInstance();
+    } finally {
+      Enhancer.registerCallbacks(enhanced, null);
+    }
+  }
+
+  /** Returns {@link Service} loaded by a new class loader, as a later run would load it. */
+  private static Class<?> isolatedService() throws ClassNotFoundException {
+    return new IsolatingClassLoader(Service.class).loadClass(Service.class.getName());
+  }
+
+  /** Defines a class of its own, as the class loader of a new run would. */
+  static class IsolatingClassLoader extends ClassLoader {
+    private final Class<?> isolated;
+
+    IsolatingClassLoader(Class<?> isolated) {
+      super(isolated.getClassLoader());
+      this.isolated = isolated;
+    }
+
+    @Override protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.equals(isolated.getName())) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded != null) {
+        return loaded;
+      }
+      InputStream in = getResourceAsStream(name.replace('.', '/') + ".class");
+      try {
+        byte[] bytecode = ByteStreams.toByteArray(in);
+        return defineClass(name, bytecode, 0, bytecode.length);
+      } catch (IOException e) {
+        throw new ClassNotFoundException(name, e);
+      } finally {
+        try {
+          in.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /** Defines a class the class it generates would use. */
+  static class DefiningCompanion extends DefaultGeneratorStrategy
+      implements BytecodeCache.DefiningStrategy {
+    static final String NAME = Service.class.getName() + "$$Companion";
+
+    private final ClassLoader classLoader;
+    private byte[] bytecode;
+
+    DefiningCompanion(ClassLoader classLoader) {
+      this.classLoader = classLoader;
+    }
+
+    @Override public byte[] generate(ClassGenerator generator) throws Exception {
+      ClassWriter cw = new ClassWriter(0);
+      cw.visit(V1_5, ACC_PUBLIC | ACC_SUPER, NAME.replace('.', '/'), null, "java/lang/Object",
+          null);
+      cw.visitEnd();
+      bytecode = cw.toByteArray();
+      ReflectUtils.defineClass(NAME, bytecode, classLoader);
+      return super.generate(generator);
+    }
+
+    public Map<String, byte[]> definedClasses() {
+      return ImmutableMap.of(NAME, bytecode);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.internal.ChildInjectorCreationTest.TenantModule;
+
+/**
+ * Creates many child injectors from instances of the same module class, and prints the time
+ * taken to create each child, with 100000 children by default.
+ */
+public class ChildInjectorCreationBenchmark {
+
+  public static void main(String[] args) {
+    int children = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    Injector parent = Guice.createInjector();
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < children; i++) {
+        parent.createChildInjector(new TenantModule("tenant"));
+      }
+      System.err.printf("%.1f us per child injector%n",
+          (System.nanoTime() - start) / 1000.0 / children);
+    }
+  }
+}
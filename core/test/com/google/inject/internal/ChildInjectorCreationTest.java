@@ -0,0 +1,91 @@
+package com.google.inject.internal;
+
+import com.google.common.testing.GcFinalization;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+
+/**
+ * Creates child injectors from instances of the same module class.
+ */
+public class ChildInjectorCreationTest extends TestCase {
+
+  static class Tenant {
+    final String name;
+
+    @Inject Tenant(String name) {
+      this.name = name;
+    }
+  }
+
+  static class Service {
+    @Inject Tenant tenant;
+  }
+
+  static class TenantModule extends AbstractModule {
+    private final String name;
+
+    TenantModule(String name) {
+      this.name = name;
+    }
+
+    @Override protected void configure() {
+      bind(Tenant.class);
+      bind(Service.class);
+    }
+
+    @Provides String provideName() {
+      return name;
+    }
+  }
+
+  public void testChildrenOfTheSameModuleClassAreConfiguredByTheirOwnModule() {
+    Injector parent = Guice.createInjector();
+    for (int i = 0; i < 3; i++) {
+      Injector child = parent.createChildInjector(new TenantModule("tenant" + i));
+      assertEquals("tenant" + i, child.getInstance(Service.class).tenant.name);
+      assertNotSame(child.getInstance(Tenant.class), child.getInstance(Tenant.class));
+    }
+  }
+
+  public void testModulesWithoutProviderMethodsStillConfigureChildren() {
+    Injector parent = Guice.createInjector();
+    Module module = new AbstractModule() {
+      @Override protected void configure() {
+        bind(String.class).toInstance("tenant");
+        bind(Tenant.class);
+      }
+    };
+    assertEquals("tenant", parent.createChildInjector(module).getInstance(Tenant.class).name);
+    assertEquals("tenant", parent.createChildInjector(module).getInstance(Tenant.class).name);
+  }
+
+  public void testModuleClassesAreUnloadedWithTheirInjectors() throws Exception {
+    GcFinalization.awaitClear(createInjectorInNewClassLoader());
+  }
+
+  /**
+   * Creates an injector from a module class loaded by a new class loader, and returns a weak
+   * reference to that class loader once the injector is gone.
+   */
+  private static WeakReference<ClassLoader> createInjectorInNewClassLoader() throws Exception {
+    ClassLoader classLoader =
+        new ReloadingClassLoader(TenantModule.class, Tenant.class, Service.class);
+    Constructor<?> constructor =
+        classLoader.loadClass(TenantModule.class.getName()).getDeclaredConstructor(String.class);
+    constructor.setAccessible(true);
+    Injector injector = Guice.createInjector((Module) constructor.newInstance("tenant"));
+    Class<?> service = classLoader.loadClass(Service.class.getName());
+    assertNotSame(Service.class, service);
+    assertSame(service, injector.getInstance(service).getClass());
+    return new WeakReference<ClassLoader>(classLoader);
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.internal.ContextFootprintTest.newChildInjectors;
+import static com.google.inject.internal.ContextFootprintTest.startThreads;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.internal.ContextFootprintTest.PerChild;
+import com.google.inject.internal.ContextFootprintTest.Shared;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Prints the heap retained by each thread once it has used every injector, with 10000 threads and
+ * 200 child injectors by default. Pass {@code independent} as third argument to use injectors that
+ * don't share a parent instead.
+ */
+public class ContextFootprintBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int children = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    boolean independent = args.length > 2 && args[2].equals("independent");
+    List<Injector> injectors = independent ? newInjectors(children) : newChildInjectors(children);
+    // warm up, so that just-in-time bindings and the calling thread's context already exist
+    startThreads(1, injectors, new CountDownLatch(0));
+
+    CountDownLatch release = new CountDownLatch(1);
+    long before = usedHeap();
+    startThreads(threads, injectors, release);
+    long after = usedHeap();
+    release.countDown();
+    System.err.printf("%d threads x %d %s injectors: %d bytes retained per thread%n",
+        threads, children, independent ? "independent" : "child", (after - before) / threads);
+  }
+
+  /** Returns {@code count} injectors that don't share a parent. */
+  static List<Injector> newInjectors(int count) {
+    List<Injector> injectors = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      injectors.add(Guice.createInjector(new AbstractModule() {
+        @Override protected void configure() {
+          bind(Shared.class);
+          bind(PerChild.class);
+        }
+      }));
+    }
+    return injectors;
+  }
+
+  static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,90 @@
+package com.google.inject.internal;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses many child injectors from many threads, all of them sharing the per-thread carrier of
+ * {@link InternalContext}.
+ */
+public class ContextFootprintTest extends TestCase {
+
+  static final long TIMEOUT_SECONDS = 60;
+
+  @Singleton
+  static class Shared {}
+
+  static class PerChild {}
+
+  public void testChildInjectorsAreUsedFromManyThreads() throws Exception {
+    List<Injector> injectors = newChildInjectors(20);
+    List<Thread> threads = startThreads(50, injectors, new CountDownLatch(0));
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      assertFalse(thread.isAlive());
+    }
+
+    Shared shared = injectors.get(0).getInstance(Shared.class);
+    for (Injector injector : injectors) {
+      assertSame(shared, injector.getInstance(Shared.class));
+    }
+  }
+
+  /** Returns {@code count} child injectors of a single parent, with their own bindings. */
+  static List<Injector> newChildInjectors(int count) {
+    Injector parent = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(Shared.class);
+      }
+    });
+    List<Injector> children = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      children.add(parent.createChildInjector(new AbstractModule() {
+        @Override protected void configure() {
+          bind(PerChild.class);
+        }
+      }));
+    }
+    return children;
+  }
+
+  /**
+   * Starts {@code count} threads, each getting instances from all {@code injectors} and then
+   * waiting for {@code release}. Returns once every thread has used every injector.
+   */
+  static List<Thread> startThreads(int count, final List<Injector> injectors,
+      final CountDownLatch release) throws InterruptedException {
+    final CountDownLatch used = new CountDownLatch(count);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      Thread thread = new Thread(null, new Runnable() {
+        public void run() {
+          for (Injector injector : injectors) {
+            injector.getInstance(Shared.class);
+            injector.getInstance(PerChild.class);
+          }
+          used.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, "footprint-" + i, 64 * 1024);
+      thread.setDaemon(true);
+      thread.start();
+      threads.add(thread);
+    }
+    assertTrue(used.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    return threads;
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.name.Names.named;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Stage;
+import com.google.inject.internal.CreationStateReleaseTest.Part;
+import com.google.inject.internal.CreationStateReleaseTest.Service;
+
+import java.util.List;
+
+/**
+ * Prints the heap retained by an injector with many injected instances, created from 1000 modules
+ * by default.
+ */
+public class CreationStateReleaseBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int parts = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    List<Module> modules = Lists.newArrayList();
+    for (int i = 0; i < parts; i++) {
+      modules.add(new Part(i));
+    }
+    long before = usedHeap();
+    Injector injector = Guice.createInjector(Stage.PRODUCTION, modules);
+    modules = null;
+    long retained = usedHeap() - before;
+    Provider<?> provider = injector.getProvider(Key.get(Service.class, named("0.0")));
+    System.err.printf("injector of %d modules: %d bytes retained, %s%n",
+        parts, retained, provider.get() != null ? "working" : "broken");
+  }
+
+  static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,100 @@
+package com.google.inject.internal;
+
+import static com.google.inject.Asserts.awaitClear;
+import static com.google.inject.name.Names.named;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.PrivateModule;
+import com.google.inject.Stage;
+import com.google.inject.spi.ElementSource;
+import com.google.inject.spi.InjectionPoint;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Checks that what is only needed to create an injector can be collected once it is created.
+ */
+public class CreationStateReleaseTest extends TestCase {
+
+  public void testModulesAreCollectableOnceInjectorIsCreated() {
+    for (Stage stage : Stage.values()) {
+      Module module = new Part(0);
+      WeakReference<Module> moduleRef = new WeakReference<Module>(module);
+      Injector injector = Guice.createInjector(stage, module);
+      module = null;
+      awaitClear(moduleRef);
+      // the sources of bindings are still available to the SPI
+      ElementSource source = (ElementSource) injector.getBinding(
+          Key.get(Service.class, named("0.0"))).getSource();
+      assertEquals(Part.class.getName(), source.getModuleClassNames().get(0));
+    }
+  }
+
+  public void testInjectionStateIsReleasedOnceInstancesAreInjected() throws ErrorsException {
+    InjectorImpl injector = (InjectorImpl) Guice.createInjector();
+    Initializer initializer = new Initializer();
+    Service service = new Service();
+    Object source = new Object();
+    WeakReference<Object> sourceRef = new WeakReference<Object>(source);
+    Initializable<Service> initializable = initializer.requestInjection(injector, service, null,
+        source, InjectionPoint.forInstanceMethodsAndFields(Service.class));
+    source = null;
+
+    Errors errors = new Errors();
+    initializer.validateOustandingInjections(errors);
+    initializer.injectAll(errors);
+    errors.throwIfNewErrors(0);
+    initializer.releaseInjections();
+
+    // the reference is kept, like constant bindings keep it, but not what injected its instance
+    awaitClear(sourceRef);
+    assertSame(service, initializable.get(errors));
+    assertSame(injector, service.injector);
+  }
+
+  public void testInjectedInstancesAreStillProvided() {
+    Injector injector = Guice.createInjector(new Part(0));
+    Service service = injector.getInstance(Key.get(Service.class, named("0.0")));
+    assertSame(injector, service.injector);
+    assertSame(service, injector.getInstance(Key.get(Service.class, named("0.0"))));
+    Service child = injector.createChildInjector().getInstance(
+        Key.get(Service.class, named("0.0")));
+    assertSame(service, child);
+  }
+
+  static class Service {
+    @Inject Injector injector;
+  }
+
+  static class Part extends AbstractModule {
+    private final int index;
+    private final byte[] payload = new byte[1000];
+
+    Part(int index) {
+      this.index = index;
+    }
+
+    @Override protected void configure() {
+      for (int i = 0; i < 10; i++) {
+        Key<Service> key = Key.get(Service.class, named(index + "." + i));
+        bind(key).toInstance(new Service());
+        getProvider(key);
+      }
+      requestInjection(new Service());
+      final Key<String> exposed = Key.get(String.class, named(index + ".exposed"));
+      install(new PrivateModule() {
+        @Override protected void configure() {
+          bind(exposed).toInstance("exposed" + payload.length);
+          expose(exposed);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.matcher.Matchers.any;
+import static com.google.inject.matcher.Matchers.returns;
+import static com.google.inject.matcher.Matchers.only;
+
+import com.google.common.testing.GcFinalization;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.spi.EnhancedClassStats;
+
+import junit.framework.TestCase;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Tests for {@link EnhancedClassCache}.
+ */
+public class EnhancedClassCacheTest extends TestCase {
+
+  public static class Service {
+    public String name() {
+      return "service";
+    }
+
+    public int size() {
+      return 1;
+    }
+  }
+
+  public static class Shared extends Service {}
+  public static class Tenant extends Service {}
+  public static class Dropped extends Service {}
+
+  static class Upper implements MethodInterceptor {
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      Object result = invocation.proceed();
+      return result instanceof String ? ((String) result).toUpperCase() : result;
+    }
+  }
+
+  static AbstractModule intercepting(final Class<?> returnType, final Class<?>... bound) {
+    return new AbstractModule() {
+      @Override protected void configure() {
+        bindInterceptor(any(), returns(only(returnType)), new Upper());
+        for (Class<?> type : bound) {
+          bind(type);
+        }
+      }
+    };
+  }
+
+  public void testInjectorsShareEnhancedClasses() {
+    EnhancedClassStats before = EnhancedClassStats.get();
+    Shared shared = Guice.createInjector(intercepting(String.class)).getInstance(Shared.class);
+    assertEquals("SERVICE", shared.name());
+    EnhancedClassStats generated = EnhancedClassStats.get();
+    assertEquals(before.getMissCount() + 1, generated.getMissCount());
+    assertTrue(generated.getGeneratedBytes() > before.getGeneratedBytes());
+
+    Injector other = Guice.createInjector(intercepting(String.class));
+    assertSame(shared.getClass(), other.getInstance(Shared.class).getClass());
+    EnhancedClassStats reused = EnhancedClassStats.get();
+    assertEquals(generated.getMissCount(), reused.getMissCount());
+    assertEquals(generated.getHitCount() + 1, reused.getHitCount());
+    assertTrue(reused.getSavedBytes() > generated.getSavedBytes());
+    assertEquals(generated.getGeneratedBytes(), reused.getGeneratedBytes());
+  }
+
+  public void testChildInjectorsShareEnhancedClasses() {
+    Injector parent = Guice.createInjector();
+    long misses = EnhancedClassStats.get().getMissCount();
+    Class<?> tenant = null;
+    for (int i = 0; i < 5; i++) {
+      Tenant instance = parent.createChildInjector(intercepting(String.class, Tenant.class))
+          .getInstance(Tenant.class);
+      assertEquals("SERVICE", instance.name());
+      if (tenant == null) {
+        tenant = instance.getClass();
+      }
+      assertSame(tenant, instance.getClass());
+    }
+    assertEquals(misses + 1, EnhancedClassStats.get().getMissCount());
+  }
+
+  public void testDifferentMethodsGetDifferentClasses() {
+    Injector injector = Guice.createInjector(intercepting(String.class));
+    Injector other = Guice.createInjector(intercepting(int.class));
+    Class<?> service = injector.getInstance(Service.class).getClass();
+    assertNotSame(service, other.getInstance(Service.class).getClass());
+    assertSame(service, injector.getInstance(Service.class).getClass());
+  }
+
+  public void testUnusedClassesAreDropped() {
+    WeakReference<Injector> injector =
+        new WeakReference<Injector>(Guice.createInjector(intercepting(String.class)));
+    injector.get().getInstance(Dropped.class);
+    GcFinalization.awaitClear(injector);
+    GcFinalization.awaitFullGc();
+
+    long misses = EnhancedClassStats.get().getMissCount();
+    Guice.createInjector(intercepting(String.class)).getInstance(Dropped.class);
+    assertEquals(misses + 1, EnhancedClassStats.get().getMissCount());
+  }
+}
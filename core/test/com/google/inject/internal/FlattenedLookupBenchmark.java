@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.internal.FlattenedLookupTest.MISSING;
+import static com.google.inject.internal.FlattenedLookupTest.newLevels;
+import static com.google.inject.name.Names.named;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.inject.Key;
+
+import java.util.List;
+
+/**
+ * Compares the time taken by lookups of {@link InheritingState}, level by level and flattened, and
+ * prints the memory retained by the flattened index, for 8 levels with 50 bindings each by
+ * default.
+ */
+public class FlattenedLookupBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int bindings = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    List<Key<?>> keys = Lists.newArrayList();
+    for (int level = 0; level < depth; level++) {
+      for (int b = 0; b < bindings; b++) {
+        keys.add(Key.get(String.class, named(level + "." + b)));
+      }
+      keys.add(MISSING);
+    }
+
+    InheritingState deepest = Iterables.getLast(newLevels(depth, bindings));
+    for (int round = 0; round < 3; round++) {
+      printLookupTime("level by level", deepest, keys);
+    }
+    long before = usedHeap();
+    deepest.flatten();
+    long retained = usedHeap() - before;
+    for (int round = 0; round < 3; round++) {
+      printLookupTime("flattened", deepest, keys);
+    }
+    System.err.printf("flattened index of %d levels x %d bindings: %d bytes%n",
+        depth, bindings, retained);
+  }
+
+  private static void printLookupTime(String label, State state, List<Key<?>> keys) {
+    int iterations = 20000;
+    int found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      for (Key<?> key : keys) {
+        if (state.getExplicitBinding(key) != null) {
+          found++;
+        }
+      }
+    }
+    System.err.printf("%s: %.1f ns per lookup, %d found%n",
+        label, (System.nanoTime() - start) / (double) iterations / keys.size(), found);
+  }
+
+  static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
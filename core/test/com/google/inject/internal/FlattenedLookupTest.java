@@ -0,0 +1,134 @@
+package com.google.inject.internal;
+
+import static com.google.inject.name.Names.named;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.ScopeBinding;
+import com.google.inject.spi.TypeConverter;
+import com.google.inject.spi.TypeConverterBinding;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests flattened lookups of {@link InheritingState}.
+ */
+public class FlattenedLookupTest extends TestCase {
+
+  private static final Key<String> SHARED = Key.get(String.class, named("shared"));
+  static final Key<String> MISSING = Key.get(String.class, named("missing"));
+
+  static final TypeConverter CONVERTER = new TypeConverter() {
+    public Object convert(String value, TypeLiteral<?> toType) {
+      return value;
+    }
+  };
+
+  public void testFlattenedLookupsMatchLevelByLevelLookups() {
+    List<InheritingState> levels = newLevels(7, 3);
+    InheritingState deepest = levels.get(levels.size() - 1);
+    List<Object> walked = lookUpAll(deepest, 7, 3);
+    deepest.flatten();
+    assertEquals(walked, lookUpAll(deepest, 7, 3));
+
+    // the nearest level wins
+    assertSame(deepest.getExplicitBindingsThisLevel().get(SHARED),
+        deepest.getExplicitBinding(SHARED));
+    assertNull(deepest.getExplicitBinding(MISSING));
+    assertSame(levels.get(0).getScopeBinding(Singleton.class),
+        deepest.getScopeBinding(Singleton.class));
+  }
+
+  public void testAmbiguousConvertersAreStillReported() {
+    List<InheritingState> levels = newLevels(3, 1);
+    InheritingState deepest = levels.get(levels.size() - 1);
+    Errors errors = new Errors();
+    TypeConverterBinding walked =
+        deepest.getConverter("value", TypeLiteral.get(Integer.class), errors, "source");
+    assertEquals(2, errors.size());
+
+    deepest.flatten();
+    Errors flattenedErrors = new Errors();
+    assertSame(walked,
+        deepest.getConverter("value", TypeLiteral.get(Integer.class), flattenedErrors, "source"));
+    assertEquals(errors.getMessages().toString(), flattenedErrors.getMessages().toString());
+  }
+
+  public void testChangingTheStateDropsTheFlattenedLookups() {
+    List<InheritingState> levels = newLevels(3, 1);
+    InheritingState deepest = levels.get(levels.size() - 1);
+    deepest.flatten();
+    assertNull(deepest.getExplicitBinding(MISSING));
+
+    BindingImpl<?> missing = Iterables.getOnlyElement(newLevels(1, 0)).getExplicitBinding(SHARED);
+    deepest.putBinding(MISSING, missing);
+    assertSame(missing, deepest.getExplicitBinding(MISSING));
+  }
+
+  /**
+   * Returns the states of {@code depth} nested levels, the root first. Each level binds
+   * {@code bindings} keys of its own, plus the shared key, and has a converter of integers. The
+   * root also binds the singleton scope.
+   */
+  static List<InheritingState> newLevels(int depth, final int bindings) {
+    List<InheritingState> levels = Lists.newArrayList();
+    State parent = State.NONE;
+    for (int i = 0; i < depth; i++) {
+      final int level = i;
+      Injector injector = Guice.createInjector(new AbstractModule() {
+        @Override protected void configure() {
+          bind(SHARED).toInstance("level" + level);
+          for (int b = 0; b < bindings; b++) {
+            bind(Key.get(String.class, named(level + "." + b))).toInstance("value");
+          }
+        }
+      });
+      InheritingState state = new InheritingState(parent);
+      for (Binding<?> binding : injector.getBindings().values()) {
+        if (binding.getKey().getTypeLiteral().getRawType() == String.class) {
+          state.putBinding(binding.getKey(), (BindingImpl<?>) binding);
+        }
+      }
+      state.addConverter(new TypeConverterBinding("level" + level,
+          Matchers.only(TypeLiteral.get(Integer.class)), CONVERTER));
+      if (level == 0) {
+        for (Element element : Elements.getElements(new AbstractModule() {
+          @Override protected void configure() {
+            bindScope(Singleton.class, Scopes.SINGLETON);
+          }
+        })) {
+          state.putScopeBinding(Singleton.class, (ScopeBinding) element);
+        }
+      }
+      levels.add(state);
+      parent = state;
+    }
+    return levels;
+  }
+
+  private static List<Object> lookUpAll(State state, int depth, int bindings) {
+    List<Object> results = Lists.newArrayList();
+    for (int level = 0; level < depth; level++) {
+      for (int b = 0; b < bindings; b++) {
+        results.add(state.getExplicitBinding(Key.get(String.class, named(level + "." + b))));
+      }
+    }
+    results.add(state.getExplicitBinding(SHARED));
+    results.add(state.getExplicitBinding(MISSING));
+    results.add(state.getScopeBinding(Singleton.class));
+    return results;
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.inject.internal;
+
+import com.google.common.collect.Iterables;
+import com.google.common.testing.GcFinalization;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.ConstructorBinding;
+import com.google.inject.spi.InjectionPoint;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests {@link InjectionPointCache}.
+ */
+public class InjectionPointCacheTest extends TestCase {
+
+  static class Foo<T> {
+    @Inject T t;
+    @Inject Foo(List<T> list) {}
+    @Inject void set(String s) {}
+  }
+
+  static class Bar {
+    @Inject String s;
+    @Inject Bar(String s) {}
+  }
+
+  static class Invalid {
+    @Inject String valid;
+    @Inject <T> void typeParameters(T t) {}
+  }
+
+  static class NoConstructor {
+    NoConstructor(String s) {}
+  }
+
+  public void testInjectionPointsAreShared() {
+    InjectorImpl injector = (InjectorImpl) Guice.createInjector();
+    TypeLiteral<Foo<String>> type = new TypeLiteral<Foo<String>>() {};
+    Set<InjectionPoint> members = InjectionPointCache.forInstanceMethodsAndFields(type, injector);
+    assertEquals(InjectionPoint.forInstanceMethodsAndFields(type), members);
+    assertSame(members, InjectionPointCache.forInstanceMethodsAndFields(type));
+
+    InjectionPoint constructor = InjectionPointCache.forConstructorOf(type, injector);
+    assertEquals(InjectionPoint.forConstructorOf(type), constructor);
+    assertSame(constructor, InjectionPointCache.forConstructorOf(type));
+    assertEquals(1, injector.sharedInjectionPoints.size());
+  }
+
+  public void testTypeArgumentsAreResolvedSeparately() {
+    TypeLiteral<Foo<String>> strings = new TypeLiteral<Foo<String>>() {};
+    TypeLiteral<Foo<Integer>> integers = new TypeLiteral<Foo<Integer>>() {};
+    assertEquals(InjectionPoint.forConstructorOf(integers),
+        InjectionPointCache.forConstructorOf(integers));
+    assertFalse(InjectionPointCache.forConstructorOf(strings)
+        .equals(InjectionPointCache.forConstructorOf(integers)));
+  }
+
+  public void testErrorsAreThrownForEachLookup() {
+    ConfigurationException first = null;
+    try {
+      InjectionPointCache.forInstanceMethodsAndFields(Invalid.class);
+      fail();
+    } catch (ConfigurationException expected) {
+      first = expected;
+    }
+    try {
+      InjectionPointCache.forInstanceMethodsAndFields(Invalid.class);
+      fail();
+    } catch (ConfigurationException expected) {
+      assertNotSame(first, expected);
+      assertEquals(first.getErrorMessages(), expected.getErrorMessages());
+      assertEquals(first.<Set<InjectionPoint>>getPartialValue(),
+          expected.<Set<InjectionPoint>>getPartialValue());
+      assertEquals(1, expected.<Set<InjectionPoint>>getPartialValue().size());
+    }
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        InjectionPointCache.forConstructorOf(TypeLiteral.get(NoConstructor.class));
+        fail();
+      } catch (ConfigurationException expected) {
+        assertEquals(1, expected.getErrorMessages().size());
+      }
+    }
+  }
+
+  public void testInjectorsShareInjectionPoints() {
+    Injector parent = Guice.createInjector();
+    Injector child = parent.createChildInjector();
+    Injector other = Guice.createInjector();
+    ConstructorBinding<?> binding = (ConstructorBinding<?>) child.getBinding(Bar.class);
+    ConstructorBinding<?> otherBinding = (ConstructorBinding<?>) other.getBinding(Bar.class);
+    assertSame(binding.getConstructor(), otherBinding.getConstructor());
+    assertSame(Iterables.getOnlyElement(binding.getInjectableMembers()),
+        Iterables.getOnlyElement(otherBinding.getInjectableMembers()));
+  }
+
+  static class Reloaded {
+    @Inject String field;
+    @Inject Reloaded(String constructed) {}
+    @Inject void set(String method) {}
+  }
+
+  public void testClassesAreUnloadedWithTheirInjectors() throws Exception {
+    GcFinalization.awaitClear(lookUpInNewClassLoader());
+  }
+
+  /**
+   * Looks up the injection points and method invokers of a class loaded by a new class loader, and
+   * returns a weak reference to that class loader once no injector uses them any more.
+   */
+  private static WeakReference<ClassLoader> lookUpInNewClassLoader() throws Exception {
+    ClassLoader classLoader = new ReloadingClassLoader(Reloaded.class);
+    TypeLiteral<?> reloaded = TypeLiteral.get(classLoader.loadClass(Reloaded.class.getName()));
+    InjectorImpl injector = (InjectorImpl) Guice.createInjector();
+    assertNotNull(InjectionPointCache.forConstructorOf(reloaded, injector));
+    Errors errors = new Errors();
+    for (InjectionPoint injectionPoint
+        : InjectionPointCache.forInstanceMethodsAndFields(reloaded, injector)) {
+      if (injectionPoint.getMember() instanceof Method) {
+        new SingleMethodInjector(injector, injectionPoint, errors);
+      }
+    }
+    assertFalse(errors.hasErrors());
+    return new WeakReference<ClassLoader>(classLoader);
+  }
+}
@@ -0,0 +1,214 @@
+package com.google.inject.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.GcFinalization;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.Scopes;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.DependencyAndSource;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link InternalContext}.
+ */
+public class InternalContextTest extends TestCase {
+
+  public void testConstructionContextsAreFoundBySlot() {
+    InternalContext context = InternalContext.enter(null, new AtomicInteger(), true);
+    try {
+      ConstructionContext.Slot[] slots = new ConstructionContext.Slot[40];
+      ConstructionContext<?>[] constructionContexts = new ConstructionContext<?>[slots.length];
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = new ConstructionContext.Slot();
+        constructionContexts[i] = context.getConstructionContext(slots[i]);
+      }
+      for (int i = 0; i < slots.length; i++) {
+        assertSame(constructionContexts[i], context.getConstructionContext(slots[i]));
+      }
+    } finally {
+      context.exit();
+    }
+  }
+
+  public void testSlotsIndexedByAnotherInjectorTreeDoNotCollide() {
+    AtomicInteger otherTree = new AtomicInteger();
+    ConstructionContext.Slot foreign = new ConstructionContext.Slot();
+    assertEquals(0, foreign.index(otherTree));
+
+    InternalContext context = InternalContext.enter(null, new AtomicInteger(), true);
+    try {
+      ConstructionContext.Slot local = new ConstructionContext.Slot();
+      ConstructionContext<?> localContext = context.getConstructionContext(local);
+      ConstructionContext<?> foreignContext = context.getConstructionContext(foreign);
+
+      assertNotSame(localContext, foreignContext);
+      assertSame(localContext, context.getConstructionContext(local));
+      assertSame(foreignContext, context.getConstructionContext(foreign));
+    } finally {
+      context.exit();
+    }
+  }
+
+  public void testSlotsIndexedPastTheLimitAreNotKept() {
+    AtomicInteger tree = new AtomicInteger(InternalContext.MAX_INDEXED_SLOTS - 1);
+    InternalContext context = InternalContext.enter(null, tree, true);
+    try {
+      ConstructionContext.Slot last = new ConstructionContext.Slot();
+      ConstructionContext<?> lastContext = context.getConstructionContext(last);
+      ConstructionContext.Slot past = new ConstructionContext.Slot();
+      ConstructionContext<?> pastContext = context.getConstructionContext(past);
+
+      assertEquals(InternalContext.MAX_INDEXED_SLOTS, past.index(tree));
+      assertNotSame(lastContext, pastContext);
+      assertSame(lastContext, context.getConstructionContext(last));
+      assertSame(pastContext, context.getConstructionContext(past));
+
+      // slots of short-lived child injectors, say, don't outlive their factories
+      GcFinalization.awaitClear(useSlotOnce(context));
+    } finally {
+      context.exit();
+    }
+  }
+
+  private static WeakReference<ConstructionContext.Slot> useSlotOnce(InternalContext context) {
+    ConstructionContext.Slot slot = new ConstructionContext.Slot();
+    context.getConstructionContext(slot);
+    return new WeakReference<ConstructionContext.Slot>(slot);
+  }
+
+  public void testInjectorTreesHaveTheirOwnContexts() {
+    AtomicInteger tree = new AtomicInteger();
+    AtomicInteger otherTree = new AtomicInteger();
+
+    InternalContext context = InternalContext.enter(null, tree, true);
+    try {
+      assertSame(context, InternalContext.current(tree));
+      assertNull(InternalContext.current(otherTree));
+
+      InternalContext otherContext = InternalContext.enter(null, otherTree, true);
+      try {
+        assertNotSame(context, otherContext);
+        assertSame(otherContext, InternalContext.current(otherTree));
+
+        InternalContext nested = InternalContext.enter(null, tree, true);
+        assertSame(context, nested);
+        nested.exit();
+      } finally {
+        otherContext.exit();
+      }
+      assertNull(InternalContext.current(otherTree));
+      assertSame(context, InternalContext.current(tree));
+    } finally {
+      context.exit();
+    }
+    assertNull(InternalContext.current(tree));
+  }
+
+  public void testIdleContextIsReusedByItsTree() {
+    AtomicInteger tree = new AtomicInteger();
+    InternalContext context = InternalContext.enter(null, tree, true);
+    context.exit();
+
+    // using many other trees in between moves the tree around in the carrier
+    for (int i = 0; i < 10; i++) {
+      InternalContext.enter(null, new AtomicInteger(), true).exit();
+    }
+
+    InternalContext reentered = InternalContext.enter(null, tree, true);
+    reentered.exit();
+    assertSame(context, reentered);
+  }
+
+  public void testDependencyChainIsOnlyRecordedWhenAsked() {
+    Dependency<String> dependency = Dependency.get(Key.get(String.class));
+    AtomicInteger tree = new AtomicInteger();
+
+    InternalContext context = InternalContext.enter(null, tree, false);
+    try {
+      Dependency<?> previous = context.pushDependency(dependency, "source");
+      context.pushState(Key.get(Integer.class), "source");
+      assertSame(dependency, context.getDependency());
+      assertEquals(ImmutableList.of(), context.getDependencyChain());
+      context.popState();
+      context.popStateAndSetDependency(previous);
+    } finally {
+      context.exit();
+    }
+
+    context = InternalContext.enter(null, tree, true);
+    try {
+      Dependency<?> previous = context.pushDependency(dependency, "source");
+      assertEquals(ImmutableList.of(new DependencyAndSource(dependency, "source")).toString(),
+          context.getDependencyChain().toString());
+      context.popStateAndSetDependency(previous);
+      assertEquals(ImmutableList.of(), context.getDependencyChain());
+    } finally {
+      context.exit();
+    }
+  }
+
+  public void testDependencyChainIsRecordedFromTheCallAskingForIt() {
+    Dependency<String> outer = Dependency.get(Key.get(String.class));
+    Dependency<Integer> inner = Dependency.get(Key.get(Integer.class));
+    AtomicInteger tree = new AtomicInteger();
+
+    InternalContext context = InternalContext.enter(null, tree, false);
+    try {
+      Dependency<?> previous = context.pushDependency(outer, "outer");
+      InternalContext.enter(null, tree, true);
+      try {
+        Dependency<?> previousInner = context.pushDependency(inner, "inner");
+        assertEquals(ImmutableList.of(new DependencyAndSource(inner, "inner")).toString(),
+            context.getDependencyChain().toString());
+        context.popStateAndSetDependency(previousInner);
+      } finally {
+        context.exit();
+      }
+      assertEquals(ImmutableList.of(), context.getDependencyChain());
+      context.pushState(Key.get(Long.class), "outer");
+      assertEquals(ImmutableList.of(), context.getDependencyChain());
+      context.popState();
+      context.popStateAndSetDependency(previous);
+    } finally {
+      context.exit();
+    }
+  }
+
+  public void testSingletonScopeFindsTheInjectorOfProvidersScopedLater() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(Scoped.class).in(new LazySingletonScope());
+      }
+    });
+    assertNull(InternalContext.getScopingInjector());
+
+    assertSame(injector.getInstance(Scoped.class), injector.getInstance(Scoped.class));
+  }
+
+  static class Scoped {}
+
+  /** Scopes with {@link Scopes#SINGLETON} when first provisioned, after the injector is built. */
+  static class LazySingletonScope implements Scope {
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+      return new Provider<T>() {
+        Provider<T> scoped;
+
+        public synchronized T get() {
+          if (scoped == null) {
+            scoped = Scopes.SINGLETON.scope(key, unscoped);
+          }
+          return scoped.get();
+        }
+      };
+    }
+  }
+}
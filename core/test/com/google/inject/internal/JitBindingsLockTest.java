@@ -0,0 +1,123 @@
+package com.google.inject.internal;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests that existing just-in-time bindings are looked up without taking the injector lock,
+ * unless just-in-time bindings are being changed.
+ */
+public class JitBindingsLockTest extends TestCase {
+
+  static final long TIMEOUT_SECONDS = 5;
+
+  static class Foo {}
+
+  private ExecutorService executor;
+
+  @Override protected void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @Override protected void tearDown() {
+    executor.shutdownNow();
+  }
+
+  public void testExistingJitBindingIsFoundWhileLockIsHeld() throws Exception {
+    final InjectorImpl injector = (InjectorImpl) Guice.createInjector();
+    injector.getInstance(Foo.class);
+
+    CountDownLatch release = holdLock(injector, false);
+    try {
+      Future<Foo> instance = executor.submit(new Callable<Foo>() {
+        public Foo call() {
+          return injector.getInstance(Foo.class);
+        }
+      });
+      assertNotNull(instance.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      assertNotNull(injector.getExistingBinding(Key.get(Foo.class)));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  public void testExistingJitBindingInParentIsFoundWhileLockIsHeld() throws Exception {
+    Injector parent = Guice.createInjector();
+    parent.getInstance(Foo.class);
+    final InjectorImpl child = (InjectorImpl) parent.createChildInjector(new AbstractModule() {
+      @Override protected void configure() {}
+    });
+
+    CountDownLatch release = holdLock(child, false);
+    try {
+      Future<Foo> instance = executor.submit(new Callable<Foo>() {
+        public Foo call() {
+          return child.getInstance(Foo.class);
+        }
+      });
+      assertNotNull(instance.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  public void testLookupWaitsWhileJitBindingsAreChanging() throws Exception {
+    final InjectorImpl injector = (InjectorImpl) Guice.createInjector();
+    injector.getInstance(Foo.class);
+
+    CountDownLatch release = holdLock(injector, true);
+    Future<Foo> instance = executor.submit(new Callable<Foo>() {
+      public Foo call() {
+        return injector.getInstance(Foo.class);
+      }
+    });
+    try {
+      instance.get(100, TimeUnit.MILLISECONDS);
+      fail("Expected lookup to wait for the changes to complete");
+    } catch (TimeoutException expected) {
+    } finally {
+      release.countDown();
+    }
+    assertNotNull(instance.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Holds the injector's lock in another thread until the returned latch is released, optionally
+   * announcing changes to just-in-time bindings.
+   */
+  private CountDownLatch holdLock(final InjectorImpl injector, final boolean changing)
+      throws InterruptedException {
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.submit(new Callable<Void>() {
+      public Void call() throws InterruptedException {
+        synchronized (injector.state.lock()) {
+          boolean started = changing && injector.startJitBindingChanges();
+          try {
+            locked.countDown();
+            release.await();
+          } finally {
+            if (started) {
+              injector.finishJitBindingChanges();
+            }
+          }
+        }
+        return null;
+      }
+    });
+    assertTrue(locked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    return release;
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.internal.InternalFlags.MemberAccessOption;
+import com.google.inject.spi.InjectionPoint;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Method;
+
+/**
+ * Tests injecting with the {@link MemberAccessOption#REFLECTION reflection} backend of the
+ * {@code guice_member_access} flag, whatever the flag is set to.
+ */
+public class MemberAccessTest extends TestCase {
+
+  public static class Target {
+    final String constructed;
+    final StackTraceElement[] constructedBy;
+    @Inject String field;
+    String method;
+    StackTraceElement[] injectedBy;
+
+    @Inject public Target(String constructed) {
+      this.constructed = constructed;
+      this.constructedBy = new Throwable().getStackTrace();
+    }
+
+    @Inject public void inject(String method) {
+      this.method = method;
+      this.injectedBy = new Throwable().getStackTrace();
+    }
+  }
+
+  public void testReflectionInjectsConstructorsMethodsAndFields() throws Exception {
+    InjectorImpl injector = (InjectorImpl) Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(String.class).toInstance("injected");
+      }
+    });
+
+    ConstructionProxy<Target> proxy = new DefaultConstructionProxyFactory<Target>(
+        InjectionPoint.forConstructorOf(Target.class), MemberAccessOption.REFLECTION).create();
+    Target target = proxy.newInstance("constructed");
+    assertEquals("constructed", target.constructed);
+    assertCalledByReflection(target.constructedBy);
+
+    Errors errors = new Errors();
+    InternalContext context = injector.enterContext();
+    try {
+      for (InjectionPoint injectionPoint
+          : InjectionPoint.forInstanceMethodsAndFields(Target.class)) {
+        SingleMemberInjector memberInjector = injectionPoint.getMember() instanceof Method
+            ? new SingleMethodInjector(
+                injector, injectionPoint, errors, MemberAccessOption.REFLECTION)
+            : new SingleFieldInjector(injector, injectionPoint, errors);
+        memberInjector.inject(errors, context, target);
+      }
+    } finally {
+      context.exit();
+    }
+    assertFalse(errors.hasErrors());
+    assertEquals("injected", target.field);
+    assertEquals("injected", target.method);
+    assertCalledByReflection(target.injectedBy);
+  }
+
+  /** Asserts that the member on top of {@code stackTrace} was called through reflection. */
+  private static void assertCalledByReflection(StackTraceElement[] stackTrace) {
+    String caller = stackTrace[1].getClassName();
+    assertTrue(caller, caller.startsWith("sun.reflect.")
+        || caller.startsWith("jdk.internal.reflect.")
+        || caller.startsWith("java.lang.reflect."));
+  }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.Asserts.assertContains;
+import static com.google.inject.Asserts.getDeclaringSourcePart;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.MembersInjector;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.DependencyAndSource;
+import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.ProvisionListener;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests the steps {@link MembersInjectorImpl}, {@link SingleFieldInjector} and
+ * {@link SingleParameterInjector} resolve once rather than for each injection.
+ */
+public class MembersInjectorImplTest extends TestCase {
+
+  static class Plain {}
+
+  static class WithField {
+    @Inject Dependency dependency;
+  }
+
+  static class WithMethod {
+    Dependency dependency;
+
+    @Inject void inject(Dependency dependency) {
+      this.dependency = dependency;
+    }
+  }
+
+  static class Listened {
+    boolean notified;
+  }
+
+  static class Registered {
+    boolean injected;
+  }
+
+  static class Dependency {}
+
+  public void testInjectsNothingOnlyWithoutMembersAndListeners() throws ErrorsException {
+    InjectorImpl injector = (InjectorImpl) Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bindListener(Matchers.only(TypeLiteral.get(Listened.class)), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            encounter.register(new InjectionListener<I>() {
+              public void afterInjection(I injectee) {
+                ((Listened) injectee).notified = true;
+              }
+            });
+          }
+        });
+        bindListener(Matchers.only(TypeLiteral.get(Registered.class)), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            encounter.register(new MembersInjector<I>() {
+              public void injectMembers(I instance) {
+                ((Registered) instance).injected = true;
+              }
+            });
+          }
+        });
+      }
+    });
+
+    assertTrue(membersInjector(injector, Plain.class).injectsNothing());
+    assertFalse(membersInjector(injector, WithField.class).injectsNothing());
+    assertFalse(membersInjector(injector, WithMethod.class).injectsNothing());
+    assertFalse(membersInjector(injector, Listened.class).injectsNothing());
+    assertFalse(membersInjector(injector, Registered.class).injectsNothing());
+
+    assertNotNull(injector.getInstance(WithField.class).dependency);
+    assertNotNull(injector.getInstance(WithMethod.class).dependency);
+    assertTrue(injector.getInstance(Listened.class).notified);
+    assertTrue(injector.getInstance(Registered.class).injected);
+  }
+
+  private static <T> MembersInjectorImpl<T> membersInjector(InjectorImpl injector, Class<T> type)
+      throws ErrorsException {
+    return injector.membersInjectorStore.get(TypeLiteral.get(type), new Errors());
+  }
+
+  static class FieldTarget {
+    @Inject Dependency dependency;
+  }
+
+  static class ParameterTarget {
+    @Inject ParameterTarget(Dependency dependency) {}
+  }
+
+  public void testDependencyChainHasTheSourcesOfTheBindings() {
+    final List<Object> sources = Lists.newArrayList();
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(Dependency.class);
+        bindListener(Matchers.any(), new ProvisionListener() {
+          public <T> void onProvision(ProvisionInvocation<T> provision) {
+            if (provision.getBinding().getKey().getTypeLiteral().getRawType() == Dependency.class) {
+              List<DependencyAndSource> chain = provision.getDependencyChain();
+              sources.add(chain.get(chain.size() - 1).getBindingSource());
+            }
+          }
+        });
+      }
+    });
+
+    injector.getInstance(FieldTarget.class);
+    injector.getInstance(ParameterTarget.class);
+    assertEquals(2, sources.size());
+    for (Object source : sources) {
+      assertContains(source.toString(), getDeclaringSourcePart(getClass()));
+    }
+  }
+
+  static class FailingProvider implements Provider<Dependency> {
+    public Dependency get() {
+      throw new UnsupportedOperationException("boom");
+    }
+  }
+
+  public void testErrorsHaveTheSourcesOfTheInjectionPoints() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(Dependency.class).toProvider(FailingProvider.class);
+      }
+    });
+
+    try {
+      injector.getInstance(FieldTarget.class);
+      fail();
+    } catch (ProvisionException expected) {
+      assertContains(expected.getMessage(),
+          "1) Error in custom provider, java.lang.UnsupportedOperationException: boom",
+          "while locating " + Dependency.class.getName(),
+          "for field at " + FieldTarget.class.getName() + ".dependency(");
+    }
+    try {
+      injector.getInstance(ParameterTarget.class);
+      fail();
+    } catch (ProvisionException expected) {
+      assertContains(expected.getMessage(),
+          "1) Error in custom provider, java.lang.UnsupportedOperationException: boom",
+          "while locating " + Dependency.class.getName(),
+          "for the 1st parameter of " + ParameterTarget.class.getName() + ".<init>(");
+    }
+  }
+}
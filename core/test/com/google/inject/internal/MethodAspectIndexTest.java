@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.matcher.Matchers.annotatedWith;
+import static com.google.inject.matcher.Matchers.any;
+import static com.google.inject.matcher.Matchers.only;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import junit.framework.TestCase;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.annotation.Retention;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Tests for {@link MethodAspectIndex}.
+ */
+public class MethodAspectIndexTest extends TestCase {
+
+  @Retention(RUNTIME) @interface Logged {}
+  @Retention(RUNTIME) @interface Timed {}
+
+  static class Service {
+    @Logged public void logged() {}
+    @Logged @Timed public void both() {}
+    @Named("fast") public void named() {}
+    public void plain() {}
+  }
+
+  static class Plain {
+    public void plain() {}
+  }
+
+  public void testAnnotationRequiringMatchers() {
+    assertEquals(Logged.class, aspect(annotatedWith(Logged.class)).requiredAnnotationType());
+    assertEquals(Named.class, aspect(annotatedWith(Names.named("fast"))).requiredAnnotationType());
+    assertEquals(Logged.class,
+        aspect(annotatedWith(Logged.class).and(new Counting())).requiredAnnotationType());
+    assertEquals(Logged.class,
+        aspect(new Counting().and(annotatedWith(Logged.class))).requiredAnnotationType());
+    assertNull(aspect(annotatedWith(Logged.class).or(new Counting())).requiredAnnotationType());
+    assertNull(aspect(any()).requiredAnnotationType());
+  }
+
+  public void testOnlyAnnotatedMethodsAreMatched() throws Exception {
+    Counting counting = new Counting();
+    MethodAspectIndex.ClassAspects aspects = new MethodAspectIndex(ImmutableList.of(
+        aspect(annotatedWith(Timed.class).and(counting)))).forClass(Service.class);
+    assertEquals(1, aspects.matching(method("both")).size());
+    assertEquals(0, aspects.matching(method("logged")).size());
+    assertEquals(0, aspects.matching(method("plain")).size());
+    assertEquals(ImmutableList.of("both"), counting.matched);
+  }
+
+  public void testMatchesAreInBindingOrder() throws Exception {
+    MethodAspect timed = aspect(annotatedWith(Timed.class));
+    MethodAspect all = aspect(any());
+    MethodAspect logged = aspect(annotatedWith(Logged.class));
+    MethodAspect fast = aspect(annotatedWith(Names.named("fast")));
+    MethodAspect slow = aspect(annotatedWith(Names.named("slow")));
+    MethodAspectIndex.ClassAspects aspects = new MethodAspectIndex(
+        ImmutableList.of(timed, all, logged, fast, slow)).forClass(Service.class);
+    assertEquals(ImmutableList.of(timed, all, logged), aspects.matching(method("both")));
+    assertEquals(ImmutableList.of(all, logged), aspects.matching(method("logged")));
+    assertEquals(ImmutableList.of(all, fast), aspects.matching(method("named")));
+    assertEquals(ImmutableList.of(all), aspects.matching(method("plain")));
+  }
+
+  public void testClassesWithoutRequiredAnnotationsAreSkipped() {
+    MethodAspectIndex index = new MethodAspectIndex(ImmutableList.of(
+        aspect(annotatedWith(Logged.class)), aspect(annotatedWith(Timed.class))));
+    assertNotNull(index.forClass(Service.class));
+    assertNull(index.forClass(Plain.class));
+
+    index = new MethodAspectIndex(ImmutableList.of(
+        aspect(annotatedWith(Logged.class)), aspect(new Counting())));
+    assertNotNull(index.forClass(Plain.class));
+  }
+
+  public void testClassMatchersStillApply() {
+    MethodAspectIndex index = new MethodAspectIndex(ImmutableList.of(
+        new MethodAspect(only(Plain.class), any(), new NoOp())));
+    assertNull(index.forClass(Service.class));
+    assertNotNull(index.forClass(Plain.class));
+    assertNull(new MethodAspectIndex(ImmutableList.<MethodAspect>of()).forClass(Plain.class));
+  }
+
+  private static MethodAspect aspect(Matcher<? super Method> methodMatcher) {
+    return new MethodAspect(any(), methodMatcher, new NoOp());
+  }
+
+  private static Method method(String name) throws NoSuchMethodException {
+    return Service.class.getMethod(name);
+  }
+
+  static class Counting extends AbstractMatcher<AnnotatedElement> {
+    final List<String> matched = Lists.newArrayList();
+
+    @Override public boolean matches(AnnotatedElement method) {
+      matched.add(((Method) method).getName());
+      return true;
+    }
+  }
+
+  static class NoOp implements MethodInterceptor {
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      return invocation.proceed();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.google.inject.internal;
+
+import static com.google.inject.Asserts.assertContains;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.Stage;
+import com.google.inject.spi.Message;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests eager singletons loaded by {@link ParallelSingletonLoader}.
+ */
+public class ParallelSingletonLoaderTest extends TestCase {
+
+  static final long TIMEOUT_SECONDS = 5;
+  static final int THREADS = 4;
+
+  /** Counted down by each {@link Independent} singleton, which then waits for the others. */
+  static CountDownLatch allStarted;
+
+  static class Independent {
+    final boolean concurrent;
+
+    Independent() throws InterruptedException {
+      allStarted.countDown();
+      concurrent = allStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+  static class Independent1 extends Independent {
+    Independent1() throws InterruptedException {}
+  }
+  static class Independent2 extends Independent {
+    Independent2() throws InterruptedException {}
+  }
+  static class Independent3 extends Independent {
+    Independent3() throws InterruptedException {}
+  }
+
+  public void testIndependentSingletonsAreCreatedConcurrently() {
+    allStarted = new CountDownLatch(3);
+    Injector injector = createInjector(THREADS, new AbstractModule() {
+      @Override protected void configure() {
+        bind(Independent1.class).asEagerSingleton();
+        bind(Independent2.class).asEagerSingleton();
+        bind(Independent3.class).asEagerSingleton();
+      }
+    });
+
+    assertTrue(injector.getInstance(Independent1.class).concurrent);
+    assertTrue(injector.getInstance(Independent2.class).concurrent);
+    assertTrue(injector.getInstance(Independent3.class).concurrent);
+  }
+
+  @Singleton
+  static class Leaf {
+    static volatile boolean created;
+
+    Leaf() {
+      created = true;
+    }
+  }
+
+  /** Not scoped, only links {@link Root} to {@link Leaf}. */
+  static class Middle {
+    static volatile boolean leafCreatedBefore;
+
+    Middle() {
+      leafCreatedBefore = Leaf.created;
+    }
+
+    @Inject void setLeaf(Leaf leaf) {}
+  }
+
+  @Singleton
+  static class Root {
+    @Inject Root(Middle middle) {}
+  }
+
+  public void testDependenciesAreLoadedBeforeDependents() {
+    Leaf.created = false;
+    Middle.leafCreatedBefore = false;
+    createInjector(THREADS, new AbstractModule() {
+      @Override protected void configure() {
+        bind(Root.class);
+        bind(Leaf.class);
+      }
+    });
+
+    assertTrue(Middle.leafCreatedBefore);
+  }
+
+  interface A {}
+  interface B {}
+
+  @Singleton
+  static class AImpl implements A {
+    @Inject AImpl(B b) {}
+  }
+
+  @Singleton
+  static class BImpl implements B {
+    @Inject BImpl(A a) {}
+  }
+
+  public void testSingletonsInCycleAreLoaded() {
+    Injector injector = createInjector(THREADS, new AbstractModule() {
+      @Override protected void configure() {
+        bind(A.class).to(AImpl.class);
+        bind(B.class).to(BImpl.class);
+      }
+    });
+
+    assertSame(injector.getInstance(A.class), injector.getInstance(A.class));
+    assertSame(injector.getInstance(B.class), injector.getInstance(B.class));
+  }
+
+  static class Bomb1 {
+    Bomb1() {
+      throw new UnsupportedOperationException("bomb1");
+    }
+  }
+
+  static class Bomb2 {
+    Bomb2() {
+      throw new UnsupportedOperationException("bomb2");
+    }
+  }
+
+  public void testErrorsAreAggregatedInBindingOrder() {
+    Module module = new AbstractModule() {
+      @Override protected void configure() {
+        bind(Bomb1.class).asEagerSingleton();
+        bind(Independent1.class).in(Singleton.class);
+        bind(Bomb2.class).asEagerSingleton();
+      }
+    };
+
+    allStarted = new CountDownLatch(0);
+    List<Message> sequential = createInjectorAndGetErrors(1, module);
+    List<Message> parallel = createInjectorAndGetErrors(THREADS, module);
+
+    assertEquals(2, parallel.size());
+    assertContains(parallel.get(0).getMessage(), "bomb1");
+    assertContains(parallel.get(1).getMessage(), "bomb2");
+    assertEquals(sequential.size(), parallel.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertEquals(sequential.get(i).getMessage(), parallel.get(i).getMessage());
+      assertEquals(sequential.get(i).getSources().toString(),
+          parallel.get(i).getSources().toString());
+    }
+  }
+
+  private static List<Message> createInjectorAndGetErrors(int threads, Module module) {
+    try {
+      createInjector(threads, module);
+      fail();
+      return null;
+    } catch (CreationException expected) {
+      return ImmutableList.copyOf(expected.getErrorMessages());
+    }
+  }
+
+  private static Injector createInjector(int threads, Module module) {
+    return new InternalInjectorCreator()
+        .stage(Stage.PRODUCTION)
+        .eagerSingletonThreads(threads)
+        .addModules(ImmutableList.of(module))
+        .build();
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.net.URLClassLoader;
+import java.util.Set;
+
+/**
+ * Loads its own copies of some classes, and the other classes from the class loader of the tests.
+ * The copies can be unloaded along with it. Classes reloaded this way shouldn't be public, since the
+ * FastClasses of public classes are generated in a bridge class loader, which would resolve classes
+ * of this package in Guice's class loader.
+ */
+class ReloadingClassLoader extends URLClassLoader {
+  private final Set<String> reloaded;
+
+  ReloadingClassLoader(Class<?>... reloaded) {
+    super(((URLClassLoader) ReloadingClassLoader.class.getClassLoader()).getURLs(),
+        ReloadingClassLoader.class.getClassLoader());
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (Class<?> type : reloaded) {
+      names.add(type.getName());
+    }
+    this.reloaded = names.build();
+  }
+
+  @Override protected synchronized Class<?> loadClass(String name, boolean resolve)
+      throws ClassNotFoundException {
+    if (!reloaded.contains(name)) {
+      return super.loadClass(name, resolve);
+    }
+    Class<?> loaded = findLoadedClass(name);
+    return loaded != null ? loaded : findClass(name);
+  }
+}
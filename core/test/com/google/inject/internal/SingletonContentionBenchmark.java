@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.internal.SingletonContentionTest.createSingletons;
+import static com.google.inject.internal.SingletonContentionTest.newInjector;
+import static com.google.inject.internal.SingletonContentionTest.newProviders;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints how long it takes to create thousands of singletons, all of them going through
+ * {@link CycleDetectingLock}s, from an increasing number of threads.
+ */
+public class SingletonContentionBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+    for (int round = 0; round < 3; round++) {
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        long shared = createSingletons(threads, newInjector(newProviders()), false);
+        long distinct = createSingletons(threads, newInjector(newProviders()), true);
+        System.err.printf("%2d threads: shared %6dus, distinct %6dus%n", threads,
+            TimeUnit.NANOSECONDS.toMicros(shared), TimeUnit.NANOSECONDS.toMicros(distinct));
+      }
+    }
+  }
+}
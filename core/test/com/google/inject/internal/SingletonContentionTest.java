@@ -0,0 +1,152 @@
+package com.google.inject.internal;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.name.Names;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates thousands of singletons from several threads at once, all of them going through
+ * {@link CycleDetectingLock}s.
+ */
+public class SingletonContentionTest extends TestCase {
+
+  static final int SINGLETONS = 2000;
+  static final long TIMEOUT_SECONDS = 60;
+
+  /**
+   * Counts the instances it creates, takes a lock of the next singleton while doing so. Can block
+   * like a constructor doing I/O would.
+   */
+  static class CountingProvider implements Provider<Object> {
+    final AtomicInteger created = new AtomicInteger();
+    Provider<Object> next;
+    long blockMillis;
+
+    public Object get() {
+      created.incrementAndGet();
+      if (blockMillis > 0) {
+        try {
+          Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return next == null ? new Object() : next.get();
+    }
+  }
+
+  public void testSharedSingletonsAreCreatedOnce() throws Exception {
+    final List<CountingProvider> providers = newProviders();
+    final Injector injector = newInjector(providers);
+
+    createSingletons(8, injector, false);
+
+    for (CountingProvider provider : providers) {
+      assertEquals(1, provider.created.get());
+    }
+  }
+
+  public void testDistinctSingletonsAreCreatedOnce() throws Exception {
+    final List<CountingProvider> providers = newProviders();
+    final Injector injector = newInjector(providers);
+
+    createSingletons(8, injector, true);
+
+    for (CountingProvider provider : providers) {
+      assertEquals(1, provider.created.get());
+    }
+  }
+
+  public void testManyThreadsWaitOnBlockingSingletons() throws Exception {
+    final List<CountingProvider> providers = newProviders();
+    for (int i = 0; i < providers.size(); i += 20) {
+      providers.get(i).blockMillis = 1;
+    }
+    final Injector injector = newInjector(providers);
+
+    createSingletons(200, injector, false);
+
+    for (CountingProvider provider : providers) {
+      assertEquals(1, provider.created.get());
+    }
+  }
+
+  static List<CountingProvider> newProviders() {
+    List<CountingProvider> providers = Lists.newArrayList();
+    for (int i = 0; i < SINGLETONS; i++) {
+      providers.add(new CountingProvider());
+    }
+    return providers;
+  }
+
+  /** Binds each provider as a singleton, every other one depending on the following one. */
+  static Injector newInjector(final List<CountingProvider> providers) {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        for (int i = 0; i < providers.size(); i++) {
+          bind(key(i)).toProvider(providers.get(i)).in(Scopes.SINGLETON);
+        }
+      }
+    });
+    for (int i = 0; i < providers.size(); i += 2) {
+      providers.get(i).next = injector.getProvider(key(i + 1));
+    }
+    return injector;
+  }
+
+  static Key<Object> key(int i) {
+    return Key.get(Object.class, Names.named(String.valueOf(i)));
+  }
+
+  /**
+   * Gets all singletons from {@code threads} threads started at once, and returns the elapsed
+   * nanoseconds. When {@code distinct}, each thread creates its own share of the singletons,
+   * otherwise all threads race for all of them.
+   */
+  static long createSingletons(final int threads, final Injector injector, final boolean distinct)
+      throws Exception {
+    final CyclicBarrier start = new CyclicBarrier(threads + 1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            start.await();
+            for (int i = 0; i < SINGLETONS; i++) {
+              if (!distinct || i % threads == thread) {
+                assertNotNull(injector.getInstance(key(i)));
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      start.await();
+      long startNanos = System.nanoTime();
+      for (Future<Void> future : futures) {
+        future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+      return System.nanoTime() - startNanos;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
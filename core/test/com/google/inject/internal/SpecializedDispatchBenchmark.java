@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.internal.SpecializedDispatchTest.ITERATIONS;
+import static com.google.inject.internal.SpecializedDispatchTest.PASS_THROUGH;
+import static com.google.inject.internal.SpecializedDispatchTest.ROUNDS;
+import static com.google.inject.internal.SpecializedDispatchTest.WARMUP;
+import static com.google.inject.internal.SpecializedDispatchTest.bytesPerCall;
+import static com.google.inject.internal.SpecializedDispatchTest.intercepted;
+
+import com.google.inject.internal.InternalFlags.InterceptorDispatchOption;
+import com.google.inject.internal.SpecializedDispatchTest.Primitives;
+
+/**
+ * Compares calls to methods taking primitives with boxed and specialized dispatch, printing the
+ * time taken and the memory allocated by each call.
+ */
+public class SpecializedDispatchBenchmark {
+
+  static volatile long sink;
+
+  public static void main(String[] args) throws Exception {
+    for (int round = 0; round < 3; round++) {
+      for (InterceptorDispatchOption dispatch : InterceptorDispatchOption.values()) {
+        Primitives primitives = intercepted(dispatch, PASS_THROUGH);
+        System.err.printf("%s: %.1f ns/call, %d bytes/call%n",
+            dispatch, nanosPerCall(primitives), bytesPerCall(primitives));
+      }
+    }
+  }
+
+  static double nanosPerCall(Primitives primitives) {
+    for (int i = 0; i < WARMUP; i++) {
+      sink = primitives.all(true, (byte) 1, (short) i, 'a', i, i, 1f, 1d);
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS * 10; i++) {
+        sink = primitives.all(true, (byte) 1, (short) i, 'a', i, i, 1f, 1d);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / (ITERATIONS * 10);
+  }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import static com.google.inject.matcher.Matchers.any;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.ProvisionAllocationTest;
+import com.google.inject.internal.InternalFlags.InterceptorDispatchOption;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+import com.google.inject.spi.InjectionPoint;
+
+import junit.framework.TestCase;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link SpecializedDispatch}.
+ */
+public class SpecializedDispatchTest extends TestCase {
+
+  static final int WARMUP = 20000;
+  static final int ITERATIONS = 100000;
+  static final int ROUNDS = 3;
+
+  static volatile long sink;
+
+  /** Matches the methods declared by the test classes, leaving those of Object alone. */
+  static final Matcher<Method> DECLARED = new AbstractMatcher<Method>() {
+    @Override public boolean matches(Method method) {
+      return method.getDeclaringClass() != Object.class;
+    }
+  };
+
+  static final MethodInterceptor PASS_THROUGH = new MethodInterceptor() {
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      return invocation.proceed();
+    }
+  };
+
+  static class Primitives {
+    int calls;
+
+    public long all(boolean z, byte b, short s, char c, int i, long l, float f, double d) {
+      calls++;
+      return (z ? 1 : 0) + b + s + c + i + l + (long) f + (long) d;
+    }
+
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public String describe(int count, String noun) {
+      return count + " " + noun;
+    }
+
+    public void record(int value) {
+      calls += value;
+    }
+
+    public boolean not(boolean value) {
+      return !value;
+    }
+
+    public char next(char value) {
+      return (char) (value + 1);
+    }
+
+    public double half(double value) {
+      return value / 2;
+    }
+
+    public int[] pair(int a, int b) {
+      return new int[] {a, b};
+    }
+
+    int hidden(int value) {
+      return value * 2;
+    }
+
+    public int fail(int value) {
+      throw new IllegalStateException("failed with " + value);
+    }
+  }
+
+  public void testPassThrough() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED, PASS_THROUGH);
+    assertEquals(1 + 2 + 3 + 'a' + 5 + 6L + 7 + 8,
+        primitives.all(true, (byte) 2, (short) 3, 'a', 5, 6L, 7.5f, 8.5d));
+    assertEquals(1, primitives.calls);
+    assertEquals(5, primitives.add(2, 3));
+    assertEquals("2 apples", primitives.describe(2, "apples"));
+    primitives.record(4);
+    assertEquals(5, primitives.calls);
+    assertFalse(primitives.not(true));
+    assertEquals('b', primitives.next('a'));
+    assertEquals(1.5d, primitives.half(3d));
+    assertTrue(Arrays.equals(new int[] {1, 2}, primitives.pair(1, 2)));
+    assertEquals(6, primitives.hidden(3));
+  }
+
+  public void testInvocationClassesAreGenerated() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED, new Recording());
+    primitives.add(1, 2);
+    assertTrue(Recording.last.getClass().getName(),
+        Recording.last.getClass().getName().contains("$$InvocationByGuice$$"));
+    assertSame(primitives, Recording.last.getThis());
+    assertEquals("add", Recording.last.getMethod().getName());
+
+    primitives = intercepted(InterceptorDispatchOption.BOXED, new Recording());
+    primitives.add(1, 2);
+    assertFalse(Recording.last.getClass().getName().contains("$$InvocationByGuice$$"));
+  }
+
+  public void testArgumentsAreBoxedWhenAskedFor() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED, new Recording());
+    primitives.all(false, (byte) 1, (short) 2, 'c', 3, 4L, 5f, 6d);
+    Object[] arguments = Recording.last.getArguments();
+    assertEquals(ImmutableList.<Object>of(false, (byte) 1, (short) 2, 'c', 3, 4L, 5f, 6d),
+        Arrays.asList(arguments));
+    assertSame(arguments, Recording.last.getArguments());
+  }
+
+  public void testChangedArgumentsArePassed() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED,
+        new MethodInterceptor() {
+          public Object invoke(MethodInvocation invocation) throws Throwable {
+            invocation.getArguments()[0] = 10;
+            return invocation.proceed();
+          }
+        });
+    assertEquals(12, primitives.add(1, 2));
+    assertEquals("10 pears", primitives.describe(1, "pears"));
+  }
+
+  public void testNullIsReturnedAsZero() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED,
+        new MethodInterceptor() {
+          public Object invoke(MethodInvocation invocation) {
+            return null;
+          }
+        });
+    assertEquals(0, primitives.add(1, 2));
+    assertEquals(0L, primitives.all(true, (byte) 1, (short) 1, 'a', 1, 1L, 1f, 1d));
+    assertFalse(primitives.not(false));
+    assertEquals(0d, primitives.half(1d));
+    assertNull(primitives.describe(1, "plum"));
+  }
+
+  public void testOtherNumbersAreConverted() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED,
+        new MethodInterceptor() {
+          public Object invoke(MethodInvocation invocation) {
+            return 7L;
+          }
+        });
+    assertEquals(7, primitives.add(1, 2));
+    assertEquals(7d, primitives.half(1d));
+  }
+
+  public void testInterceptorMayProceedMoreThanOnce() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED,
+        new MethodInterceptor() {
+          public Object invoke(MethodInvocation invocation) throws Throwable {
+            invocation.proceed();
+            return invocation.proceed();
+          }
+        });
+    primitives.record(3);
+    assertEquals(6, primitives.calls);
+  }
+
+  public void testExceptionsArePruned() throws Exception {
+    Primitives primitives = intercepted(InterceptorDispatchOption.SPECIALIZED, PASS_THROUGH);
+    try {
+      primitives.fail(3);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertEquals("failed with 3", expected.getMessage());
+      for (StackTraceElement element : expected.getStackTrace()) {
+        assertFalse(element.toString(), element.getClassName().contains("$EnhancerByGuice$"));
+        assertFalse(element.toString(),
+            element.getClassName().equals(InterceptedMethodInvocation.class.getName()));
+      }
+    }
+  }
+
+  public void testSpecializedClassIsNotSharedWithBoxed() throws Exception {
+    Class<?> specialized =
+        intercepted(InterceptorDispatchOption.SPECIALIZED, PASS_THROUGH).getClass();
+    assertSame(specialized,
+        intercepted(InterceptorDispatchOption.SPECIALIZED, PASS_THROUGH).getClass());
+    assertNotSame(specialized,
+        intercepted(InterceptorDispatchOption.BOXED, PASS_THROUGH).getClass());
+  }
+
+  public void testSpecializedAllocatesLess() throws Exception {
+    if (!ProvisionAllocationTest.canMeasure()) {
+      return;
+    }
+    long boxed = bytesPerCall(intercepted(InterceptorDispatchOption.BOXED, PASS_THROUGH));
+    long specialized =
+        bytesPerCall(intercepted(InterceptorDispatchOption.SPECIALIZED, PASS_THROUGH));
+    assertTrue("boxed allocated " + boxed + " bytes per call, specialized " + specialized,
+        specialized < boxed);
+  }
+
+  static class Recording implements MethodInterceptor {
+    static MethodInvocation last;
+
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      last = invocation;
+      return invocation.proceed();
+    }
+  }
+
+  static Primitives intercepted(InterceptorDispatchOption dispatch, MethodInterceptor interceptor)
+      throws Exception {
+    ProxyFactory<Primitives> factory = new ProxyFactory<Primitives>(
+        InjectionPoint.forConstructorOf(Primitives.class),
+        new MethodAspectIndex(ImmutableList.of(new MethodAspect(any(), DECLARED, interceptor))),
+        dispatch);
+    return factory.create().newInstance();
+  }
+
+  static long bytesPerCall(Primitives primitives) {
+    for (int i = 0; i < WARMUP; i++) {
+      sink = primitives.all(true, (byte) 1, (short) i, 'a', i, i, 1f, 1d);
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = ProvisionAllocationTest.allocatedBytes();
+      for (int i = 0; i < ITERATIONS; i++) {
+        sink = primitives.all(true, (byte) 1, (short) i, 'a', i, i, 1f, 1d);
+      }
+      best = Math.min(best, (ProvisionAllocationTest.allocatedBytes() - before) / ITERATIONS);
+    }
+    return best;
+  }
+}
@@ -524,5 +524,9 @@ public class WeakKeySetTest extends TestCase {
     public Map<Class<? extends Annotation>, Scope> getScopes() {
       return ImmutableMap.of();
     }
+
+    public void flatten() {
+      throw new UnsupportedOperationException();
+    }
   }
 }
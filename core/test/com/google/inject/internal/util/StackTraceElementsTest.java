@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal.util;
+
+import com.google.common.testing.GcFinalization;
+import com.google.inject.internal.util.StackTraceElements.InMemoryStackTraceElement;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Tests for packing call stacks with {@link StackTraceElements}.
+ */
+public class StackTraceElementsTest extends TestCase {
+
+  public void testPackedCallStacksShareFrames() {
+    StackTraceElement[] callStack = new Throwable().getStackTrace();
+    InMemoryStackTraceElement[] packed = StackTraceElements.pack(callStack);
+    InMemoryStackTraceElement[] again = StackTraceElements.pack(new Throwable().getStackTrace());
+
+    // all but the first frame, which is on another line of this method
+    for (int i = 1; i < packed.length; i++) {
+      assertSame(packed[i], again[i]);
+    }
+    StackTraceElement[] unpacked = StackTraceElements.unpack(packed);
+    for (int i = 0; i < callStack.length; i++) {
+      assertEquals(callStack[i].getClassName(), unpacked[i].getClassName());
+      assertEquals(callStack[i].getMethodName(), unpacked[i].getMethodName());
+      assertEquals(callStack[i].getLineNumber(), unpacked[i].getLineNumber());
+    }
+  }
+
+  public void testFramesAreReleasedWithTheirCallStacks() {
+    String className = "Dropped" + System.nanoTime();
+    InMemoryStackTraceElement[] packed = StackTraceElements.pack(
+        new StackTraceElement[] {new StackTraceElement(className, "configure", "Dropped.java", 1)});
+    WeakReference<InMemoryStackTraceElement> frame =
+        new WeakReference<InMemoryStackTraceElement>(packed[0]);
+
+    packed = null;
+    GcFinalization.awaitClear(frame);
+  }
+}
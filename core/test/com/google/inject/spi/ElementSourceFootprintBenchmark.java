@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.spi;
+
+import static com.google.inject.spi.ElementSourceFootprintTest.newLargeModule;
+
+import java.util.List;
+
+/**
+ * Prints the heap retained by the sources of the elements of a large module, 100 modules of 1000
+ * bindings each by default.
+ */
+public class ElementSourceFootprintBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int modules = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int bindingsPerModule = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    long before = usedHeap();
+    List<Element> elements = Elements.getElements(newLargeModule(modules, bindingsPerModule));
+    long retained = usedHeap() - before;
+    System.err.printf("%d elements: %d bytes retained, %d bytes per element%n",
+        elements.size(), retained, retained / elements.size());
+  }
+
+  static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,94 @@
+package com.google.inject.spi;
+
+import com.google.common.collect.Sets;
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that the sources of the elements of a large module share their module sources,
+ * declaring sources and call stack frames.
+ */
+public class ElementSourceFootprintTest extends TestCase {
+
+  private static final int MODULES = 10;
+  private static final int BINDINGS_PER_MODULE = 20;
+
+  public void testSourcesOfLargeModuleAreShared() {
+    List<Element> elements = Elements.getElements(newLargeModule(MODULES, BINDINGS_PER_MODULE));
+    Set<ModuleSource> moduleSources = Sets.newIdentityHashSet();
+    Set<Object> declaringSources = Sets.newIdentityHashSet();
+    int bindings = 0;
+    for (Element element : elements) {
+      if (element instanceof Binding) {
+        ElementSource source = (ElementSource) element.getSource();
+        moduleSources.add(source.moduleSource);
+        declaringSources.add(source.getDeclaringSource());
+        bindings++;
+      }
+    }
+    assertEquals(MODULES * BINDINGS_PER_MODULE, bindings);
+    // the parts are installed alike, so they all share one module source
+    assertEquals(1, moduleSources.size());
+    // and all bindings are declared by the same line
+    assertEquals(1, declaringSources.size());
+  }
+
+  public void testCallStacksArePacked() {
+    ModuleSource root = new ModuleSource(new Part(0, 0), new StackTraceElement[0]);
+    StackTraceElement[] callStack = newCallStack(30, 0);
+    ElementSource first = new ElementSource(null, "first", root, callStack);
+    ElementSource second = new ElementSource(null, "second", root, newCallStack(30, 0));
+    // frames are interned, so equal call stacks pack alike and unpack to what was recorded
+    assertTrue(Arrays.equals(first.partialCallStack, second.partialCallStack));
+    assertEquals(Arrays.asList(callStack), Arrays.asList(second.getStackTrace()));
+  }
+
+  /** Returns frames as {@link ElementSource} keeps them, without file names. */
+  private static StackTraceElement[] newCallStack(int depth, int line) {
+    StackTraceElement[] callStack = new StackTraceElement[depth];
+    for (int i = 0; i < depth; i++) {
+      callStack[i] = new StackTraceElement(
+          "com.example.Frame" + i, "call", "Unknown Source", line + i);
+    }
+    return callStack;
+  }
+
+  /**
+   * Returns a module installing {@code modules} parts, each binding {@code bindingsPerModule}
+   * keys on the same line.
+   */
+  static Module newLargeModule(final int modules, final int bindingsPerModule) {
+    return new AbstractModule() {
+      @Override protected void configure() {
+        for (int i = 0; i < modules; i++) {
+          install(new Part(i, bindingsPerModule));
+        }
+      }
+    };
+  }
+
+  private static class Part extends AbstractModule {
+    private final int index;
+    private final int bindings;
+
+    Part(int index, int bindings) {
+      this.index = index;
+      this.bindings = bindings;
+    }
+
+    @Override protected void configure() {
+      for (int i = 0; i < bindings; i++) {
+        bind(Key.get(String.class, Names.named(index + "." + i))).toInstance("");
+      }
+    }
+  }
+}
@@ -40,6 +40,25 @@ public class ElementSourceTest extends TestCase {
     assertEquals(10 /* call stack size */, elementSource.getStackTrace().length);
   }  
 
+  public void testWithoutStackTraces() {
+    StackTraceElement[] bindingCallStack = {new StackTraceElement(
+        "com.google.inject.spi.moduleSourceTest$C", "configure", "Unknown Source", 100)};
+    ElementSource original = new ElementSource(null, "declaring", createModuleSource(),
+        bindingCallStack);
+    ElementSource copy = new ElementSource(original, "declaring", createModuleSource(),
+        bindingCallStack);
+    ElementSource withoutStackTraces = copy.withoutStackTraces();
+    assertEquals(0, withoutStackTraces.getStackTrace().length);
+    assertEquals("declaring", withoutStackTraces.getDeclaringSource());
+    assertEquals(copy.getModuleClassNames(), withoutStackTraces.getModuleClassNames());
+    ElementSource originalWithoutStackTraces = withoutStackTraces.getOriginalElementSource();
+    assertEquals(0, originalWithoutStackTraces.getStackTrace().length);
+    assertEquals(original.getModuleClassNames(), originalWithoutStackTraces.getModuleClassNames());
+    assertNull(originalWithoutStackTraces.getOriginalElementSource());
+    // the copy keeps its call stack
+    assertEquals(8, copy.getStackTrace().length);
+  }
+
   public void testGetCallStack_IntegrationTest() throws Exception {
     List<Element> elements = Elements.getElements(new A());
     for (Element element : elements) {
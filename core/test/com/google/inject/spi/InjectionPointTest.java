@@ -297,6 +297,56 @@ public class InjectionPointTest extends TestCase {
     assertPoints(points, RestrictedSuper.class, "jInject", "gInject");
   }
   
+  /**
+   * Recorded in test/META-INF/guice/injection-points along with its subclass, as the annotation
+   * processor would, except for {@code notRecorded} members so that their annotations are ignored.
+   */
+  static class Recorded {
+    @Inject Recorded(String s, int[] i) {}
+    @Inject Recorded(String notRecorded) {}
+
+    @Inject String field;
+    @Inject String notRecordedField;
+
+    @Inject void method(Map<String, Integer> map) {}
+    @Inject void method(String notRecorded) {}
+    @javax.inject.Inject void overridden() {}
+
+    @Inject static void staticMethod() {}
+  }
+
+  static class RecordedSub extends Recorded {
+    RecordedSub() {
+      super(null, null);
+    }
+
+    @Override void overridden() {}
+  }
+
+  public void testOnlyRecordedMembersAreInjected() throws Exception {
+    assertEquals(Recorded.class.getDeclaredConstructor(String.class, int[].class),
+        InjectionPoint.forConstructorOf(Recorded.class).getMember());
+
+    Set<InjectionPoint> points = InjectionPoint.forInstanceMethodsAndFields(Recorded.class);
+    assertEquals(ImmutableSet.of(
+        new InjectionPoint(TypeLiteral.get(Recorded.class),
+            Recorded.class.getDeclaredField("field"), false),
+        new InjectionPoint(TypeLiteral.get(Recorded.class),
+            Recorded.class.getDeclaredMethod("method", Map.class), false),
+        new InjectionPoint(TypeLiteral.get(Recorded.class),
+            Recorded.class.getDeclaredMethod("overridden"), false)),
+        points);
+
+    assertPoints(InjectionPoint.forStaticMethodsAndFields(Recorded.class),
+        Recorded.class, "staticMethod");
+  }
+
+  public void testRecordedClassWithoutMembersOverridesInjectableMethods() {
+    Set<InjectionPoint> points = InjectionPoint.forInstanceMethodsAndFields(RecordedSub.class);
+    assertPoints(points, Recorded.class, "field", "method");
+    assertEquals(points.toString(), 2, points.size());
+  }
+
   private void assertPoints(Iterable<InjectionPoint> points, Class<?> clazz,
       String... methodNames) {
     Set<String> methods = new HashSet<String>();
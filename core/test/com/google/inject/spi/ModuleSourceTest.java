@@ -36,6 +36,25 @@ public class ModuleSourceTest extends TestCase {
     checkSizeOne(moduleSource);
   }
 
+  public void testModulesInstalledAlikeShareTheirSource() {
+    ModuleSource parent = createWithSizeOne();
+    StackTraceElement[] partialCallStack = {BINDER_INSTALL};
+    ModuleSource child = parent.createChild(new B(), partialCallStack);
+    assertSame(child, parent.createChild(new B(), partialCallStack.clone()));
+    assertNotSame(child, parent.createChild(new C(), partialCallStack));
+    assertNotSame(child, parent.createChild(new B(), new StackTraceElement[0]));
+  }
+
+  public void testWithoutStackTraces() {
+    ModuleSource moduleSource = createWithSizeThree();
+    ModuleSource withoutStackTraces = moduleSource.withoutStackTraces();
+    assertEquals(moduleSource.getModuleClassNames(), withoutStackTraces.getModuleClassNames());
+    assertEquals(0, withoutStackTraces.getStackTraceSize());
+    assertEquals(0, withoutStackTraces.getStackTrace().length);
+    assertSame(withoutStackTraces, moduleSource.withoutStackTraces());
+    assertSame(withoutStackTraces.getParent(), moduleSource.getParent().withoutStackTraces());
+  }
+
   private void checkSizeOne(ModuleSource moduleSource) {
     assertEquals(1, moduleSource.size());
     assertEquals(1, moduleSource.getStackTraceSize());
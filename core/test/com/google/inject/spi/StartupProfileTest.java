@@ -0,0 +1,151 @@
+package com.google.inject.spi;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.Stage;
+import com.google.inject.spi.StartupProfile.Timing;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link StartupProfile}.
+ */
+public class StartupProfileTest extends TestCase {
+
+  public void testPhasesAreTimedInOrder() {
+    StartupProfile profile = StartupProfile.createInjector(new Outer());
+    List<String> names = names(profile.getPhases());
+    assertTrue(names.toString(), names.indexOf("Module execution") >= 0);
+    assertTrue(names.indexOf("Module execution") < names.indexOf("Binding initialization"));
+    assertTrue(names.indexOf("Binding initialization") < names.indexOf("Preloading singletons"));
+    long total = 0;
+    for (Timing phase : profile.getPhases()) {
+      assertTrue(phase.getWallNanos() >= 0);
+      total += phase.getWallNanos();
+    }
+    assertEquals(total, profile.getWallNanos());
+    assertEquals("outer", profile.getInjector().getInstance(String.class));
+  }
+
+  public void testModulesAreNestedInTheModuleExecutionPhase() {
+    StartupProfile profile = StartupProfile.createInjector(new Outer());
+    Timing outer = child(phase(profile, "Module execution"), Outer.class.getName());
+    assertEquals(Lists.newArrayList(Inner.class.getName()), names(outer.getChildren()));
+    assertTrue(outer.getWallNanos() >= outer.getChildren().get(0).getWallNanos());
+  }
+
+  public void testEagerSingletonsAreTimed() {
+    StartupProfile profile = StartupProfile.createInjector(Stage.PRODUCTION, new Outer());
+    List<String> singletons = names(phase(profile, "Preloading singletons").getChildren());
+    assertTrue(singletons.toString(),
+        singletons.contains("Key[type=" + Service.class.getName() + ", annotation=[none]]"));
+    assertTrue(singletons.toString(),
+        singletons.contains("Key[type=java.lang.Integer, annotation=[none]]"));
+  }
+
+  public void testJustInTimeBindingsAreCounted() {
+    assertEquals(0, StartupProfile.createInjector(new Inner()).getJustInTimeBindingCount());
+    StartupProfile profile = StartupProfile.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        getProvider(Helper.class);
+      }
+    });
+    assertEquals(1, profile.getJustInTimeBindingCount());
+  }
+
+  public void testChildInjectorsAreNotProfiled() {
+    final Injector parent = Guice.createInjector();
+    Module module = new AbstractModule() {
+      @Override protected void configure() {
+        parent.createChildInjector(new Inner());
+      }
+    };
+    StartupProfile profile = StartupProfile.createInjector(module);
+    Timing outer = child(phase(profile, "Module execution"), module.getClass().getName());
+    assertEquals(0, outer.getChildren().size());
+  }
+
+  public void testToJson() {
+    StartupProfile profile = StartupProfile.createInjector(new Outer());
+    String json = profile.toJson();
+    assertTrue(json, json.startsWith("{\"justInTimeBindings\":"));
+    assertTrue(json, json.contains("{\"name\":\"" + Outer.class.getName() + "\",\"wallNanos\":"));
+    assertTrue(json, json.contains("\"children\":[{\"name\":\"" + Inner.class.getName() + "\""));
+    int depth = 0;
+    for (char c : json.toCharArray()) {
+      depth += c == '{' || c == '[' ? 1 : c == '}' || c == ']' ? -1 : 0;
+      assertTrue(depth >= 0);
+    }
+    assertEquals(0, depth);
+  }
+
+  public void testToCollapsedStacks() {
+    StartupProfile profile = StartupProfile.createInjector(new Outer());
+    String stacks = profile.toCollapsedStacks();
+    assertTrue(stacks, stacks.contains(
+        "Module execution;" + Outer.class.getName() + ";" + Inner.class.getName() + " "));
+    for (String line : stacks.split("\n")) {
+      assertTrue(line, line.matches(".*[^ ;] \\d+"));
+    }
+  }
+
+  private static Timing phase(StartupProfile profile, String name) {
+    for (Timing phase : profile.getPhases()) {
+      if (phase.getName().equals(name)) {
+        return phase;
+      }
+    }
+    throw new AssertionError(name + " not in " + profile.getPhases());
+  }
+
+  private static Timing child(Timing timing, String name) {
+    for (Timing child : timing.getChildren()) {
+      if (child.getName().equals(name)) {
+        return child;
+      }
+    }
+    throw new AssertionError(name + " not in " + timing.getChildren());
+  }
+
+  private static List<String> names(List<Timing> timings) {
+    List<String> names = Lists.newArrayList();
+    for (Timing timing : timings) {
+      names.add(timing.getName());
+    }
+    return names;
+  }
+
+  static class Outer extends AbstractModule {
+    @Override protected void configure() {
+      install(new Inner());
+      bind(Service.class);
+    }
+
+    @Provides String provideString() {
+      return "outer";
+    }
+  }
+
+  static class Inner extends AbstractModule {
+    @Override protected void configure() {}
+
+    @Provides @Singleton Integer provideInteger() {
+      return 1;
+    }
+  }
+
+  static class Helper {}
+
+  @Singleton
+  static class Service {
+    @Inject Injector injector;
+  }
+}
@@ -243,6 +243,55 @@ public class BytecodeGenTest extends TestCase {
     assertNull("Proxy class was not unloaded.", clazzRef.get());
   }
 
+  public void testInterceptedClassLoaderUnloading() throws Exception {
+    GcFinalization.awaitClear(interceptInNewClassLoader());
+  }
+
+  /** Keeps the copy of Guice that intercepts without custom class loading for the whole test. */
+  private ClassLoader guiceWithoutCustomClassLoading;
+
+  public void testInterceptedClassLoaderUnloadingWithoutCustomClassLoading() throws Exception {
+    // the flags are read once per copy of Guice, so use a new copy that reads them again
+    String customClassLoading = System.getProperty("guice_custom_class_loading");
+    System.setProperty("guice_custom_class_loading", "OFF");
+    WeakReference<?> classLoaderRef;
+    try {
+      guiceWithoutCustomClassLoading = new MultipleVersionsOfGuiceClassLoader();
+      classLoaderRef = (WeakReference<?>) guiceWithoutCustomClassLoading
+          .loadClass(BytecodeGenTest.class.getName())
+          .getMethod("interceptInNewClassLoader")
+          .invoke(null);
+    } finally {
+      if (customClassLoading != null) {
+        System.setProperty("guice_custom_class_loading", customClassLoading);
+      } else {
+        System.clearProperty("guice_custom_class_loading");
+      }
+    }
+    GcFinalization.awaitClear(classLoaderRef);
+  }
+
+  /**
+   * Intercepts a class loaded by a new class loader, and returns a weak reference to that class
+   * loader once nothing uses the class any more.
+   */
+  public static WeakReference<ClassLoader> interceptInNewClassLoader() throws Exception {
+    ClassLoader classLoader = new TestVisibilityClassLoader(false);
+    Class<?> type = classLoader.loadClass(ProxyTestImpl.class.getName());
+    Object intercepted = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bindInterceptor(any(), any(), new MethodInterceptor() {
+          public Object invoke(MethodInvocation chain) throws Throwable {
+            return chain.proceed() + " WORLD";
+          }
+        });
+      }
+    }).getInstance(type);
+    assertEquals("HELLO WORLD", type.getMethod("sayHello").invoke(intercepted));
+    assertNotSame(type, intercepted.getClass());
+    return new WeakReference<ClassLoader>(classLoader);
+  }
+
   public void testProxyingPackagePrivateMethods() {
     Injector injector = Guice.createInjector(interceptorModule);
     assertEquals("HI WORLD", injector.getInstance(PackageClassPackageMethod.class).sayHi());
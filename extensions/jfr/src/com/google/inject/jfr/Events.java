@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder events of Guice. Only loaded once the flight recorder is known to be
+ * available.
+ */
+final class Events {
+  private Events() {}
+
+  static final EventType PHASE = EventType.getEventType(Phase.class);
+  static final EventType JUST_IN_TIME_BINDING = EventType.getEventType(JustInTimeBinding.class);
+  static final EventType SINGLETON = EventType.getEventType(Singleton.class);
+  static final EventType CLASS_GENERATION = EventType.getEventType(ClassGeneration.class);
+  static final EventType PROVISION = EventType.getEventType(Provision.class);
+
+  @Name("com.google.inject.InjectorCreationPhase")
+  @Label("Injector Creation Phase")
+  @Category("Guice")
+  static final class Phase extends Event {
+    @Label("Phase") String phase;
+  }
+
+  @Name("com.google.inject.JustInTimeBinding")
+  @Label("Just-in-time Binding Creation")
+  @Category("Guice")
+  static final class JustInTimeBinding extends Event {
+    @Label("Key") String key;
+  }
+
+  @Name("com.google.inject.Singleton")
+  @Label("Singleton Construction")
+  @Category("Guice")
+  static final class Singleton extends Event {
+    @Label("Key") String key;
+    @Label("Lock Wait") @Timespan(Timespan.NANOSECONDS) long lockWait;
+    transient long lockWaitStart;
+  }
+
+  @Name("com.google.inject.ClassGeneration")
+  @Label("Class Generation")
+  @Category("Guice")
+  static final class ClassGeneration extends Event {
+    @Label("Type") Class<?> type;
+    @Label("Kind") String kind;
+  }
+
+  @Name("com.google.inject.Provision")
+  @Label("Provision")
+  @Category("Guice")
+  static final class Provision extends Event {
+    @Label("Key") String key;
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.jfr;
+
+import com.google.inject.Key;
+import com.google.inject.internal.InjectorEvents;
+
+/**
+ * Records the events of injector creation, just-in-time binding creation, singleton construction
+ * and class generation with the flight recorder. Found by Guice with a
+ * {@link java.util.ServiceLoader} when this extension is on the class path; events are only
+ * created while a recording enables them.
+ *
+ * @see JfrModule to record the provision of bindings
+ */
+public final class FlightRecorderEvents extends InjectorEvents {
+
+  /** Called by the service loader, fails if the JVM has no flight recorder. */
+  public FlightRecorderEvents() {
+    if (!isAvailable()) {
+      throw new UnsupportedOperationException("jdk.jfr is not available");
+    }
+  }
+
+  /** Returns true if the JVM has a flight recorder. */
+  static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  @Override public Object beginPhase() {
+    if (!Events.PHASE.isEnabled()) {
+      return null;
+    }
+    Events.Phase event = new Events.Phase();
+    event.begin();
+    return event;
+  }
+
+  @Override public void endPhase(Object event, String name) {
+    Events.Phase phase = (Events.Phase) event;
+    phase.phase = name;
+    phase.commit();
+  }
+
+  @Override public Object beginJustInTimeBinding(Key<?> key) {
+    if (!Events.JUST_IN_TIME_BINDING.isEnabled()) {
+      return null;
+    }
+    Events.JustInTimeBinding event = new Events.JustInTimeBinding();
+    event.key = key.toString();
+    event.begin();
+    return event;
+  }
+
+  @Override public void endJustInTimeBinding(Object event) {
+    ((Events.JustInTimeBinding) event).commit();
+  }
+
+  @Override public Object beginSingleton(Key<?> key) {
+    if (!Events.SINGLETON.isEnabled()) {
+      return null;
+    }
+    Events.Singleton event = new Events.Singleton();
+    event.key = key.toString();
+    event.begin();
+    event.lockWaitStart = System.nanoTime();
+    return event;
+  }
+
+  @Override public void singletonLockAcquired(Object event) {
+    Events.Singleton singleton = (Events.Singleton) event;
+    singleton.lockWait = System.nanoTime() - singleton.lockWaitStart;
+  }
+
+  @Override public void endSingleton(Object event) {
+    ((Events.Singleton) event).commit();
+  }
+
+  @Override public Object beginClassGeneration(Class<?> type, String kind) {
+    if (!Events.CLASS_GENERATION.isEnabled()) {
+      return null;
+    }
+    Events.ClassGeneration event = new Events.ClassGeneration();
+    event.type = type;
+    event.kind = kind;
+    event.begin();
+    return event;
+  }
+
+  @Override public void endClassGeneration(Object event) {
+    ((Events.ClassGeneration) event).commit();
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.jfr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.ProvisionListener;
+
+/**
+ * Records the provision of bindings with the flight recorder, as
+ * {@code com.google.inject.Provision} events. Provisions are only timed while a recording enables
+ * these events, and nothing is recorded if the JVM has no flight recorder.
+ *
+ * <p>As listening to provisions has a cost even when no recording is running, the bindings can be
+ * sampled:
+ * <pre>
+ *   Guice.createInjector(new JfrModule(JfrModule.oneIn(10)), new AppModule());</pre>
+ *
+ * @see FlightRecorderEvents for the events of injector creation
+ */
+public final class JfrModule extends AbstractModule {
+  private final Matcher<? super Binding<?>> bindingMatcher;
+
+  /** Records the provision of all bindings. */
+  public JfrModule() {
+    this(Matchers.any());
+  }
+
+  /** Records the provision of the bindings matched by {@code bindingMatcher}. */
+  public JfrModule(Matcher<? super Binding<?>> bindingMatcher) {
+    this.bindingMatcher = checkNotNull(bindingMatcher, "bindingMatcher");
+  }
+
+  /**
+   * Returns a matcher of one binding in {@code n}, chosen by the hash code of its key so that the
+   * same bindings are sampled by every injector.
+   */
+  public static Matcher<Binding<?>> oneIn(final int n) {
+    checkArgument(n > 0, "n must be positive");
+    return new AbstractMatcher<Binding<?>>() {
+      @Override public boolean matches(Binding<?> binding) {
+        return (binding.getKey().hashCode() & Integer.MAX_VALUE) % n == 0;
+      }
+
+      @Override public String toString() {
+        return "oneIn(" + n + ")";
+      }
+    };
+  }
+
+  @Override protected void configure() {
+    if (FlightRecorderEvents.isAvailable()) {
+      bindListener(bindingMatcher, new ProvisionRecorder());
+    }
+  }
+
+  private static final class ProvisionRecorder implements ProvisionListener {
+    public <T> void onProvision(ProvisionInvocation<T> provision) {
+      if (!Events.PROVISION.isEnabled()) {
+        return; // Guice provisions the instance
+      }
+      Events.Provision event = new Events.Provision();
+      event.key = provision.getBinding().getKey().toString();
+      event.begin();
+      try {
+        provision.provision();
+      } finally {
+        event.commit();
+      }
+    }
+  }
+}
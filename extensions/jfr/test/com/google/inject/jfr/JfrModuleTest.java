@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.jfr;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Singleton;
+import com.google.inject.Stage;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+
+import junit.framework.TestCase;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests for the flight recorder events of {@link JfrModule} and {@link FlightRecorderEvents}.
+ */
+public class JfrModuleTest extends TestCase {
+
+  public void testInjectorCreationIsRecorded() throws Exception {
+    Multimap<String, RecordedEvent> events = record(new Callable<Injector>() {
+      public Injector call() {
+        Injector injector = Guice.createInjector(Stage.PRODUCTION, new JfrModule(),
+            new AbstractModule() {
+              @Override protected void configure() {
+                bind(Service.class);
+              }
+            });
+        injector.getInstance(Helper.class);
+        return injector;
+      }
+    });
+
+    assertTrue(phases(events).contains("Module execution"));
+    assertTrue(phases(events).contains("Preloading singletons"));
+    assertTrue(keys(events, "com.google.inject.Singleton")
+        .contains(Key.get(Service.class).toString()));
+    assertTrue(keys(events, "com.google.inject.JustInTimeBinding")
+        .contains(Key.get(Helper.class).toString()));
+    assertTrue(keys(events, "com.google.inject.Provision")
+        .contains(Key.get(Service.class).toString()));
+    for (RecordedEvent singleton : events.get("com.google.inject.Singleton")) {
+      assertTrue(singleton.getLong("lockWait") >= 0);
+    }
+  }
+
+  public void testOnlySampledBindingsAreRecorded() throws Exception {
+    final Matcher<Binding<?>> onlyService = new AbstractMatcher<Binding<?>>() {
+      @Override public boolean matches(Binding<?> binding) {
+        return binding.getKey().equals(Key.get(Service.class));
+      }
+    };
+    Multimap<String, RecordedEvent> events = record(new Callable<Injector>() {
+      public Injector call() {
+        Injector injector = Guice.createInjector(new JfrModule(onlyService));
+        injector.getInstance(Service.class);
+        injector.getInstance(Helper.class);
+        return injector;
+      }
+    });
+    assertEquals(ImmutableSet.of(Key.get(Service.class).toString()),
+        keys(events, "com.google.inject.Provision"));
+  }
+
+  public void testOneIn() {
+    Injector injector = Guice.createInjector();
+    Binding<Injector> binding = injector.getBinding(Injector.class);
+    assertTrue(JfrModule.oneIn(1).matches(binding));
+    assertEquals(JfrModule.oneIn(7).matches(binding), JfrModule.oneIn(7).matches(binding));
+    try {
+      JfrModule.oneIn(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  /** Returns the events recorded while {@code work} is done, by name. */
+  private static Multimap<String, RecordedEvent> record(Callable<?> work) throws Exception {
+    Recording recording = new Recording();
+    for (String name : new String[] {"InjectorCreationPhase", "JustInTimeBinding", "Singleton",
+        "ClassGeneration", "Provision"}) {
+      recording.enable("com.google.inject." + name);
+    }
+    recording.start();
+    try {
+      work.call();
+    } finally {
+      recording.stop();
+    }
+    Path dump = File.createTempFile("guice", ".jfr").toPath();
+    try {
+      recording.dump(dump);
+      Multimap<String, RecordedEvent> events = HashMultimap.create();
+      for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+        events.put(event.getEventType().getName(), event);
+      }
+      return events;
+    } finally {
+      recording.close();
+      dump.toFile().delete();
+    }
+  }
+
+  private static Set<String> phases(Multimap<String, RecordedEvent> events) {
+    Set<String> phases = Sets.<String>newHashSet();
+    for (RecordedEvent event : events.get("com.google.inject.InjectorCreationPhase")) {
+      phases.add(event.getString("phase"));
+    }
+    return phases;
+  }
+
+  private static Set<String> keys(Multimap<String, RecordedEvent> events, String name) {
+    Set<String> keys = Sets.<String>newHashSet();
+    for (RecordedEvent event : events.get(name)) {
+      keys.add(event.getString("key"));
+    }
+    return keys;
+  }
+
+  static class Helper {}
+
+  @Singleton
+  static class Service {}
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.processor;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Records the members annotated with {@literal @}{@code com.google.inject.Inject} or
+ * {@literal @}{@code javax.inject.Inject} of every class compiled, in a
+ * {@code META-INF/guice/injection-points} resource. Guice then only reads the annotations of the
+ * recorded members when it looks for the injection points of these classes, instead of the
+ * annotations of all their members.
+ *
+ * <p>Add this processor to the compiler's processor path, or put it on the class path, to record
+ * the classes of a build. Classes that are not recorded, for example because they were compiled
+ * without the processor, are scanned as usual. The resource must be produced by the same
+ * compilation as the classes it describes, so that it doesn't get out of date.
+ */
+@SupportedAnnotationTypes("*")
+public final class InjectionPointProcessor extends AbstractProcessor {
+
+  static final String RESOURCE = "META-INF/guice/injection-points";
+
+  private static final String GUICE_INJECT = "com.google.inject.Inject";
+  private static final String JAVAX_INJECT = "javax.inject.Inject";
+
+  /** Lines of the resource, written once all rounds are processed. */
+  private final List<String> lines = new ArrayList<String>();
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(Set<? extends TypeElement> annotations,
+      RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      write();
+    } else {
+      for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+        record(type);
+      }
+    }
+    // never claim annotations, other processors may want them too
+    return false;
+  }
+
+  /** Records {@code type} if it is a class, then the types nested in it. */
+  private void record(TypeElement type) {
+    if (type.getKind() == ElementKind.CLASS) {
+      String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+      lines.add(className);
+      for (Element member : type.getEnclosedElements()) {
+        if (!isInjectable(member)) {
+          continue;
+        }
+        switch (member.getKind()) {
+          case CONSTRUCTOR:
+            lines.add(className + " constructor "
+                + parameters((ExecutableElement) member));
+            break;
+          case FIELD:
+            lines.add(className + " field " + ((VariableElement) member).getSimpleName());
+            break;
+          case METHOD:
+            lines.add(className + " method " + member.getSimpleName()
+                + parameters((ExecutableElement) member));
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      record(nested);
+    }
+  }
+
+  private static boolean isInjectable(Element member) {
+    for (AnnotationMirror annotation : member.getAnnotationMirrors()) {
+      String name = ((TypeElement) annotation.getAnnotationType().asElement())
+          .getQualifiedName().toString();
+      if (name.equals(GUICE_INJECT) || name.equals(JAVAX_INJECT)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the erased parameter types of {@code executable}, as reflection would name them. */
+  private String parameters(ExecutableElement executable) {
+    StringBuilder result = new StringBuilder().append('(');
+    List<? extends VariableElement> parameters = executable.getParameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        result.append(',');
+      }
+      result.append(typeName(processingEnv.getTypeUtils().erasure(parameters.get(i).asType())));
+    }
+    return result.append(')').toString();
+  }
+
+  private String typeName(TypeMirror type) {
+    if (type.getKind() == TypeKind.ARRAY) {
+      return typeName(((ArrayType) type).getComponentType()) + "[]";
+    } else if (type.getKind() == TypeKind.DECLARED) {
+      TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+      return processingEnv.getElementUtils().getBinaryName(element).toString();
+    } else {
+      // primitive types are named alike
+      return type.toString();
+    }
+  }
+
+  private void write() {
+    if (lines.isEmpty()) {
+      return;
+    }
+    try {
+      FileObject resource = processingEnv.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE);
+      Writer writer = new OutputStreamWriter(resource.openOutputStream(), "UTF-8");
+      try {
+        for (String line : lines) {
+          writer.write(line);
+          writer.write('\n');
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Cannot write " + RESOURCE + ", injection points will be found by reflection: " + e);
+    }
+  }
+}
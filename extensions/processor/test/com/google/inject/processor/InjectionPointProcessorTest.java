@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.util.Types;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles sources with {@link InjectionPointProcessor} and checks that Guice finds the same
+ * injection points in the recorded classes as it finds by reflection.
+ */
+public class InjectionPointProcessorTest extends TestCase {
+
+  private static final String SOURCE = "package example;\n"
+      + "import com.google.inject.Inject;\n"
+      + "import java.util.List;\n"
+      + "public class Foo<T extends CharSequence> extends Base {\n"
+      + "  @Inject Foo(String s, int[][] i, T t) {}\n"
+      + "  Foo() {}\n"
+      + "  @Inject List<String> list;\n"
+      + "  String notInjected;\n"
+      + "  @javax.inject.Inject void setT(T t, Inner inner) {}\n"
+      + "  @Override protected void setBase(Object o) {}\n"
+      + "  @Inject static void staticMethod(long l) {}\n"
+      + "  public static class Inner {\n"
+      + "    @Inject Inner(Foo<String>[] foos) {}\n"
+      + "  }\n"
+      + "}\n"
+      + "abstract class Base {\n"
+      + "  @javax.inject.Inject protected void setBase(Object o) {}\n"
+      + "  @Inject void base() {}\n"
+      + "}\n"
+      + "interface NotAClass {}\n";
+
+  private File directory;
+
+  @Override protected void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @Override protected void tearDown() throws IOException {
+    delete(directory);
+  }
+
+  public void testInjectableMembersAreRecorded() throws Exception {
+    compile();
+
+    List<String> lines = Files.readLines(
+        new File(directory, InjectionPointProcessor.RESOURCE), Charsets.UTF_8);
+    assertEquals(ImmutableList.of(
+        "example.Foo",
+        "example.Foo constructor (java.lang.String,int[][],java.lang.CharSequence)",
+        "example.Foo field list",
+        "example.Foo method setT(java.lang.CharSequence,example.Foo$Inner)",
+        "example.Foo method staticMethod(long)",
+        "example.Foo$Inner",
+        "example.Foo$Inner constructor (example.Foo[])",
+        "example.Base",
+        "example.Base method setBase(java.lang.Object)",
+        "example.Base method base()"), lines);
+  }
+
+  public void testRecordedInjectionPointsMatchReflection() throws Exception {
+    compile();
+
+    ClassLoader recorded = new URLClassLoader(
+        new URL[] {directory.toURI().toURL()}, getClass().getClassLoader());
+    File plain = new File(directory, "plain");
+    Files.createParentDirs(new File(plain, "example/Foo.class"));
+    for (String name : Arrays.asList("Foo", "Foo$Inner", "Base")) {
+      Files.copy(new File(directory, "example/" + name + ".class"),
+          new File(plain, "example/" + name + ".class"));
+    }
+    ClassLoader reflected = new URLClassLoader(
+        new URL[] {plain.toURI().toURL()}, getClass().getClassLoader());
+
+    for (String name : Arrays.asList("example.Foo", "example.Foo$Inner")) {
+      TypeLiteral<?> recordedType = resolve(recorded.loadClass(name));
+      TypeLiteral<?> reflectedType = resolve(reflected.loadClass(name));
+      assertEquals(InjectionPoint.forConstructorOf(reflectedType).toString(),
+          InjectionPoint.forConstructorOf(recordedType).toString());
+      assertEquals(InjectionPoint.forInstanceMethodsAndFields(reflectedType).toString(),
+          InjectionPoint.forInstanceMethodsAndFields(recordedType).toString());
+      assertEquals(
+          InjectionPoint.forStaticMethodsAndFields(reflectedType.getRawType()).toString(),
+          InjectionPoint.forStaticMethodsAndFields(recordedType.getRawType()).toString());
+    }
+  }
+
+  /** Returns {@code type}, with its type parameters resolved to {@code String} if it has any. */
+  private static TypeLiteral<?> resolve(Class<?> type) {
+    if (type.getTypeParameters().length == 0) {
+      return TypeLiteral.get(type);
+    }
+    return TypeLiteral.get(Types.newParameterizedType(type, String.class));
+  }
+
+  private void compile() throws IOException {
+    File source = new File(directory, "example/Foo.java");
+    assertTrue(source.getParentFile().mkdirs());
+    Files.write(SOURCE, source, Charsets.UTF_8);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    try {
+      Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(source);
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null,
+          ImmutableList.of("-classpath", System.getProperty("java.class.path"),
+              "-d", directory.getPath(), "-implicit:none"),
+          null, units);
+      task.setProcessors(ImmutableList.of(new InjectionPointProcessor()));
+      assertTrue(task.call());
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
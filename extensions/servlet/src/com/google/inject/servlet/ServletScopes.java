@@ -18,6 +18,7 @@ package com.google.inject.servlet;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Maps.EntryTransformer;
 import com.google.inject.Binding;
@@ -30,6 +31,7 @@ import com.google.inject.Scopes;
 
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -57,6 +59,29 @@ public class ServletScopes {
   /** A sentinel attribute value representing null. */
   enum NullObject { INSTANCE }
 
+  /**
+   * Locks guarding the attributes of requests and sessions while scoped objects are created, by
+   * identity of the request or session. Scoped objects can block for a long time while they are
+   * created, so they are created while holding a {@link Lock} rather than the monitor of the
+   * request or session, which would stay held by the blocked thread. The locks are only weakly
+   * keyed so that they are dropped along with their request or session.
+   */
+  private static final ConcurrentMap<Object, Lock> scopeLocks =
+      new MapMaker().weakKeys().makeMap();
+
+  /** Returns the lock guarding the attributes of {@code requestOrSession}. */
+  private static Lock lockFor(Object requestOrSession) {
+    Lock lock = scopeLocks.get(requestOrSession);
+    if (lock == null) {
+      Lock newLock = new ReentrantLock();
+      lock = scopeLocks.putIfAbsent(requestOrSession, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
   /**
    * HTTP servlet request scope.
    */
@@ -105,7 +130,7 @@ public class ServletScopes {
               // exception is thrown.
           }
 
-          // Always synchronize and get/set attributes on the underlying request
+          // Always lock and get/set attributes on the underlying request
           // object since Filters may wrap the request and change the value of
           // {@code GuiceFilter.getRequest()}.
           //
@@ -117,7 +142,9 @@ public class ServletScopes {
             return creator.get();
           }
           String name = key.toString();
-          synchronized (request) {
+          Lock lock = lockFor(request);
+          lock.lock();
+          try {
             Object obj = request.getAttribute(name);
             if (NullObject.INSTANCE == obj) {
               return null;
@@ -131,6 +158,8 @@ public class ServletScopes {
               }
             }
             return t;
+          } finally {
+            lock.unlock();
           }
         }
 
@@ -160,7 +189,9 @@ public class ServletScopes {
         @Override
         public T get() {
           HttpSession session = GuiceFilter.getRequest(key).getSession();
-          synchronized (session) {
+          Lock lock = lockFor(session);
+          lock.lock();
+          try {
             Object obj = session.getAttribute(name);
             if (NullObject.INSTANCE == obj) {
               return null;
@@ -174,6 +205,8 @@ public class ServletScopes {
               }
             }
             return t;
+          } finally {
+            lock.unlock();
           }
         }
         @Override
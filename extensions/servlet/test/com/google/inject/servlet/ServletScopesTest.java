@@ -20,9 +20,11 @@ import static com.google.inject.name.Names.named;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Binding;
 import com.google.inject.Guice;
+import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.Module;
@@ -44,6 +46,16 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 
 /**
  * Tests for {@link ServletScopes}.
@@ -184,6 +196,83 @@ public class ServletScopesTest extends TestCase {
   @ScopeAnnotation
   private @interface CustomScoped {}
 
+  static final long TIMEOUT_SECONDS = 5;
+
+  @SessionScoped
+  static class SlowSessionScoped {
+    static final AtomicInteger created = new AtomicInteger();
+    static CountDownLatch release;
+
+    SlowSessionScoped() throws InterruptedException {
+      created.incrementAndGet();
+      release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  public void testSessionScopedObjectIsCreatedOnceAcrossThreads() throws Exception {
+    SlowSessionScoped.created.set(0);
+    SlowSessionScoped.release = new CountDownLatch(1);
+    Injector injector = Guice.createInjector(new ServletModule());
+    HttpServletRequest request = ServletTestUtils.newFakeHttpServletRequest();
+
+    ExecutorService executor = Executors.newFixedThreadPool(20);
+    try {
+      List<Future<SlowSessionScoped>> futures = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+        futures.add(executor.submit(getInRequest(injector, request, SlowSessionScoped.class)));
+      }
+      SlowSessionScoped.release.countDown();
+      SlowSessionScoped instance = futures.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      for (Future<SlowSessionScoped> future : futures) {
+        assertSame(instance, future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      }
+      assertEquals(1, SlowSessionScoped.created.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @RequestScoped
+  static class HoldsRequestMonitor {
+    final boolean holdsLock;
+
+    @Inject HoldsRequestMonitor(HttpServletRequest request) {
+      holdsLock = Thread.holdsLock(request);
+    }
+  }
+
+  @SessionScoped
+  static class HoldsSessionMonitor {
+    final boolean holdsLock;
+
+    @Inject HoldsSessionMonitor(HttpSession session) {
+      holdsLock = Thread.holdsLock(session);
+    }
+  }
+
+  public void testScopedObjectsAreNotCreatedWhileHoldingMonitors() throws Exception {
+    Injector injector = Guice.createInjector(new ServletModule());
+    HttpServletRequest request = ServletTestUtils.newFakeHttpServletRequest();
+
+    assertFalse(getInRequest(injector, request, HoldsRequestMonitor.class).call().holdsLock);
+    assertFalse(getInRequest(injector, request, HoldsSessionMonitor.class).call().holdsLock);
+  }
+
+  private static <T> Callable<T> getInRequest(
+      final Injector injector, final HttpServletRequest request, final Class<T> type) {
+    return new Callable<T>() {
+      public T call() {
+        RequestScoper.CloseableScope scope =
+            new GuiceFilter.Context(request, request, null).open();
+        try {
+          return injector.getInstance(type);
+        } finally {
+          scope.close();
+        }
+      }
+    };
+  }
+
   private ImmutableMap<Key<?>, Binding<?>> indexBindings(Iterable<Element> elements) {
     ImmutableMap.Builder<Key<?>, Binding<?>> builder = ImmutableMap.builder();
     for (Element element : elements) {